@@ -0,0 +1,23 @@
+package frc.robot;
+
+import edu.wpi.first.hal.HAL;
+
+/**
+ * Starts the HAL simulation once per benchmark JVM so subsystems that open
+ * AnalogInputs, PWM or the FPGA timer can be constructed off the robot.
+ */
+public final class BenchmarkHal {
+    private static boolean sInitialized = false;
+
+    private BenchmarkHal() {
+    }
+
+    public static synchronized void initialize() {
+        if (!sInitialized) {
+            if (!HAL.initialize(500, 0)) {
+                throw new IllegalStateException("Failed to initialize the HAL simulation");
+            }
+            sInitialized = true;
+        }
+    }
+}
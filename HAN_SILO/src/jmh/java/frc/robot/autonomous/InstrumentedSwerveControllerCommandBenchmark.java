@@ -0,0 +1,70 @@
+package frc.robot.autonomous;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.controller.PIDController;
+import edu.wpi.first.wpilibj.controller.ProfiledPIDController;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import frc.robot.BenchmarkHal;
+import frc.robot.Constants.AutoConstants;
+import frc.robot.util.AutoSwerveDebug;
+import frc.robot.util.BinaryLogWriter;
+import frc.robot.util.SampledTrajectory;
+
+/**
+ * One execute() of the path follower: sample the trajectory, log, run the three controllers
+ * and output chassis speeds. The path is a slow curve long enough that it never finishes
+ * during a run, so every call samples a real point instead of the end.
+ */
+@State(Scope.Thread)
+public class InstrumentedSwerveControllerCommandBenchmark {
+  private static final double kTotalTimeSeconds = 600;
+
+  private _InstrumentedSwerveControllerCommand m_command;
+  private final Pose2d m_pose = new Pose2d(1.0, 0.5, new Rotation2d(0.1));
+  private double m_outputSum = 0;
+
+  @Setup
+  public void setup() {
+    BenchmarkHal.initialize();
+    double dt = AutoConstants.kTrajectorySampleDtSeconds;
+    int count = SampledTrajectory.sampleCount(dt, kTotalTimeSeconds);
+    double[] x = new double[count];
+    double[] y = new double[count];
+    double[] heading = new double[count];
+    double[] velocity = new double[count];
+    double[] curvature = new double[count];
+    for(int i = 0; i < count; i++){
+      double t = Math.min(i * dt, kTotalTimeSeconds);
+      x[i] = 0.5 * t;
+      y[i] = Math.sin(0.05 * t);
+      heading[i] = Math.atan2(0.05 * Math.cos(0.05 * t), 0.5);
+      velocity[i] = 0.5;
+    }
+    SampledTrajectory trajectory = new SampledTrajectory(dt, kTotalTimeSeconds, x, y, heading, velocity, curvature);
+
+    ProfiledPIDController thetaController = new ProfiledPIDController(AutoConstants.kPThetaController, 0, 0,
+        AutoConstants.kThetaControllerConstraints);
+    thetaController.enableContinuousInput(-Math.PI, Math.PI);
+
+    m_command = new _InstrumentedSwerveControllerCommand(
+        new BinaryLogWriter<>(AutoSwerveDebug.class),
+        trajectory,
+        () -> m_pose,
+        new PIDController(AutoConstants.kPXController, 0, 0),
+        new PIDController(AutoConstants.kPYController, 0, 0),
+        thetaController,
+        (vx, vy, omega) -> m_outputSum += vx + vy + omega);
+    m_command.initialize();
+  }
+
+  @Benchmark
+  public double execute() {
+    m_command.execute();
+    return m_outputSum;
+  }
+}
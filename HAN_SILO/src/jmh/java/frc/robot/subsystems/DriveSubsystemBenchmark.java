@@ -0,0 +1,50 @@
+package frc.robot.subsystems;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import frc.robot.BenchmarkHal;
+
+/**
+ * Cost of one teleop drive() call, stick input to module setpoints.
+ *
+ * RobotBase.isReal() is false under the HAL simulation, so SwerveModule skips the SparkMax setReference() calls and
+ * its telemetry. The result is the kinematics and module math, not the whole call on the robot.
+ */
+@State(Scope.Thread)
+public class DriveSubsystemBenchmark {
+  private static final int kInputs = 64;
+
+  private DriveSubsystem m_robotDrive;
+  private final double[] m_x = new double[kInputs];
+  private final double[] m_y = new double[kInputs];
+  private final double[] m_rot = new double[kInputs];
+  private int m_index = 0;
+
+  @Setup
+  public void setup() {
+    BenchmarkHal.initialize();
+    m_robotDrive = new DriveSubsystem();
+    // sweep the sticks so the deadband and angle math see varied input
+    for(int i = 0; i < kInputs; i++){
+      double t = 2.0 * Math.PI * i / kInputs;
+      m_x[i] = Math.cos(t);
+      m_y[i] = Math.sin(t);
+      m_rot[i] = 0.5 * Math.sin(2 * t);
+    }
+  }
+
+  @Benchmark
+  public void driveFieldRelative() {
+    int i = m_index++ & (kInputs - 1);
+    m_robotDrive.drive(m_x[i], m_y[i], m_rot[i], 0, true);
+  }
+
+  @Benchmark
+  public void driveRobotRelative() {
+    int i = m_index++ & (kInputs - 1);
+    m_robotDrive.drive(m_x[i], m_y[i], m_rot[i], 0, false);
+  }
+}
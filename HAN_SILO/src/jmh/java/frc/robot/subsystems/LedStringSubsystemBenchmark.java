@@ -0,0 +1,32 @@
+package frc.robot.subsystems;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import frc.robot.BenchmarkHal;
+import frc.robot.Constants.OpConstants;
+
+/**
+ * Renders one frame of an LED pattern into the buffer and hands it to the AddressableLED.
+ */
+@State(Scope.Thread)
+public class LedStringSubsystemBenchmark {
+  @Param({"TEAM", "RAINBOW", "FULL", "SHOOT", "INTAKE", "BALLTHREE"})
+  public OpConstants.LedOption pattern;
+
+  private LedStringSubsystem m_led;
+
+  @Setup
+  public void setup() {
+    BenchmarkHal.initialize();
+    m_led = new LedStringSubsystem();
+  }
+
+  @Benchmark
+  public void renderPattern() {
+    m_led.option(pattern);
+  }
+}
@@ -0,0 +1,49 @@
+package frc.robot.subsystems;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj.kinematics.SwerveModuleState;
+import frc.robot.BenchmarkHal;
+
+/**
+ * setDesiredState, including the minimize-azimuth-rotation (reverse the drive) step.
+ * The angles cover all four quadrants so both the inverted and normal branches run.
+ *
+ * Under the HAL simulation RobotBase.isReal() is false, so the two setReference() calls, the output telemetry and
+ * the debug values are skipped. This measures the state math only, not what the module costs on the robot.
+ */
+@State(Scope.Thread)
+public class SwerveModuleBenchmark {
+  private static final int kAngles = 64;
+
+  private SwerveModule m_module;
+  private final double[] m_angles = new double[kAngles];
+  private final SwerveModuleState[] m_states = new SwerveModuleState[kAngles];
+  private int m_index = 0;
+
+  @Setup
+  public void setup() {
+    BenchmarkHal.initialize();
+    m_module = new SwerveModule(1, 2);
+    for(int i = 0; i < kAngles; i++){
+      m_angles[i] = -Math.PI + 2.0 * Math.PI * i / kAngles;
+      m_states[i] = new SwerveModuleState(2.0, new Rotation2d(m_angles[i]));
+    }
+  }
+
+  @Benchmark
+  public void setDesiredStatePrimitive() {
+    int i = m_index++ & (kAngles - 1);
+    m_module.setDesiredState(2.0, m_angles[i]);
+  }
+
+  @Benchmark
+  public void setDesiredStateModuleState() {
+    int i = m_index++ & (kAngles - 1);
+    m_module.setDesiredState(m_states[i]);
+  }
+}
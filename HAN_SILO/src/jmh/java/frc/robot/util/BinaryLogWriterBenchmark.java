@@ -0,0 +1,38 @@
+package frc.robot.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import frc.robot.BenchmarkHal;
+
+/**
+ * Per-record cost of logging on the robot thread. The flusher thread runs as it does on
+ * the robot, writing to ./telemetry; records it can't keep up with are dropped, not queued.
+ */
+@State(Scope.Thread)
+public class BinaryLogWriterBenchmark {
+    private BinaryLogWriter<AutoSwerveDebug> mLogWriter;
+    private final AutoSwerveDebug mDebug = new AutoSwerveDebug();
+    private double mTime = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkHal.initialize();
+        mLogWriter = new BinaryLogWriter<>(AutoSwerveDebug.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mLogWriter.flush();
+    }
+
+    @Benchmark
+    public void add() {
+        mTime += 0.02;
+        mDebug.update(mTime, 1.0, 2.0, 90.0, 1.01, 1.98, 89.5);
+        mLogWriter.add(mDebug);
+    }
+}
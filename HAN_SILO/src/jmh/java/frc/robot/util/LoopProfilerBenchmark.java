@@ -0,0 +1,29 @@
+package frc.robot.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import frc.robot.BenchmarkHal;
+
+/**
+ * What the profiler adds to every instrumented periodic()/execute(): one start()/stop() pair.
+ */
+@State(Scope.Thread)
+public class LoopProfilerBenchmark {
+    private LoopProfiler.Section mSection;
+
+    @Setup
+    public void setup() {
+        BenchmarkHal.initialize();
+        mSection = LoopProfiler.getInstance().addSection("Benchmark.periodic()");
+    }
+
+    @Benchmark
+    public double startStop() {
+        mSection.start();
+        mSection.stop();
+        return mSection.getLast();
+    }
+}
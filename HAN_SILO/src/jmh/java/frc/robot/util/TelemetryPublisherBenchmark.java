@@ -0,0 +1,52 @@
+package frc.robot.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.BenchmarkHal;
+
+/**
+ * One loop of dashboard traffic, about as many values as the robot publishes: set every entry, then publish.
+ * Compared with putting every value straight to SmartDashboard each loop.
+ */
+@State(Scope.Thread)
+public class TelemetryPublisherBenchmark {
+    private static final int kEntries = 64;
+
+    private final TelemetryPublisher.NumberEntry[] mEntries = new TelemetryPublisher.NumberEntry[kEntries];
+    private final String[] mKeys = new String[kEntries];
+    private TelemetryPublisher mPublisher;
+    private double mTime = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkHal.initialize();
+        mPublisher = TelemetryPublisher.getInstance();
+        for (int i = 0; i < kEntries; i++) {
+            mKeys[i] = "Benchmark/" + i;
+            mEntries[i] = mPublisher.addNumber(mKeys[i], TelemetryPublisher.kFast, 0.01);
+        }
+    }
+
+    @Benchmark
+    public int publish() {
+        mTime += 0.02;
+        for (int i = 0; i < kEntries; i++) {
+            // half the values hold still, half drift
+            mEntries[i].set((i & 1) == 0 ? i : i + mTime);
+        }
+        mPublisher.publish(mTime);
+        return mPublisher.getLastPublishCount();
+    }
+
+    @Benchmark
+    public void putEveryLoop() {
+        mTime += 0.02;
+        for (int i = 0; i < kEntries; i++) {
+            SmartDashboard.putNumber(mKeys[i], (i & 1) == 0 ? i : i + mTime);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package frc.robot.vision;
+
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.BenchmarkHal;
+
+/**
+ * One vision frame through the goal tracker: associate the detections with the tracks,
+ * prune, then build the track reports the aiming code reads or rank them for the best goal.
+ */
+@State(Scope.Thread)
+public class GoalTrackerBenchmark {
+    private static final int kFrames = 64;
+
+    @Param({"1", "3", "12"})
+    public int targetsPerFrame;
+
+    private GoalTracker mTracker;
+    private double[][] mFrameX;
+    private double[][] mFrameY;
+    private int mIndex = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkHal.initialize();
+        mTracker = new GoalTracker();
+        mFrameX = new double[kFrames][targetsPerFrame];
+        mFrameY = new double[kFrames][targetsPerFrame];
+        // goals jitter a few cm around fixed field positions, like a camera on a moving robot
+        for (int i = 0; i < kFrames; i++) {
+            for (int j = 0; j < targetsPerFrame; j++) {
+                double jitter = 0.05 * Math.sin(i * 0.7 + j);
+                mFrameX[i][j] = 5.0 + 3.0 * j + jitter;
+                mFrameY[i][j] = 2.0 - jitter;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<GoalTracker.TrackReport> updateAndGetTracks() {
+        int i = mIndex++ & (kFrames - 1);
+        mTracker.update(Timer.getFPGATimestamp(), mFrameX[i], mFrameY[i], targetsPerFrame);
+        return mTracker.getTracks();
+    }
+
+    @Benchmark
+    public GoalTracker.TrackReport updateAndGetBestTrack() {
+        int i = mIndex++ & (kFrames - 1);
+        double now = Timer.getFPGATimestamp();
+        mTracker.update(now, mFrameX[i], mFrameY[i], targetsPerFrame);
+        return mTracker.getBestTrack(now);
+    }
+}
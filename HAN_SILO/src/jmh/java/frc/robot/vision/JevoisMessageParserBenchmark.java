@@ -0,0 +1,61 @@
+package frc.robot.vision;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Parsing one JeVois serial read (one JSON object per target line), the work the reader
+ * thread does on every read. With split=true each message arrives in two reads cut
+ * mid-line, like a read that lands in the middle of a frame.
+ */
+@State(Scope.Thread)
+public class JevoisMessageParserBenchmark implements JevoisMessageParser.TargetListener {
+    @Param({"1", "3"})
+    public int targetsPerMessage;
+
+    @Param({"false", "true"})
+    public boolean split;
+
+    private final JevoisMessageParser mParser = new JevoisMessageParser();
+    private byte[] mMessage;
+    private byte[] mFirstHalf;
+    private byte[] mSecondHalf;
+    private double mSum;
+
+    @Setup
+    public void setup() {
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < targetsPerMessage; i++) {
+            message.append("{\"DeltaTime\":\"0.035\",\"Y\":\"")
+                   .append(0.12 * (i + 1))
+                   .append("\",\"Z\":\"")
+                   .append(3.5 + i)
+                   .append("\"}\r\n");
+        }
+        mMessage = message.toString().getBytes();
+        int half = mMessage.length / 2 + 3;
+        mFirstHalf = new byte[half];
+        mSecondHalf = new byte[mMessage.length - half];
+        System.arraycopy(mMessage, 0, mFirstHalf, 0, mFirstHalf.length);
+        System.arraycopy(mMessage, half, mSecondHalf, 0, mSecondHalf.length);
+    }
+
+    @Override
+    public void onTarget(double deltaTime, double y, double z) {
+        mSum += deltaTime + y + z;
+    }
+
+    @Benchmark
+    public double parseMessage() {
+        if (split) {
+            mParser.parse(mFirstHalf, mFirstHalf.length, this);
+            mParser.parse(mSecondHalf, mSecondHalf.length, this);
+        } else {
+            mParser.parse(mMessage, mMessage.length, this);
+        }
+        return mSum;
+    }
+}
@@ -60,6 +60,10 @@ public final class Constants {
           new Translation2d(-kWheelBase / 2, kTrackWidth / 2),
           new Translation2d(-kWheelBase / 2, -kTrackWidth / 2));
 
+    // Module positions, same order as kDriveKinematics
+    public static final double[] kModuleXMeters = {kWheelBase / 2, kWheelBase / 2, -kWheelBase / 2, -kWheelBase / 2};
+    public static final double[] kModuleYMeters = {kTrackWidth / 2, -kTrackWidth / 2, kTrackWidth / 2, -kTrackWidth / 2};
+
     public static final boolean kGyroReversed = true; //09FEB false;
 
     public static final double kMaxTurnVelocity = 360;
@@ -74,6 +78,13 @@ public final class Constants {
     public static final double kTurnToleranceDeg = 5;
     public static final double kTurnRateToleranceDegPerS = 10; // degrees per second
 
+    // Vision aiming (AimController), radians
+    public static final double kAimP = 4.0;   // rad/s per rad
+    public static final double kAimD = 0.1;
+    public static final double kAimToleranceRadians = Math.toRadians(2.0);
+    public static final double kAimSettleSeconds = 0.1;
+    public static final double kAimMaxRateRadiansPerSecond = Math.PI; // same as full right stick
+
     // These are example values only - DO NOT USE THESE FOR YOUR OWN ROBOT!
     // These characterization values MUST be determined either experimentally or theoretically
     // for *your* robot's drive.
@@ -85,6 +96,13 @@ public final class Constants {
 
     public static final double kMaxSpeedMetersPerSecond = 3;   //tune
 
+    // Number of odometry samples kept for latency compensation (~5 s at the 20 ms loop, ~1.3 s with the odometry thread)
+    public static final int kPoseHistoryCapacity = 256;
+
+    // Run odometry on its own Notifier thread instead of in periodic()
+    public static final boolean kUseOdometryThread = false;
+    public static final double kOdometryPeriodSeconds = 0.005; // 200 Hz
+
   }
 
 
@@ -133,6 +151,12 @@ public final class Constants {
     public static final double kMaxAngularSpeedRadiansPerSecond = Math.PI*2;
     public static final double kMaxAngularSpeedRadiansPerSecondSquared = Math.PI*2;
 
+    // Auto trajectories are resampled at this step for constant-time lookup
+    public static final double kTrajectorySampleDtSeconds = 0.01;
+
+    // Dump every auto trajectory to the console when it is created (slow, for debugging paths only)
+    public static final boolean kPrintTrajectories = false;
+
     public static final double kPXController = 3;
     public static final double kPYController = 3;
     public static final double kPThetaController = 1.5;
@@ -175,6 +199,15 @@ public final class Constants {
         // Shooter
         public static final int kShooterVictor = 3;
         public static final int kShootMinVelocity = 500;
+        //Time from deciding to shoot until the ball leaves (sequencer feed + shooter), aiming leads by this. MEASURE
+        public static final double kShotLatencySeconds = 0.15;
+        //Range to the goal (m) -> flywheel RPM, hood, time of flight (s). Ranges must increase. MEASURE all of these
+        public static final double[] kShotTableRangeMeters = {2.0, 3.0, 4.0, 5.0, 6.0, 8.0};
+        public static final double[] kShotTableRpm = {2400, 2550, 2700, 2850, 3000, 3300};
+        public static final boolean[] kShotTableHoodExtended = {true, true, true, true, true, true};
+        public static final double[] kShotTableTimeOfFlightSeconds = {0.70, 0.80, 0.90, 1.00, 1.10, 1.30};
+        //Fixed number of time of flight iterations per solve, keeps the solver's cost bounded
+        public static final int kShotSolverIterations = 3;
 
         public static final double kClimbMaxPercent = 0.5;
         public static final double kJoystickDeadband = 0.3;
@@ -279,6 +312,29 @@ public final class Constants {
         ///// End TalonFX
     }
 
+    public static final class CanConstants {
+        //Status frame periods (ms) for what the code reads, see CanDeviceManager
+        public static final int kDriveVelocityPeriodMs = 10;
+        public static final int kTurningPositionPeriodMs = 10;
+        public static final int kShooterVelocityPeriodMs = 20;
+        public static final int kSequencerPositionPeriodMs = 20;
+        //Values that only go to the dashboard or the debug log
+        public static final int kDebugPeriodMs = 100;
+        //Frames nothing reads on a TalonFX, its periods top out at 255ms. A SparkMax uses its own maximum, 65535ms
+        public static final int kUnusedFramePeriodMs = 500;
+        //Setpoint frames from the roboRIO, both vendors send them every 10ms by default
+        public static final int kControlFramePeriodMs = 10;
+        //Wait this long for a controller to ack a status frame period or a config read/write at startup
+        public static final int kConfigTimeoutMs = 30;
+        //Boot config, see MotorConfigurator
+        public static final int kConfigThreads = 4;
+        public static final int kConfigRetries = 1;
+        public static final double kConfigWaitSeconds = 5.0;
+        //Traffic we can't schedule, rough numbers for the bus load estimate
+        public static final double kPdpFramesPerSecond = 120;
+        public static final double kPcmFramesPerSecond = 100;
+    }
+
     public static final class VisionConstants {
         //Ensure measurements are in METERS
         public static final double kBoilerTargetTopHeight = 0;
@@ -287,7 +343,23 @@ public final class Constants {
         public static final double kMaxTrackerDistance = 18.0;
         public static final double kMaxGoalTrackAge = 1.0;  // cp had 1.0
         public static final double kCameraFrameRate = 30.0;
+        //Goal tracker sizes, fixed so the per-loop cost is bounded. A track holds more observations
+        //than kCameraFrameRate * kMaxGoalTrackAge so a faster camera still reaches full stability
+        public static final int kMaxGoalTracks = 16;
+        public static final int kMaxDetectionsPerUpdate = 16;
+        public static final int kGoalTrackCapacity = 128;
+        //Per-track constant velocity Kalman filter on the goal's field position
+        public static final double kGoalTrackMeasurementStdDevMeters = 0.15;
+        public static final double kGoalTrackAccelStdDev = 1.0; //m/s^2, how fast the apparent goal position can change
+        public static final double kGoalTrackInitialVelocityStdDev = 0.5;
+        //Default goal ranking weights, tunable from the dashboard under Vision/
+        public static final double kTrackStabilityWeight = 1.0;
+        public static final double kTrackAgeWeight = 1.0;
+        public static final double kTrackSwitchingWeight = 3.0;
         public static final int kCameraBaudRate = 115200;
+        //Block in the JeVois serial read until a line arrives instead of polling every 20ms
+        public static final boolean kJevoisBlockingReads = true;
+        public static final double kJevoisReadTimeoutSeconds = 0.1;
 
         //Ensure measurements are in METERS
         public static final double kCameraXOffset = 0;
@@ -296,6 +368,55 @@ public final class Constants {
         public static final double kCameraPitchAngleDegrees = 0;
         public static final double kCameraYawAngleDegrees = 0;
 
+        //Limelight mount, used to turn ty into a range to the power port. MEASURE these on the robot
+        public static final double kLimelightHeightMeters = 0.60;
+        public static final double kLimelightPitchDegrees = 25.0;
+        public static final double kPowerPortTargetHeightMeters = 2.28; // 89.75in, middle of the outer port tape
+        //Image capture time, not included in tl. Limelight docs say to add at least 11ms
+        public static final double kLimelightCaptureLatencySeconds = 0.011;
+        //Poll the Limelight from its own Notifier at kLimelightPollPeriodSeconds, instead of in periodic()
+        public static final boolean kLimelightNotifierMode = true;
+        public static final double kLimelightPollPeriodSeconds = 0.005;
+        //The Limelight flushes a frame's entries together, read them once none changed for this long
+        public static final double kLimelightSettleSeconds = 0.002;
+        //hasTarget() goes false when the newest frame was captured longer ago than this
+        public static final double kLimelightStaleSeconds = 0.5;
+        //The JeVois isn't on the robot right now, turn on to fuse it with the Limelight
+        public static final boolean kUseJevois = false;
+
+    }
+
+    public static final class PoseEstimatorConstants {
+        //Turn on once the vision constants above have been measured. When off, getPose() is pure wheel odometry
+        public static final boolean kUsePoseEstimator = false;
+
+        //Starting uncertainty after a reset
+        public static final double kInitialXYStdDevMeters = 0.1;
+        public static final double kInitialThetaStdDevRadians = Math.toRadians(2.0);
+
+        //Process noise: variance added per meter driven / radian turned, plus a small floor per second
+        public static final double kXYVariancePerMeter = 0.05 * 0.05;
+        public static final double kThetaVariancePerRadian = 0.02 * 0.02;
+        public static final double kXYVariancePerSecond = 1e-4;
+        public static final double kThetaVariancePerSecond = 1e-5;
+
+        //Measurement noise
+        public static final double kGyroStdDevRadians = Math.toRadians(1.0);
+        public static final double kVisionStdDevMeters = 0.15;
+
+        //Bound the work done per loop
+        public static final int kMaxVisionUpdatesPerLoop = 4;
+        //Mahalanobis gate for vision updates (chi-squared, 2 dof, 99%)
+        public static final double kVisionGate = 9.21;
+        //After this many rejected vision updates in a row, assume the estimate has drifted and widen its uncertainty
+        public static final int kMaxConsecutiveRejects = 25;
+        public static final double kRejectInflationXYStdDevMeters = 0.5;
+        public static final double kRejectInflationThetaStdDevRadians = Math.toRadians(5.0);
+
+        //Power port (middle of the outer port) in the odometry frame, whose origin is the robot's starting pose
+        //on the initiation line facing the port: the line is 3.05m from the wall, plus half the robot. MEASURE
+        public static final double kGoalXMeters = 3.45;
+        public static final double kGoalYMeters = 0.0;
     }
 
     public static final class DriveConstantsOrig {
@@ -10,6 +10,7 @@ package frc.robot;
 import edu.wpi.first.cameraserver.CameraServer;
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.TimedRobot;
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.Command;
 import edu.wpi.first.wpilibj2.command.CommandScheduler;
@@ -17,13 +18,27 @@ import frc.robot.subsystems.DriveSubsystem;
 import frc.robot.subsystems.IntakeSubsystem;
 import frc.robot.subsystems.JevoisVisionSubsystem;
 import frc.robot.Constants.AutoConstants;
+import frc.robot.Constants.CanConstants;
+import frc.robot.Constants.PoseEstimatorConstants;
+import frc.robot.Constants.VisionConstants;
 import frc.robot.Constants.OpConstants.LedOption;
 import frc.robot.autonomous._NamedAutoMode;
 import frc.robot.subsystems.ColorWheelSubsystem;
 import frc.robot.subsystems.LedStringSubsystem;
 import frc.robot.subsystems.LimeLightSubsystem;
+import frc.robot.subsystems.PoseEstimatorSubsystem;
 import frc.robot.subsystems.SequencerSubsystem;
 import frc.robot.subsystems.ShootClimbSubsystem;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.util.CanDeviceManager;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotorConfigurator;
+import frc.robot.util.MatchPhase;
+import frc.robot.util.RobotFrame;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+import frc.robot.util.TelemetryPublisher.StringEntry;
 
 /**
  * The VM is configured to automatically run this class, and to call the
@@ -40,13 +55,40 @@ public class Robot extends TimedRobot {
   // The robot's subsystems
   public DriveSubsystem m_robotDrive;
   public LimeLightSubsystem m_vision;
+  public JevoisVisionSubsystem m_jevois;
+  public VisionSubsystem m_visionFusion;
   public IntakeSubsystem m_intake;
   public SequencerSubsystem m_sequencer;
   public ShootClimbSubsystem m_shootclimb;
   public ColorWheelSubsystem m_colorwheel;
   public LedStringSubsystem m_ledstring;
+  public PoseEstimatorSubsystem m_poseEstimator;
+
+  // dashboard, everything periodic goes through the TelemetryPublisher
+  private final TelemetryPublisher m_telemetry = TelemetryPublisher.getInstance();
+  private final BooleanEntry m_lowSensorEntry = m_telemetry.addBoolean("LowSensor", TelemetryPublisher.kFast);
+  private final BooleanEntry m_midSensorEntry = m_telemetry.addBoolean("MidSensor", TelemetryPublisher.kFast);
+  private final BooleanEntry m_highSensorEntry = m_telemetry.addBoolean("HighSensor", TelemetryPublisher.kFast);
+  private final NumberEntry m_powerCellCountEntry = m_telemetry.addNumber("PowerCellCount", TelemetryPublisher.kFast, 0);
+  private final StringEntry m_intakeStateEntry = m_telemetry.addString("Intake State", TelemetryPublisher.kFast);
+
+  // loop timing, the subsystems and commands add their own sections
+  private final LoopProfiler m_profiler = LoopProfiler.getInstance();
+  private final LoopProfiler.Section m_loopProfile = m_profiler.addSection("Robot.loopFunc()", kDefaultPeriod);
+  private final LoopProfiler.Section m_schedulerProfile = m_profiler.addSection("CommandScheduler.run()", kDefaultPeriod);
+  private final LoopProfiler.Section m_displayEncodersProfile = m_profiler.addSection("DriveSubsystem.displayEncoders()");
+  private final LoopProfiler.Section m_publishProfile = m_profiler.addSection("TelemetryPublisher.publish()");
+  private final LoopProfiler.Section m_sampleProfile = m_profiler.addSection("RobotFrame.sample()");
+
+  // every sensor, read once at the top of the loop
+  private final RobotFrame m_frame = RobotFrame.getInstance();
+  private final CanDeviceManager m_can = CanDeviceManager.getInstance();
+  private final MotorConfigurator m_configurator = MotorConfigurator.getInstance();
 
   String autoCode = AutoConstants.kDEFAULT_AUTO_CODE;
+  // auto mode built ahead of time in disabledPeriodic, so autonomousInit doesn't have to build trajectories
+  _NamedAutoMode preparedAutoMode = null;
+  String preparedAutoCode = null;
 
   private void initSubsystems(){
     // initial SubSystems to at rest states
@@ -71,20 +113,46 @@ public class Robot extends TimedRobot {
     m_ledstring = new LedStringSubsystem();
     m_robotDrive = new DriveSubsystem();
     m_vision = new LimeLightSubsystem();
+    if (VisionConstants.kUseJevois) {
+      m_jevois = new JevoisVisionSubsystem();
+      m_visionFusion = new VisionSubsystem(m_robotDrive, m_vision, m_jevois);
+    } else {
+      m_visionFusion = new VisionSubsystem(m_robotDrive, m_vision);
+    }
     m_intake = new IntakeSubsystem(m_ledstring);
     m_sequencer = new SequencerSubsystem(m_ledstring);
     m_shootclimb = new ShootClimbSubsystem(m_ledstring);
     m_colorwheel = null; //new ColorWheelSubsystem();
 
+    // the subsystems declared their motor controller configs, write them while the rest of robotInit runs
+    m_configurator.start();
+
     m_robotDrive.zeroHeading();
 
+    if (PoseEstimatorConstants.kUsePoseEstimator) {
+      m_poseEstimator = new PoseEstimatorSubsystem(m_robotDrive);
+      m_poseEstimator.setGoalLandmark(PoseEstimatorConstants.kGoalXMeters, PoseEstimatorConstants.kGoalYMeters);
+      m_robotDrive.setPoseEstimator(m_poseEstimator);
+      m_visionFusion.setPoseEstimator(m_poseEstimator);
+    }
+
     // Instantiate our RobotContainer. This will perform all our button bindings,
     // and put our
     // autonomous chooser on the dashboard.
-    m_robotContainer = new RobotContainer(m_ledstring, m_robotDrive, m_intake, m_sequencer, m_shootclimb, m_vision);
+    m_robotContainer = new RobotContainer(m_ledstring, m_robotDrive, m_intake, m_sequencer, m_shootclimb, m_visionFusion);
 
+    // everything is configured before initSubsystems() drives anything
+    m_configurator.finish();
+    // a factory reset may have put status frames back to their defaults
+    m_can.applyAll();
     initSubsystems();
 
+    // the subsystems registered their motor controllers, add what's left on the bus and show the schedule
+    m_can.addFixedLoad("PDP", CanConstants.kPdpFramesPerSecond);
+    m_can.addFixedLoad("PCM 0", CanConstants.kPcmFramesPerSecond);
+    m_can.addFixedLoad("PCM 1", CanConstants.kPcmFramesPerSecond);
+    m_can.printSchedule();
+
     SmartDashboard.putString("INIT CELL COUNT", "3"); // How much ammo we start with
 
     SmartDashboard.putString("AUTO CODE", AutoConstants.kDEFAULT_AUTO_CODE); // see above for explanation
@@ -114,9 +182,36 @@ public class Robot extends TimedRobot {
     // commands, running already-scheduled commands, removing finished or interrupted commands,
     // and running subsystem periodic() methods. This must be called from the robot's periodic
     // block in order for anything in the Command-based framework to work.
+    m_schedulerProfile.start();
     CommandScheduler.getInstance().run();
+    m_schedulerProfile.stop();
 
+    m_displayEncodersProfile.start();
     m_robotDrive.displayEncoders();
+    m_displayEncodersProfile.stop();
+
+    // all of this loop's dashboard values in one batch
+    double now = Timer.getFPGATimestamp();
+    m_can.periodic(now);
+
+    m_publishProfile.start();
+    m_telemetry.publish(now);
+    m_publishProfile.stop();
+  }
+
+  /**
+   * Samples the sensors into the robot frame before anything else runs, and times the whole loop
+   * (sampling, mode periodic, robotPeriodic and the dashboard/LiveWindow updates).
+   */
+  @Override
+  protected void loopFunc() {
+    m_loopProfile.start();
+    m_sampleProfile.start();
+    m_frame.sample(Timer.getFPGATimestamp());
+    m_sampleProfile.stop();
+    super.loopFunc();
+    m_loopProfile.stop();
+    m_profiler.report(Timer.getFPGATimestamp());
   }
 
   /**
@@ -124,20 +219,38 @@ public class Robot extends TimedRobot {
    */
   @Override
   public void disabledInit() {
-    m_robotDrive.suspendCSVWriter();
+    m_robotDrive.setLogPhase(MatchPhase.DISABLED);
+    m_profiler.setPhase(MatchPhase.DISABLED);
+    m_robotDrive.suspendLogWriters();
   }
 
   @Override
   public void disabledPeriodic() {
     m_ledstring.option(LedOption.TEAM);
     m_robotDrive.resetEncoders();
-    if(System.currentTimeMillis() % 100 == 0){
-      SmartDashboard.putBoolean("LowSensor",  m_sequencer.lowSensorHasBall());
-      SmartDashboard.putBoolean("MidSensor",  m_sequencer.midSensorHasBall());
-      SmartDashboard.putBoolean("HighSensor",  m_sequencer.highSensorHasBall());
+    m_lowSensorEntry.set(m_sequencer.lowSensorHasBall());
+    m_midSensorEntry.set(m_sequencer.midSensorHasBall());
+    m_highSensorEntry.set(m_sequencer.highSensorHasBall());
+
+    // Build the selected auto (and its trajectories) while we are sitting disabled
+    String code = readAutoCode();
+    if(!code.equals(preparedAutoCode)){
+      System.out.println("Preparing autonomous mode for AUTO CODE --> " + code);
+      preparedAutoMode = m_robotContainer.getNamedAutonomousCommand(code);
+      preparedAutoCode = code;
     }
    }
 
+  private String readAutoCode(){
+    if (RobotBase.isReal()) {
+      autoCode = SmartDashboard.getString("AUTO CODE", autoCode);
+    }
+    if (autoCode == null || autoCode.length() < 2) {
+      autoCode = AutoConstants.kDEFAULT_AUTO_CODE;
+    }
+    return autoCode.toUpperCase();
+  }
+
   /**
    * This autonomous runs the autonomous command selected by your
    * {@link RobotContainer} class.
@@ -148,21 +261,24 @@ public class Robot extends TimedRobot {
     
     m_ledstring.option(LedOption.RAINBOW);
 
-    m_robotDrive.resumeCSVWriter();
+    m_robotDrive.setLogPhase(MatchPhase.AUTO);
+    m_profiler.setPhase(MatchPhase.AUTO);
+    m_robotDrive.resumeLogWriters();
     m_sequencer.setPowerCellCount((int) SmartDashboard.getNumber("INIT CELL COUNT", 3));
 
-    if (RobotBase.isReal()) {
-      autoCode = SmartDashboard.getString("AUTO CODE", autoCode);
-    }
-    System.out.println("AUTO CODE retrieved from Dashboard --> " + autoCode);
-    if (autoCode == null || autoCode.length() < 2) {
-      autoCode = AutoConstants.kDEFAULT_AUTO_CODE;
-    }
-    autoCode = autoCode.toUpperCase();
+    autoCode = readAutoCode();
     System.out.println("AUTO CODE being used by the software --> " + autoCode);
 
     m_autonomousCommand = null;
-    _NamedAutoMode namedAutoMode = m_robotContainer.getNamedAutonomousCommand(autoCode);
+    _NamedAutoMode namedAutoMode;
+    if(autoCode.equals(preparedAutoCode) && preparedAutoMode != null){
+      namedAutoMode = preparedAutoMode;
+    } else {
+      namedAutoMode = m_robotContainer.getNamedAutonomousCommand(autoCode);
+    }
+    // commands can't be shared between runs, build a fresh one next time we are disabled
+    preparedAutoMode = null;
+    preparedAutoCode = null;
     if(namedAutoMode != null){
       m_autonomousCommand = namedAutoMode.getCommand();
 
@@ -190,7 +306,9 @@ public class Robot extends TimedRobot {
   public void teleopInit() {
     CommandScheduler.getInstance().cancelAll();
     m_sequencer.setPowerCellCount((int) SmartDashboard.getNumber("INIT CELL COUNT", 3));
-    m_robotDrive.resumeCSVWriter();
+    m_robotDrive.setLogPhase(MatchPhase.TELEOP);
+    m_profiler.setPhase(MatchPhase.TELEOP);
+    m_robotDrive.resumeLogWriters();
 
     initSubsystems();
     
@@ -205,28 +323,17 @@ public class Robot extends TimedRobot {
   }
 
 
-  public static long millis = System.currentTimeMillis();
-  public static boolean doSD(){
-    long now = System.currentTimeMillis();
-    if(now - millis > 300){
-      millis = now;
-      return true;
-    }
-    return false;
-  }
-
   /**
    * This function is called periodically during operator control.
    */
   @Override
   public void teleopPeriodic() {
-    if(doSD()){
-      SmartDashboard.putBoolean("LowSensor",  m_sequencer.lowSensorHasBall());
-      SmartDashboard.putBoolean("MidSensor",  m_sequencer.midSensorHasBall());
-      SmartDashboard.putBoolean("HighSensor",  m_sequencer.highSensorHasBall());
-      SmartDashboard.putNumber("PowerCellCount",  (int)m_sequencer.getPowerCellCount());
-      SmartDashboard.putString("Intake State",  m_intake.getIntakeState());
-      //SmartDashboard.putNumber("Climb Encoder", m_shootclimb.getClimbEncoderValue());
+    m_lowSensorEntry.set(m_sequencer.lowSensorHasBall());
+    m_midSensorEntry.set(m_sequencer.midSensorHasBall());
+    m_highSensorEntry.set(m_sequencer.highSensorHasBall());
+    m_powerCellCountEntry.set((int)m_sequencer.getPowerCellCount());
+    m_intakeStateEntry.set(m_intake.getIntakeState());
+    //SmartDashboard.putNumber("Climb Encoder", m_shootclimb.getClimbEncoderValue());
 
     // switch((int)m_sequencer.getPowerCellCount()){
     //   case 1: m_ledstring.option(LedOption.BALLONE); break;
@@ -235,13 +342,14 @@ public class Robot extends TimedRobot {
     //   case 4: m_ledstring.option(LedOption.BALLFOUR); break;
     //   case 5: m_ledstring.option(LedOption.GREEN); break;
     // }
-    }
   }
 
   @Override
   public void testInit() {
     // Cancels all running commands at the start of test mode.
     CommandScheduler.getInstance().cancelAll();
+    m_robotDrive.setLogPhase(MatchPhase.TEST);
+    m_profiler.setPhase(MatchPhase.TEST);
     SmartDashboard.putNumber("Shoot Motor % (0-1)", 0.5);
   }
 
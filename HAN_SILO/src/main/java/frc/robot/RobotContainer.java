@@ -32,9 +32,9 @@ import frc.robot.subsystems.DriveSubsystem;
 import frc.robot.subsystems.IntakeSubsystem;
 import frc.robot.subsystems.JevoisVisionSubsystem;
 import frc.robot.subsystems.LedStringSubsystem;
-import frc.robot.subsystems.LimeLightSubsystem;
 import frc.robot.subsystems.SequencerSubsystem;
 import frc.robot.subsystems.ShootClimbSubsystem;
+import frc.robot.subsystems.VisionSubsystem;
 
 //import edu.wpi.first.wpilibj2.command.ParallelCommandGroup;
 //import edu.wpi.first.wpilibj2.command.Command;
@@ -62,7 +62,7 @@ public class RobotContainer {
   private IntakeSubsystem m_intake;
   private ShootClimbSubsystem m_shootclimb;
   private SequencerSubsystem m_sequencer;
-  private LimeLightSubsystem m_vision;
+  private VisionSubsystem m_vision;
 
   // Controller Triggers
   public enum HanTriggers {
@@ -76,7 +76,7 @@ public class RobotContainer {
    * @throws _NotImplementedProperlyException
    */
   public RobotContainer(LedStringSubsystem m_ledstring, DriveSubsystem m_robotDrive, IntakeSubsystem m_intake, SequencerSubsystem m_sequencer,
-      ShootClimbSubsystem m_shootclimb, LimeLightSubsystem m_vision) {
+      ShootClimbSubsystem m_shootclimb, VisionSubsystem m_vision) {
     this.m_ledstring = m_ledstring;
     this.m_robotDrive = m_robotDrive;
     this.m_intake = m_intake;
@@ -137,9 +137,10 @@ public class RobotContainer {
     //new JoystickButton(m_operatorController, 3).whileActiveContinuous(new IntakeSeqCommand(m_intake, m_sequencer));
     new JoystickButton(m_operatorController, 14).whileActiveContinuous(new SeqEjectCommand(m_intake, m_sequencer), true);
 
-    //Map right bumper to rotation lock to power port
+    //Map right bumper to rotation lock to power port, with the shooter spun up for the shot on the move
     new JoystickButton(m_driverController, XboxConstants.kRBumper)
-      .whenActive(new RotToPowerPortCommand(m_vision, m_robotDrive, m_driverController));
+      .whenActive(new RotToPowerPortCommand(m_vision, m_robotDrive, m_driverController)
+        .deadlineWith(new ShootOnTheMoveCommand(m_vision, m_shootclimb)));
 
     new JoystickButton(m_operatorController, 8) // convert -1 to +1 TO 0 to 1
       .whileActiveContinuous(() -> m_shootclimb.spinShooter((m_operatorController.getRawAxis(4)+1)/2))
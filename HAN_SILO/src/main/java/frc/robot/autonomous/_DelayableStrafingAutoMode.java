@@ -16,6 +16,8 @@ import edu.wpi.first.wpilibj2.command.SwerveControllerCommand;
 import frc.robot.Constants.AutoConstants;
 import frc.robot.Constants.DriveConstants;
 import frc.robot.subsystems.DriveSubsystem;
+import frc.robot.util.SampledTrajectory;
+import frc.robot.util.TrajectoryCache;
 import frc.robot.util.Utils;
 
 public class _DelayableStrafingAutoMode {
@@ -52,48 +54,6 @@ public class _DelayableStrafingAutoMode {
         return command;
     }
 
-    /**
-     * @param oldStates -- original list of states from the (calculated) trajectory
-     * @param finalRotationDegrees -- desired final pose rotation -- to assign to last state in list
-     * @return -- list of fixed-up (unrotated) states (except for the last one in the list)
-     */
-    List<Trajectory.State> unrotateTrajectory(List<Trajectory.State> oldStates, double finalRotationDegrees){
-        List<Trajectory.State> newStates = new ArrayList<Trajectory.State>();
-        int i = 0;
-        for(Trajectory.State state : oldStates){
-          //instead of rotating the pose by its inverse (dumb)...
-          //  Rotation2d newRot = state.poseMeters.getRotation().rotateBy(new Rotation2d(-state.poseMeters.getRotation().getRadians()));
-          //simply assign a new Rotation having 0 degrees...
-          double rotationDegrees = i++ == oldStates.size()-1 ? finalRotationDegrees : 0;
-          Pose2d newPose = new Pose2d(state.poseMeters.getTranslation(), new Rotation2d(Math.toRadians(rotationDegrees)));
-          newStates.add(new Trajectory.State(state.timeSeconds, 
-                                            state.velocityMetersPerSecond, 
-                                            state.accelerationMetersPerSecondSq, 
-                                            newPose, 
-                                            state.curvatureRadPerMeter));
-        }
-        return newStates;
-    }
-
-    /**
-     * @param oldStates -- original list of states from the (calculated) trajectory
-     * @param rotationDegrees -- desired final pose rotation -- to assign to last state in list
-     * @return -- list of fixed-up (unrotated) states (except for the last one in the list)
-     */
-    List<Trajectory.State> maintainTrajectory(List<Trajectory.State> oldStates, double rotationDegrees){
-        List<Trajectory.State> newStates = new ArrayList<Trajectory.State>();
-        for(Trajectory.State state : oldStates){
-          //simply assign a new Rotation having rotationDegrees degrees...
-          Pose2d newPose = new Pose2d(state.poseMeters.getTranslation(), new Rotation2d(Math.toRadians(rotationDegrees)));
-          newStates.add(new Trajectory.State(state.timeSeconds, 
-                                            state.velocityMetersPerSecond, 
-                                            state.accelerationMetersPerSecondSq, 
-                                            newPose, 
-                                            state.curvatureRadPerMeter));
-        }
-        return newStates;
-    }
-
     enum TrajectoryDirection {
         FWD,
         REV
@@ -121,7 +81,39 @@ public class _DelayableStrafingAutoMode {
         DO_NOTHING
     }
 
-    public Trajectory createTrajectory(String name, TrajectoryDirection dir, TrajectoryHeading mode, double value, double[][] points){
+    /**
+     * Hash of every input to createTrajectory(), including the constraints from Constants, so
+     * changing any of them invalidates the cached trajectory.
+     */
+    long trajectoryKey(TrajectoryDirection dir, TrajectoryHeading mode, double value, double[][] points){
+        return new TrajectoryCache.Key()
+            .add(TrajectoryCache.kVersion)
+            .add(AutoConstants.kTrajectorySampleDtSeconds)
+            .add(dir.ordinal())
+            .add(mode.ordinal())
+            .add(value)
+            .add(points)
+            .add(AutoConstants.kMaxSpeedMetersPerSecond)
+            .add(AutoConstants.kMaxAccelerationMetersPerSecondSquared)
+            .add(DriveConstants.kWheelBase)
+            .add(DriveConstants.kTrackWidth)
+            .get();
+    }
+
+    public SampledTrajectory createTrajectory(String name, TrajectoryDirection dir, TrajectoryHeading mode, double value, double[][] points){
+        long key = trajectoryKey(dir, mode, value, points);
+        SampledTrajectory trajectory = TrajectoryCache.load(key);
+        if(trajectory == null){
+            trajectory = generateTrajectory(dir, mode, value, points);
+            TrajectoryCache.save(key, trajectory);
+        }
+        if(AutoConstants.kPrintTrajectories){
+            Utils.printTrajectory(this.getClass().getSimpleName() + ": " + name, trajectory);
+        }
+        return trajectory;
+    }
+
+    SampledTrajectory generateTrajectory(TrajectoryDirection dir, TrajectoryHeading mode, double value, double[][] points){
         // waypoints
         List<Translation2d> waypoints = new ArrayList<Translation2d>();
         if(points.length > 2){
@@ -137,22 +129,23 @@ public class _DelayableStrafingAutoMode {
             // ending pose
             new Pose2d(points[points.length-1][0], points[points.length-1][1], new Rotation2d(Math.toRadians(points[points.length-1][2]))),
             createTrajectoryConfig(dir));
+        SampledTrajectory sampled = SampledTrajectory.fromTrajectory(trajectory, AutoConstants.kTrajectorySampleDtSeconds);
 
         switch(mode){
-            case UNROTATE: trajectory = new Trajectory(unrotateTrajectory(trajectory.getStates(), value)); break;
-            case MAINTAIN: trajectory = new Trajectory(maintainTrajectory(trajectory.getStates(), value)); break;
+            // heading 0 along the path, value degrees at the end
+            case UNROTATE: return sampled.withUnrotatedHeading(Math.toRadians(value));
+            // hold value degrees the whole way
+            case MAINTAIN: return sampled.withConstantHeading(Math.toRadians(value));
             case DO_NOTHING: // do not alter trajectory
         }
-        Utils.printTrajectory(this.getClass().getSimpleName() + ": " + name, trajectory);
-        return trajectory;
+        return sampled;
     }
 
     public _InstrumentedSwerveControllerCommand createSwerveCommand(DriveSubsystem m_robotDrive, String name, TrajectoryDirection dir, TrajectoryHeading mode, double value, double[][] points){
         return new _InstrumentedSwerveControllerCommand(
-            m_robotDrive.getCSVWriter(),
+            m_robotDrive.getLogWriter(),
             createTrajectory(name, dir, mode, value, points),
             m_robotDrive::getPose, //Functional interface to feed supplier
-            DriveConstants.kDriveKinematics,
 
             //Position controllers
             new PIDController(AutoConstants.kPXController, 0, 0),
@@ -160,7 +153,7 @@ public class _DelayableStrafingAutoMode {
             new ProfiledPIDController(AutoConstants.kPThetaController, 0, 0,
                                     AutoConstants.kThetaControllerConstraints),
 
-            m_robotDrive::setModuleStates,
+            m_robotDrive::setChassisSpeeds,
             m_robotDrive
         )
         {
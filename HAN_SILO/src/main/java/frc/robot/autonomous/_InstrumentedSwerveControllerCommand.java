@@ -6,20 +6,17 @@
 /*----------------------------------------------------------------------------*/
 package frc.robot.autonomous;
 
-import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.controller.PIDController;
 import edu.wpi.first.wpilibj.controller.ProfiledPIDController;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
-import edu.wpi.first.wpilibj.kinematics.ChassisSpeeds;
-import edu.wpi.first.wpilibj.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.wpilibj.kinematics.SwerveModuleState;
-import edu.wpi.first.wpilibj.trajectory.Trajectory;
 import edu.wpi.first.wpilibj2.command.CommandBase;
 import edu.wpi.first.wpilibj2.command.Subsystem;
-import frc.robot.util.ReflectingCSVWriter;
+import frc.robot.util.BinaryLogWriter;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.SampledTrajectory;
 import frc.robot.util.AutoSwerveDebug;
 
 import static edu.wpi.first.wpilibj.util.ErrorMessages.requireNonNullParam;
@@ -27,11 +24,10 @@ import static edu.wpi.first.wpilibj.util.ErrorMessages.requireNonNullParam;
 /**
  * A command that uses two PID controllers ({@link PIDController}) and a
  * ProfiledPIDController ({@link ProfiledPIDController}) to follow a trajectory
- * {@link Trajectory} with a swerve drive.
+ * {@link SampledTrajectory} with a swerve drive.
  *
- * <p>This command outputs the raw desired Swerve Module States ({@link SwerveModuleState})
- * in an array. The desired wheel and module rotation velocities should be taken
- * from those and used in velocity PIDs.
+ * <p>This command outputs robot relative chassis speeds as plain doubles, see
+ * {@link ChassisSpeedsOutput}, so following a path does not allocate module states.
  *
  * <p>The robot angle controller does not follow the angle given by
  * the trajectory but rather goes to the angle given in the final state of the trajectory.
@@ -39,21 +35,32 @@ import static edu.wpi.first.wpilibj.util.ErrorMessages.requireNonNullParam;
 
 @SuppressWarnings("MemberName")
 public class _InstrumentedSwerveControllerCommand extends CommandBase {
+  /**
+   * Receives robot relative chassis speeds, e.g. DriveSubsystem::setChassisSpeeds.
+   */
+  @FunctionalInterface
+  public interface ChassisSpeedsOutput {
+    void accept(double vxMetersPerSecond, double vyMetersPerSecond, double omegaRadiansPerSecond);
+  }
+
   private final Timer m_timer = new Timer();
-  private Pose2d m_finalPose;
+  private double m_finalHeadingRadians;
 
-  private Trajectory m_trajectory;
+  private SampledTrajectory m_trajectory;
+  private final SampledTrajectory.Sample m_desiredState = new SampledTrajectory.Sample();
   private Supplier<Pose2d> m_pose;
-  private SwerveDriveKinematics m_kinematics;
   private PIDController m_xController;
   private PIDController m_yController;
   private ProfiledPIDController m_thetaController;
-  private Consumer<SwerveModuleState[]> m_outputModuleStates;
-  private ReflectingCSVWriter csvWriter;
+  private ChassisSpeedsOutput m_outputChassisSpeeds;
+  private BinaryLogWriter<AutoSwerveDebug> logWriter;
+  private final AutoSwerveDebug m_debug = new AutoSwerveDebug();
+  private final LoopProfiler.Section m_executeProfile = LoopProfiler.getInstance().addSection("_InstrumentedSwerveControllerCommand.execute()");
+
   /**
    * Constructs a new SwerveControllerCommand that when executed will follow the provided
-   * trajectory. This command will not return output voltages but rather raw module states from the
-   * position controllers which need to be put into a velocity PID.
+   * trajectory. This command will not return output voltages but rather chassis speeds from the
+   * position controllers which need to be turned into module states and put into a velocity PID.
    *
    * <p>Note: The controllers will *not* set the outputVolts to zero upon completion of the path-
    * this is left to the user, since it is not appropriate for paths with nonstationary endstates.
@@ -64,34 +71,30 @@ public class _InstrumentedSwerveControllerCommand extends CommandBase {
    * @param trajectory         The trajectory to follow.
    * @param pose               A function that supplies the robot pose - use one of
    *                           the odometry classes to provide this.
-   * @param kinematics         The kinematics for the robot drivetrain.
    * @param xController        The Trajectory Tracker PID controller
    *                           for the robot's x position.
    * @param yController        The Trajectory Tracker PID controller
    *                           for the robot's y position.
    * @param thetaController    The Trajectory Tracker PID controller
    *                           for angle for the robot.
-   * @param outputModuleStates The raw output module states from the
+   * @param outputChassisSpeeds The robot relative chassis speeds from the
    *                           position controllers.
    * @param requirements       The subsystems to require.
    */
 
   @SuppressWarnings("ParameterName")
   public _InstrumentedSwerveControllerCommand(
-                               ReflectingCSVWriter<AutoSwerveDebug> csvWriter,
-                               Trajectory trajectory,
+                               BinaryLogWriter<AutoSwerveDebug> logWriter,
+                               SampledTrajectory trajectory,
                                Supplier<Pose2d> pose,
-                               SwerveDriveKinematics kinematics,
                                PIDController xController,
                                PIDController yController,
                                ProfiledPIDController thetaController,
-
-                               Consumer<SwerveModuleState[]> outputModuleStates,
+                               ChassisSpeedsOutput outputChassisSpeeds,
                                Subsystem... requirements) {
-    this.csvWriter = csvWriter;
+    this.logWriter = logWriter;
     m_trajectory = requireNonNullParam(trajectory, "trajectory", "SwerveControllerCommand");
     m_pose = requireNonNullParam(pose, "pose", "SwerveControllerCommand");
-    m_kinematics = requireNonNullParam(kinematics, "kinematics", "SwerveControllerCommand");
 
     m_xController = requireNonNullParam(xController,
       "xController", "SwerveControllerCommand");
@@ -100,15 +103,15 @@ public class _InstrumentedSwerveControllerCommand extends CommandBase {
     m_thetaController = requireNonNullParam(thetaController,
       "thetaController", "SwerveControllerCommand");
 
-    m_outputModuleStates = requireNonNullParam(outputModuleStates,
-      "leftFrontOutput", "SwerveControllerCommand");
+    m_outputChassisSpeeds = requireNonNullParam(outputChassisSpeeds,
+      "outputChassisSpeeds", "SwerveControllerCommand");
     addRequirements(requirements);
   }
 
   @Override
   public void initialize() {
     // Sample final pose to get robot rotation
-    m_finalPose = m_trajectory.sample(m_trajectory.getTotalTimeSeconds()).poseMeters;
+    m_finalHeadingRadians = m_trajectory.getFinalHeadingRadians();
 
     m_timer.reset();
     m_timer.start();
@@ -118,47 +121,41 @@ public class _InstrumentedSwerveControllerCommand extends CommandBase {
   @Override
   @SuppressWarnings("LocalVariableName")
   public void execute() {
+    m_executeProfile.start();
     double curTime = m_timer.get();
 
-    var desiredState = m_trajectory.sample(curTime);
-    var desiredPose = desiredState.poseMeters;
-  
-
-    Pose2d poseError = desiredPose.relativeTo(m_pose.get());
+    m_trajectory.sample(curTime, m_desiredState);
+    Pose2d pose = m_pose.get();
+    double poseX = pose.getTranslation().getX();
+    double poseY = pose.getTranslation().getY();
+    double poseHeading = pose.getRotation().getRadians();
 
-    csvWriter.add(new AutoSwerveDebug(curTime, 
-                                   desiredPose.getTranslation().getX(),
-                                   desiredPose.getTranslation().getY(),
-                                   desiredPose.getRotation().getDegrees(),
-                                   m_pose.get().getTranslation().getX(),
-                                   m_pose.get().getTranslation().getY(),
-                                   m_pose.get().getRotation().getDegrees()));
+    m_debug.update(curTime,
+                   m_desiredState.x,
+                   m_desiredState.y,
+                   Math.toDegrees(m_desiredState.headingRadians),
+                   poseX,
+                   poseY,
+                   Math.toDegrees(poseHeading));
+    logWriter.add(m_debug);
 
-    double targetXVel = m_xController.calculate(
-        m_pose.get().getTranslation().getX(),
-        desiredPose.getTranslation().getX());
+    double targetXVel = m_xController.calculate(poseX, m_desiredState.x);
 
-    double targetYVel = m_yController.calculate(
-        m_pose.get().getTranslation().getY(),
-        desiredPose.getTranslation().getY());
+    double targetYVel = m_yController.calculate(poseY, m_desiredState.y);
 
     // The robot will go to the desired rotation of the final pose in the trajectory,
     // not following the poses at individual states.
-    double targetAngularVel = m_thetaController.calculate(
-        m_pose.get().getRotation().getRadians(),
-        m_finalPose.getRotation().getRadians());
-
-    double vRef = desiredState.velocityMetersPerSecond;
-
-    targetXVel += vRef * poseError.getRotation().getCos();
-    targetYVel += vRef * poseError.getRotation().getSin();
-
-    var targetChassisSpeeds = new ChassisSpeeds(targetXVel, targetYVel, targetAngularVel);
+    double targetAngularVel = m_thetaController.calculate(poseHeading, m_finalHeadingRadians);
 
-    var targetModuleStates = m_kinematics.toSwerveModuleStates(targetChassisSpeeds);
+    double vRef = m_desiredState.velocityMetersPerSecond;
 
-    m_outputModuleStates.accept(targetModuleStates);
+    // rotation of the desired pose relative to the current pose
+    double errorHeading = m_desiredState.headingRadians - poseHeading;
+    targetXVel += vRef * Math.cos(errorHeading);
+    targetYVel += vRef * Math.sin(errorHeading);
 
+    m_outputChassisSpeeds.accept(targetXVel, targetYVel, targetAngularVel);
+    m_executeProfile.stop();
   }
 
   @Override
@@ -21,8 +21,10 @@ package frc.robot.commands;
 
 import frc.robot.subsystems.IntakeSubsystem;
 import frc.robot.subsystems.SequencerSubsystem;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 
 /**
  * An example command that uses an example subsystem.
@@ -33,6 +35,8 @@ public class Intake1ball extends CommandBase {
   private boolean low;
   private boolean mid;
   private boolean high;
+  private final BooleanEntry m_atSetpointEntry = TelemetryPublisher.getInstance().addBoolean("atsetpoint", TelemetryPublisher.kFast);
+  private final NumberEntry m_encoderEntry = TelemetryPublisher.getInstance().addNumber("encoder", TelemetryPublisher.kFast, 1);
 
   /**
    * Creates a new Intake Sequence Command.
@@ -94,8 +98,8 @@ public class Intake1ball extends CommandBase {
   // Returns true when the command should end.
   @Override
   public boolean isFinished() {
-    SmartDashboard.putBoolean("atsetpoint", m_SeqSubsystem.atSetpoint());
-    SmartDashboard.putNumber("encoder",m_SeqSubsystem.getencoder());
+    m_atSetpointEntry.set(m_SeqSubsystem.atSetpoint());
+    m_encoderEntry.set(m_SeqSubsystem.getencoder());
     return (m_SeqSubsystem.atSetpoint() || m_SeqSubsystem.highSensorHasBall());
     
   }
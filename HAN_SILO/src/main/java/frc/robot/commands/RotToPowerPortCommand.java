@@ -1,23 +1,45 @@
 package frc.robot.commands;
 
-import java.util.Optional;
-
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.XboxController;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
 import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.Constants.DriveConstants;
 import frc.robot.Constants.XboxConstants;
 import frc.robot.subsystems.DriveSubsystem;
-import frc.robot.subsystems.JevoisVisionSubsystem;
-import frc.robot.subsystems.LimeLightSubsystem;
-import frc.robot.vision.ShooterAimingParameters;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.util.AimController;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+import frc.robot.vision.ShotSolution;
 
+/**
+ * Holds the robot pointed at the tracked goal while the driver keeps control of translation.
+ * The rotation rate comes from an AimController, which feeds forward the robot's strafing.
+ * It points at the shot solver's aim point, which is the goal itself when the robot is still.
+ */
 public class RotToPowerPortCommand extends CommandBase {
+    private final LoopProfiler.Section m_executeProfile = LoopProfiler.getInstance().addSection("RotToPowerPortCommand.execute()");
 
-    private final LimeLightSubsystem m_vision;
+    private final VisionSubsystem m_vision;
     private final DriveSubsystem m_drive;
     private final XboxController m_driverController;
+    private final AimController m_aim = new AimController(DriveConstants.kAimP, DriveConstants.kAimD,
+        DriveConstants.kAimMaxRateRadiansPerSecond, DriveConstants.kAimToleranceRadians, DriveConstants.kAimSettleSeconds);
+    // {x, y, vx, vy, track id} of the goal, the shot, and robot relative chassis speeds, reused
+    private final double[] m_goal = new double[5];
+    private final ShotSolution m_solution = new ShotSolution();
+
+    private final TelemetryPublisher m_telemetry = TelemetryPublisher.getInstance();
+    private final BooleanEntry m_hasTargetEntry = m_telemetry.addBoolean("Vis_HasTarget", TelemetryPublisher.kEveryLoop);
+    private final NumberEntry m_targetAngleEntry = m_telemetry.addNumber("Vis_TargetAngle", TelemetryPublisher.kFast, 0.1);
+    private final NumberEntry m_settleTimeEntry = m_telemetry.addNumber("Vis_AimSettleTime", TelemetryPublisher.kEveryLoop, 0);
+    private final NumberEntry m_overshootEntry = m_telemetry.addNumber("Vis_AimOvershootDeg", TelemetryPublisher.kEveryLoop, 0);
+    private final double[] m_chassisSpeeds = new double[3];
 
-    public RotToPowerPortCommand(LimeLightSubsystem visionSubsystem, DriveSubsystem driveSubsystem, XboxController driveController){
+    public RotToPowerPortCommand(VisionSubsystem visionSubsystem, DriveSubsystem driveSubsystem, XboxController driveController){
         m_vision = visionSubsystem;
         m_drive = driveSubsystem;
         m_driverController = driveController;
@@ -25,28 +47,44 @@ public class RotToPowerPortCommand extends CommandBase {
 
     @Override
     public void initialize(){
-        m_drive.setStickControlledHeading(false);
-        m_vision.enableLED();
+        m_aim.reset(Timer.getFPGATimestamp());
+        m_vision.enableLEDs();
     }
 
     @Override
     public void execute(){
-        if(m_vision.hasTarget()){
-            SmartDashboard.putBoolean("Vis_HasTarget", true);
-            
-            double targetAngle = m_drive.getHeading() + m_vision.getLastTarget().getX();
-            SmartDashboard.putNumber("Vis_TargetAngle", targetAngle);
-            m_drive.setHeadingControllerGoal(targetAngle);
+        m_executeProfile.start();
+        double now = Timer.getFPGATimestamp();
+        if(m_vision.getGoal(now, m_goal) && m_vision.getShotSolution(m_solution)){
+            m_hasTargetEntry.set(true);
+
+            Pose2d pose = m_drive.getPose();
+            double heading = pose.getRotation().getRadians();
+            double cos = Math.cos(heading);
+            double sin = Math.sin(heading);
+            m_drive.getChassisSpeeds(m_chassisSpeeds);
+            double vx = m_chassisSpeeds[0] * cos - m_chassisSpeeds[1] * sin;
+            double vy = m_chassisSpeeds[0] * sin + m_chassisSpeeds[1] * cos;
+
+            double omega = m_aim.calculate(now, (int) m_goal[4], heading, pose.getX(), pose.getY(), vx, vy,
+                m_solution.getAimX(), m_solution.getAimY(), m_goal[2], m_goal[3]);
+            m_drive.setAimRate(omega);
+            m_targetAngleEntry.set(Math.toDegrees(m_aim.getTargetBearing()));
         } else {
-            SmartDashboard.putBoolean("Vis_HasTarget", false);
+            // nothing to aim at, give rotation back to the driver
+            m_drive.clearAimRate();
+            m_hasTargetEntry.set(false);
         }
+        m_executeProfile.stop();
     }
 
     @Override
     public void end(boolean interrupted){
-        m_drive.setStickControlledHeading(true);
-        m_vision.disableLED();
-        SmartDashboard.putBoolean("Vis_HasTarget", false);
+        m_drive.clearAimRate();
+        m_vision.disableLEDs();
+        m_hasTargetEntry.set(false);
+        m_settleTimeEntry.set(m_aim.getSettleTime());
+        m_overshootEntry.set(Math.toDegrees(m_aim.getOvershoot()));
     }
 
     @Override
@@ -55,4 +93,4 @@ public class RotToPowerPortCommand extends CommandBase {
         return !m_driverController.getRawButton(XboxConstants.kRBumper);
     } 
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,52 @@
+package frc.robot.commands;
+
+import edu.wpi.first.wpilibj2.command.CommandBase;
+import frc.robot.subsystems.ShootClimbSubsystem;
+import frc.robot.subsystems.VisionSubsystem;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+import frc.robot.vision.ShotSolution;
+
+/**
+ * Keeps the flywheel and hood at the shot solver's setpoints for the tracked goal, every loop, so the
+ * sequencer can feed as soon as the shooter is at speed without the robot stopping.
+ * Aiming is RotToPowerPortCommand's job, it points at the same aim point.
+ */
+public class ShootOnTheMoveCommand extends CommandBase {
+  private final LoopProfiler.Section m_executeProfile = LoopProfiler.getInstance().addSection("ShootOnTheMoveCommand.execute()");
+  private final VisionSubsystem m_vision;
+  private final ShootClimbSubsystem m_shootclimb;
+  private final ShotSolution m_solution = new ShotSolution();
+  private final NumberEntry m_rangeEntry = TelemetryPublisher.getInstance().addNumber("Shot Range", TelemetryPublisher.kFast, 0.01);
+  private final BooleanEntry m_inRangeEntry = TelemetryPublisher.getInstance().addBoolean("Shot In Range", TelemetryPublisher.kEveryLoop);
+
+  public ShootOnTheMoveCommand(VisionSubsystem vision, ShootClimbSubsystem shootclimb) {
+    m_vision = vision;
+    m_shootclimb = shootclimb;
+    addRequirements(shootclimb);
+  }
+
+  @Override
+  public void execute() {
+    m_executeProfile.start();
+    // with no goal keep the last setpoint, the goal usually drops out for a frame or two
+    if (m_vision.getShotSolution(m_solution)) {
+      m_shootclimb.spinShooterRpm(m_solution.getRpm(), m_solution.isHoodExtended());
+      m_rangeEntry.set(m_solution.getRange());
+      m_inRangeEntry.set(m_solution.isInRange() && m_solution.isConverged());
+    }
+    m_executeProfile.stop();
+  }
+
+  @Override
+  public void end(boolean interrupted) {
+    m_shootclimb.stopShooting();
+  }
+
+  @Override
+  public boolean isFinished() {
+    return false;
+  }
+}
@@ -10,6 +10,7 @@ package frc.robot.subsystems;
 import com.kauailabs.navx.frc.AHRS;
 
 import edu.wpi.first.wpilibj.AnalogInput;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.controller.ProfiledPIDController;
 //import edu.wpi.first.wpilibj.ADXRS450_Gyro;
@@ -18,25 +19,55 @@ import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
 import edu.wpi.first.wpilibj.geometry.Rotation2d;
 //import edu.wpi.first.wpilibj.interfaces.Gyro;
-import edu.wpi.first.wpilibj.kinematics.ChassisSpeeds;
 import edu.wpi.first.wpilibj.kinematics.SwerveDriveKinematics;
-import edu.wpi.first.wpilibj.kinematics.SwerveDriveOdometry;
 import edu.wpi.first.wpilibj.kinematics.SwerveModuleState;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.trajectory.TrapezoidProfile;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
-import frc.robot.Robot;
 import frc.robot.Constants.DriveConstants;
 import frc.robot.util.AutoSwerveDebug;
-import frc.robot.util.ReflectingCSVWriter;
-import frc.robot.util.SwerveModuleDebug;;
+import frc.robot.util.BinaryLogWriter;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MatchPhase;
+import frc.robot.util.PoseHistory;
+import frc.robot.util.RobotFrame;
+import frc.robot.util.SwerveKinematics;
+import frc.robot.util.SwerveModuleDebug;
+import frc.robot.util.SwerveOdometry;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 
 @SuppressWarnings("PMD.ExcessiveImports")
 public class DriveSubsystem extends SubsystemBase {
+  private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("DriveSubsystem.periodic()");
   private final Timer m_timer = new Timer();
 
-  private final ReflectingCSVWriter<AutoSwerveDebug> mCSVWriter1;
-  private final ReflectingCSVWriter<SwerveModuleDebug> mCSVWriter2;
+  private final BinaryLogWriter<AutoSwerveDebug> mLogWriter1;
+  private final BinaryLogWriter<SwerveModuleDebug> mLogWriter2;
+  private final SwerveModuleDebug mSwerveModuleDebug = new SwerveModuleDebug();
+
+  // dashboard
+  private final TelemetryPublisher m_telemetry = TelemetryPublisher.getInstance();
+  private final NumberEntry m_poseXEntry = m_telemetry.addNumber("pose x", TelemetryPublisher.kFast, 0.005);
+  private final NumberEntry m_poseYEntry = m_telemetry.addNumber("pose y", TelemetryPublisher.kFast, 0.005);
+  private final NumberEntry m_rotDegEntry = m_telemetry.addNumber("rot deg", TelemetryPublisher.kFast, 0.1);
+  private final NumberEntry m_headingRadiansEntry = m_telemetry.addNumber("heading radians", TelemetryPublisher.kFast, 0.002);
+  private final NumberEntry m_headingEntry = m_telemetry.addNumber("Heading", TelemetryPublisher.kFast, 0.1);
+  private final NumberEntry m_rawGyroEntry = m_telemetry.addNumber("raw gyro", TelemetryPublisher.kFast, 0.1);
+  private final BooleanEntry m_gyroCalibratingEntry = m_telemetry.addBoolean("gyro is calibrating", TelemetryPublisher.kSlow);
+  private final NumberEntry m_droppedRecordsEntry = m_telemetry.addNumber("log dropped records", TelemetryPublisher.kSlow, 0);
+  // absolute (volts) then relative turning encoders, leftFront, rightFront, leftRear, rightRear
+  private final NumberEntry[] m_absEncoderEntries = {
+    m_telemetry.addNumber("leftFrontAbsEncoder", TelemetryPublisher.kFast, 0.001),
+    m_telemetry.addNumber("rightFrontAbsEncoder", TelemetryPublisher.kFast, 0.001),
+    m_telemetry.addNumber("leftRearAbsEncoder", TelemetryPublisher.kFast, 0.001),
+    m_telemetry.addNumber("rightRearAbsEncoder", TelemetryPublisher.kFast, 0.001)};
+  private final NumberEntry[] m_relEncoderEntries = {
+    m_telemetry.addNumber("leftFrontRelEncoder", TelemetryPublisher.kFast, 0.01),
+    m_telemetry.addNumber("rightFrontRelEncoder", TelemetryPublisher.kFast, 0.01),
+    m_telemetry.addNumber("leftRearRelEncoder", TelemetryPublisher.kFast, 0.01),
+    m_telemetry.addNumber("rightRearRelEncoder", TelemetryPublisher.kFast, 0.01)};
 
   private final ProfiledPIDController headingController
      = new ProfiledPIDController(DriveConstants.kTurnP, DriveConstants.kTurnI, DriveConstants.kTurnD,
@@ -49,11 +80,18 @@ public class DriveSubsystem extends SubsystemBase {
   //private double headingControllerOutput = 0;
 
   private boolean stickControlledHeading = true;
+  // rotation rate from an AimController, overrides the stick and heading controller while set
+  private boolean m_aimActive = false;
+  private double m_aimRate = 0;
   
   private final AnalogInput leftFrontAbsEncoder;
   private final AnalogInput rightFrontAbsEncoder;
   private final AnalogInput leftRearAbsEncoder;
   private final AnalogInput rightRearAbsEncoder;
+  private final AnalogInput[] m_absEncoders;
+
+  // this loop's sensor readings, see sample()
+  private final RobotFrame m_frame = RobotFrame.getInstance();
   
   private double driveSpeedScaler = 1.0;
 
@@ -79,9 +117,32 @@ public class DriveSubsystem extends SubsystemBase {
   //private final Gyro a_gyro = new ADXRS450_Gyro();
   private final AHRS m_gyro = new AHRS(SPI.Port.kMXP);
 
+  private final SwerveModule[] m_modules = {m_leftFront, m_rightFront, m_leftRear, m_rightRear};
+
+  // Primitive kinematics so drive() and odometry don't allocate module states every loop
+  private final SwerveKinematics m_kinematics =
+      new SwerveKinematics(DriveConstants.kModuleXMeters, DriveConstants.kModuleYMeters);
+  private final double[] m_desiredSpeeds = new double[4];
+  private final double[] m_desiredAngles = new double[4];
+  // module states read by the odometry thread, the robot loop uses the frame
+  private final double[] m_odometrySpeeds = new double[4];
+  private final double[] m_odometryAngles = new double[4];
+  private boolean m_headingControllerActive = false;
+
   // Odometry class for tracking robot pose
-  SwerveDriveOdometry m_odometry =
-      new SwerveDriveOdometry(DriveConstants.kDriveKinematics, getAngle());
+  private final SwerveOdometry m_odometry = new SwerveOdometry(m_kinematics, getGyroRadians());
+
+  // Timestamped odometry so vision can use the pose from when a frame was captured
+  private final PoseHistory m_poseHistory = new PoseHistory(DriveConstants.kPoseHistoryCapacity);
+
+  // Latest odometry pose. Pose2d is immutable, so publishing a new reference is all the
+  // synchronization getPose() needs; only updateOdometry()/resetOdometry() lock m_odometry.
+  private volatile Pose2d m_latestPose = new Pose2d();
+  private double m_latestX, m_latestY, m_latestTheta;
+  private final Notifier m_odometryNotifier;
+
+  // When set, getPose()/getPoseAt() return the fused estimate instead of raw odometry
+  private PoseEstimatorSubsystem m_poseEstimator = null;
 
   /**
    * Creates a new DriveSubsystem.
@@ -92,6 +153,7 @@ public class DriveSubsystem extends SubsystemBase {
     rightFrontAbsEncoder = new AnalogInput(1);
     leftRearAbsEncoder = new AnalogInput(2);
     rightRearAbsEncoder = new AnalogInput(3);
+    m_absEncoders = new AnalogInput[] {leftFrontAbsEncoder, rightFrontAbsEncoder, leftRearAbsEncoder, rightRearAbsEncoder};
 
     if(RobotBase.isReal()){
       if(leftFrontAbsEncoder == null || rightFrontAbsEncoder == null || leftRearAbsEncoder == null || rightRearAbsEncoder == null){
@@ -101,18 +163,41 @@ public class DriveSubsystem extends SubsystemBase {
     headingController.setTolerance(DriveConstants.kTurnToleranceDeg, DriveConstants.kTurnRateToleranceDegPerS);
     //headingController.enableContinuousInput(-180, 180);
 
-    mCSVWriter1 = new ReflectingCSVWriter<>(AutoSwerveDebug.class);
-    mCSVWriter2 = new ReflectingCSVWriter<>(SwerveModuleDebug.class);
+    mLogWriter1 = new BinaryLogWriter<>(AutoSwerveDebug.class);
+    mLogWriter2 = new BinaryLogWriter<>(SwerveModuleDebug.class);
     m_timer.reset();
     m_timer.start();
+
+    if(DriveConstants.kUseOdometryThread){
+      m_odometryNotifier = new Notifier(this::updateOdometry);
+      m_odometryNotifier.setName("Odometry");
+      m_odometryNotifier.startPeriodic(DriveConstants.kOdometryPeriodSeconds);
+    } else {
+      m_odometryNotifier = null;
+    }
+
+    m_frame.addSampler(this::sample);
+  }
+
+  /**
+   * Reads the gyro and every module's encoders into the robot frame, once at the top of the loop.
+   */
+  private void sample(RobotFrame frame) {
+    frame.gyroAngleDegrees = m_gyro.getAngle();
+    frame.gyroRateDegreesPerSecond = m_gyro.getRate();
+    frame.gyroCalibrating = m_gyro.isCalibrating();
+    for(int i = 0; i < m_modules.length; i++){
+      m_modules[i].sample(frame, i);
+      frame.moduleAbsEncoderVolts[i] = m_absEncoders[i].getVoltage();
+    }
   }
 
   public void setDriveSpeedScaler(double axis){
     this.driveSpeedScaler = 0.5 * (axis + 1);
   }
 
-  public ReflectingCSVWriter getCSVWriter() {
-    return mCSVWriter1;
+  public BinaryLogWriter<AutoSwerveDebug> getLogWriter() {
+    return mLogWriter1;
   }
 
 /**
@@ -121,8 +206,19 @@ public class DriveSubsystem extends SubsystemBase {
    * @return The angle of the robot.
    */
   public Rotation2d getAngle() {
+    return new Rotation2d(toRadians(m_frame.gyroAngleDegrees));
+  }
+
+  /**
+   * Reads the gyro now instead of using the frame, for resetting odometry.
+   */
+  private double getGyroRadians() {
+    return toRadians(m_gyro.getAngle());
+  }
+
+  private static double toRadians(double gyroAngleDegrees) {
     // Negating the angle because WPILib gyros are CW positive.
-    return Rotation2d.fromDegrees(m_gyro.getAngle() * (DriveConstants.kGyroReversed ? -1.0 : 1.0));
+    return Math.toRadians(gyroAngleDegrees * (DriveConstants.kGyroReversed ? -1.0 : 1.0));
   }
 
   /*
@@ -135,35 +231,67 @@ public class DriveSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
-    resumeCSVWriter();
+    m_periodicProfile.start();
+    resumeLogWriters();
 
     //SmartDashboard.putNumber("headingController In", getHeading());
     //headingControllerOutput = headingController.calculate(MathUtil.clamp(getHeading(), -180, 180));
     //SmartDashboard.putNumber("headingController Out", headingControllerOutput);
 
-    // Update the odometry in the periodic block
-    double headingRadians = Math.toRadians(getHeading());
-    m_odometry.update(
-        new Rotation2d(headingRadians),
-        m_leftFront.getState(),              // leftFront, rightFront, leftRear, rightRear
-        m_rightFront.getState(),
-        m_leftRear.getState(),
-        m_rightRear.getState());
+    // Update the odometry in the periodic block unless the odometry thread is doing it
+    if(m_odometryNotifier == null){
+      updateOdometry(m_frame.timestamp, m_frame.gyroAngleDegrees, m_frame.moduleVelocity, m_frame.moduleAngleRadians);
+    }
         
-    if(Robot.doSD()){
-      SmartDashboard.putNumber("pose x", m_odometry.getPoseMeters().getTranslation().getX());
-      SmartDashboard.putNumber("pose y", m_odometry.getPoseMeters().getTranslation().getY());
-      SmartDashboard.putNumber("rot deg", m_odometry.getPoseMeters().getRotation().getDegrees());
-      SmartDashboard.putNumber("heading radians", headingRadians);    
-      SmartDashboard.putNumber("raw gyro", m_gyro.getAngle());
-      SmartDashboard.putBoolean("gyro is calibrating", m_gyro.isCalibrating());
+    Pose2d pose = m_latestPose;
+    m_poseXEntry.set(pose.getTranslation().getX());
+    m_poseYEntry.set(pose.getTranslation().getY());
+    m_rotDegEntry.set(pose.getRotation().getDegrees());
+    m_headingRadiansEntry.set(Math.toRadians(getHeading()));
+    m_rawGyroEntry.set(m_frame.gyroAngleDegrees);
+    m_gyroCalibratingEntry.set(m_frame.gyroCalibrating);
+    m_droppedRecordsEntry.set(mLogWriter1.getDroppedRecords() + mLogWriter2.getDroppedRecords());
+
+    mSwerveModuleDebug.update(m_timer.get(),
+                              m_leftFront.getDebugValues(),
+                              m_rightFront.getDebugValues(),
+                              m_leftRear.getDebugValues(),
+                              m_rightRear.getDebugValues());
+    mLogWriter2.add(mSwerveModuleDebug);
+    m_periodicProfile.stop();
+  }
+
+  /**
+   * Reads the gyro and module encoders and advances odometry. Runs on the odometry Notifier thread
+   * when DriveConstants.kUseOdometryThread is set, so it can't use the robot frame.
+   */
+  private void updateOdometry() {
+    for(int i = 0; i < m_modules.length; i++){
+      m_odometrySpeeds[i] = m_modules[i].getVelocity();
+      m_odometryAngles[i] = m_modules[i].getAngleRadians();
     }
+    updateOdometry(Timer.getFPGATimestamp(), m_gyro.getAngle(), m_odometrySpeeds, m_odometryAngles);
+  }
 
-    mCSVWriter2.add(new SwerveModuleDebug(m_timer.get(),
-                                          m_leftFront.getDebugValues(),
-                                          m_rightFront.getDebugValues(),
-                                          m_leftRear.getDebugValues(),
-                                          m_rightRear.getDebugValues()));
+  /**
+   * Advances odometry from sensor readings, either the odometry thread's or the robot frame's.
+   */
+  private void updateOdometry(double timestamp, double gyroAngleDegrees, double[] moduleSpeeds, double[] moduleAngles) {
+    double headingRadians = toRadians(Math.IEEEremainder(gyroAngleDegrees, 360));
+    synchronized(m_odometry){
+      m_odometry.update(timestamp, headingRadians, moduleSpeeds, moduleAngles);
+      double x = m_odometry.getX();
+      double y = m_odometry.getY();
+      double theta = m_odometry.getThetaRadians();
+      // only allocate a new Pose2d when the robot actually moved
+      if(x != m_latestX || y != m_latestY || theta != m_latestTheta){
+        m_latestX = x;
+        m_latestY = y;
+        m_latestTheta = theta;
+        m_latestPose = new Pose2d(x, y, new Rotation2d(theta));
+      }
+      m_poseHistory.add(timestamp, x, y, theta);
+    }
   }
 
   /**
@@ -172,7 +300,43 @@ public class DriveSubsystem extends SubsystemBase {
    * @return The pose.
    */
   public Pose2d getPose() {
-    return m_odometry.getPoseMeters();
+    PoseEstimatorSubsystem estimator = m_poseEstimator;
+    return estimator != null ? estimator.getPose() : m_latestPose;
+  }
+
+  /**
+   * Returns the pure wheel odometry pose, even when a pose estimator is attached.
+   */
+  public Pose2d getOdometryPose() {
+    return m_latestPose;
+  }
+
+  public void setPoseEstimator(PoseEstimatorSubsystem poseEstimator) {
+    m_poseEstimator = poseEstimator;
+  }
+
+  /**
+   * Measures the robot relative chassis speeds from the swerve modules.
+   *
+   * @param out receives {vx m/s, vy m/s, omega rad/s}
+   */
+  public void getChassisSpeeds(double[] out) {
+    m_kinematics.toChassisSpeeds(m_frame.moduleVelocity, m_frame.moduleAngleRadians, out);
+  }
+
+  /**
+   * Looks up the odometry pose at an earlier time, interpolating between samples.
+   *
+   * @param timestamp FPGA timestamp in seconds, e.g. when a camera frame was captured
+   * @param out receives {x meters, y meters, theta radians}
+   * @return false if there is no pose history yet
+   */
+  public boolean getPoseAt(double timestamp, double[] out) {
+    PoseEstimatorSubsystem estimator = m_poseEstimator;
+    if(estimator != null){
+      return estimator.getPoseAt(timestamp, out);
+    }
+    return m_poseHistory.getPoseAt(timestamp, out);
   }
 
   /**
@@ -181,7 +345,18 @@ public class DriveSubsystem extends SubsystemBase {
    * @param pose The pose to which to set the odometry.
    */
   public void resetOdometry(Pose2d pose) {
-    m_odometry.resetPosition(pose, getAngle());
+    synchronized(m_odometry){
+      m_odometry.resetPosition(pose.getX(), pose.getY(), pose.getRotation().getRadians(), getGyroRadians());
+      m_latestX = pose.getX();
+      m_latestY = pose.getY();
+      m_latestTheta = pose.getRotation().getRadians();
+      m_latestPose = pose;
+      // older samples are in the old frame, don't interpolate across the jump
+      m_poseHistory.clear();
+    }
+    if(m_poseEstimator != null){
+      m_poseEstimator.reset(pose);
+    }
   }
 
   /**
@@ -256,25 +431,48 @@ public class DriveSubsystem extends SubsystemBase {
     } else {
       */
       //Perhaps do the same continuous correction here as above? Test first.
-    if(!stickControlledHeading){
+    if(m_aimActive){
+      rotationalOutput = m_aimRate;
+      m_headingControllerActive = false;
+    } else if(!stickControlledHeading){
+      // start the profile from where we are when another subsystem takes over the heading
+      if(!m_headingControllerActive){
+        headingController.reset(getHeading());
+        m_headingControllerActive = true;
+      }
       rotationalOutput = headingController.calculate(getHeading());
     } else {
-      headingController.reset(getHeading());
+      m_headingControllerActive = false;
     }
     //}
     
 
     //Replaced rotAdjusted with rotationalOutput
-    var swerveModuleStates = DriveConstants.kDriveKinematics.toSwerveModuleStates(
-        fieldRelative ? ChassisSpeeds.fromFieldRelativeSpeeds(
-          xSpeedAdjusted, ySpeedAdjusted, rotationalOutput, getAngle())
-            : new ChassisSpeeds(xSpeedAdjusted, ySpeedAdjusted, rotationalOutput)
-    );
-    SwerveDriveKinematics.normalizeWheelSpeeds(swerveModuleStates, DriveConstants.kMaxSpeedMetersPerSecond);
-    m_leftFront.setDesiredState(swerveModuleStates[0]);    // leftFront, rightFront, leftRear, rightRear
-    m_rightFront.setDesiredState(swerveModuleStates[1]);
-    m_leftRear.setDesiredState(swerveModuleStates[2]);
-    m_rightRear.setDesiredState(swerveModuleStates[3]);
+    if(fieldRelative){
+      double angle = toRadians(m_frame.gyroAngleDegrees);
+      double cos = Math.cos(angle);
+      double sin = Math.sin(angle);
+      double robotX = xSpeedAdjusted * cos + ySpeedAdjusted * sin;
+      double robotY = -xSpeedAdjusted * sin + ySpeedAdjusted * cos;
+      setChassisSpeeds(robotX, robotY, rotationalOutput);
+    } else {
+      setChassisSpeeds(xSpeedAdjusted, ySpeedAdjusted, rotationalOutput);
+    }
+  }
+
+  /**
+   * Drives with robot relative chassis speeds, without allocating.
+   *
+   * @param vx    forward speed in m/s
+   * @param vy    left speed in m/s
+   * @param omega CCW rotation in rad/s
+   */
+  public void setChassisSpeeds(double vx, double vy, double omega) {
+    m_kinematics.toModuleStates(vx, vy, omega, m_desiredSpeeds, m_desiredAngles);
+    SwerveKinematics.normalizeWheelSpeeds(m_desiredSpeeds, DriveConstants.kMaxSpeedMetersPerSecond);
+    for(int i = 0; i < m_modules.length; i++){   // leftFront, rightFront, leftRear, rightRear
+      m_modules[i].setDesiredState(m_desiredSpeeds[i], m_desiredAngles[i]);
+    }
   }
 
   /**
@@ -356,11 +554,11 @@ public class DriveSubsystem extends SubsystemBase {
    * Resets the drive encoders to currently read a position of 0.
    */
   public void resetEncoders() {
-    m_leftFront.resetEncoders(leftFrontAbsEncoder.getVoltage());     // leftFront, rightFront, leftRear, rightRear
-    m_rightFront.resetEncoders(rightFrontAbsEncoder.getVoltage());//nope! took it back out!// had taken out but it started working again 7mar2020. // took this one out -- bad hardware encoder!!!
+    m_leftFront.resetEncoders(m_frame.moduleAbsEncoderVolts[0]);     // leftFront, rightFront, leftRear, rightRear
+    m_rightFront.resetEncoders(m_frame.moduleAbsEncoderVolts[1]);//nope! took it back out!// had taken out but it started working again 7mar2020. // took this one out -- bad hardware encoder!!!
    // m_rightFront.resetEncoders(0);// had taken out but it started working again 7mar2020. // took this one out -- bad hardware encoder!!!
-    m_leftRear.resetEncoders(leftRearAbsEncoder.getVoltage());
-    m_rightRear.resetEncoders(rightRearAbsEncoder.getVoltage());
+    m_leftRear.resetEncoders(m_frame.moduleAbsEncoderVolts[2]);
+    m_rightRear.resetEncoders(m_frame.moduleAbsEncoderVolts[3]);
   }
 
   /**
@@ -368,6 +566,8 @@ public class DriveSubsystem extends SubsystemBase {
    */
   public void zeroHeading() {
     m_gyro.reset(); // RDB2020 - I replace this call with the below 5 lines...
+    // the rest of this loop sees the new zero
+    m_frame.gyroAngleDegrees = 0;
 
     //logger.info("<b>DriveSubsystem</b>: zeroGyro started");
     //m_gyro.setAngleAdjustment(0);
@@ -382,10 +582,8 @@ public class DriveSubsystem extends SubsystemBase {
    * @return the robot's heading in degrees, from -180 to 180
    */
   public double getHeading() {
-    double heading = Math.IEEEremainder(m_gyro.getAngle(), 360) * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
-    if(System.currentTimeMillis() % 100 == 0){  
-      SmartDashboard.putNumber("Heading", heading);
-    }
+    double heading = Math.IEEEremainder(m_frame.gyroAngleDegrees, 360) * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
+    m_headingEntry.set(heading);
     return heading;
   }
 
@@ -395,24 +593,29 @@ public class DriveSubsystem extends SubsystemBase {
    * @return The turn rate of the robot, in degrees per second
    */
   public double getTurnRate() {
-    return m_gyro.getRate() * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
+    return m_frame.gyroRateDegreesPerSecond * (DriveConstants.kGyroReversed ? -1.0 : 1.0);
   }
 
-  public void suspendCSVWriter() {
-    if(!mCSVWriter1.isSuspended()){
-      mCSVWriter1.suspend();
+  public void suspendLogWriters() {
+    if(!mLogWriter1.isSuspended()){
+      mLogWriter1.suspend();
     }
-    if(!mCSVWriter2.isSuspended()){
-      mCSVWriter2.suspend();
+    if(!mLogWriter2.isSuspended()){
+      mLogWriter2.suspend();
     }
   }
 
-  public void resumeCSVWriter() {
-    if(mCSVWriter1.isSuspended()){
-      mCSVWriter1.resume();
+  public void setLogPhase(MatchPhase phase) {
+    mLogWriter1.setPhase(phase);
+    mLogWriter2.setPhase(phase);
+  }
+
+  public void resumeLogWriters() {
+    if(mLogWriter1.isSuspended()){
+      mLogWriter1.resume();
     }
-    if(mCSVWriter2.isSuspended()){
-      mCSVWriter2.resume();
+    if(mLogWriter2.isSuspended()){
+      mLogWriter2.resume();
     }
   }
 
@@ -428,17 +631,25 @@ public class DriveSubsystem extends SubsystemBase {
     headingController.setGoal(newGoal);
   }
 
+  /**
+   * Rotates at this rate (rad/s, CCW) in drive() instead of following the stick or heading controller,
+   * until clearAimRate(). Translation still comes from the sticks.
+   */
+  public void setAimRate(double omega){
+    m_aimRate = omega;
+    m_aimActive = true;
+  }
+
+  public void clearAimRate(){
+    m_aimActive = false;
+    m_aimRate = 0;
+  }
+
 
   public void displayEncoders() {
-    SmartDashboard.putNumber("leftFrontAbsEncoder", leftFrontAbsEncoder.getVoltage()); // 0.0 to 3.26, 180=1.63V
-    SmartDashboard.putNumber("rightFrontAbsEncoder", rightFrontAbsEncoder.getVoltage()); // 0.0 to 3.26, 180=1.63V
-    SmartDashboard.putNumber("leftRearAbsEncoder", leftRearAbsEncoder.getVoltage()); // 0.0 to 3.26, 180=1.63V
-    SmartDashboard.putNumber("rightRearAbsEncoder", rightRearAbsEncoder.getVoltage()); // 0.0 to 3.26, 180=1.63V
-    if(RobotBase.isReal()){
-      SmartDashboard.putNumber("leftFrontRelEncoder", m_leftFront.m_turningEncoder.getPosition());
-      SmartDashboard.putNumber("rightFrontRelEncoder", m_rightFront.m_turningEncoder.getPosition());
-      SmartDashboard.putNumber("leftRearRelEncoder", m_leftRear.m_turningEncoder.getPosition());
-      SmartDashboard.putNumber("rightRearRelEncoder", m_rightRear.m_turningEncoder.getPosition());
+    for(int i = 0; i < m_modules.length; i++){
+      m_absEncoderEntries[i].set(m_frame.moduleAbsEncoderVolts[i]); // 0.0 to 3.26, 180=1.63V
+      m_relEncoderEntries[i].set(m_frame.moduleTurningPosition[i]);
     }
   }
 
@@ -446,6 +657,7 @@ public class DriveSubsystem extends SubsystemBase {
   public void resetGyro() {
     if(m_gyro != null){
       m_gyro.reset();
+      m_frame.gyroAngleDegrees = 0;
     }
   }
 
@@ -3,8 +3,7 @@ package frc.robot.subsystems;
 import com.revrobotics.CANEncoder;
 
 import edu.wpi.first.wpilibj.RobotBase;
-import edu.wpi.first.wpilibj.geometry.Rotation2d;
-import edu.wpi.first.wpilibj.kinematics.SwerveModuleState;
+import frc.robot.util.RobotFrame;
 
 public class DummySwerveModule extends SwerveModule {
   public static final double kMaxAngularSpeed = Math.PI;
@@ -14,7 +13,8 @@ public class DummySwerveModule extends SwerveModule {
   private double offsetFromAbsoluteEncoder;
 
   private int id;
-  SwerveModuleState dummyState = new SwerveModuleState(0, new Rotation2d(0));
+  private double dummySpeed = 0;
+  private double dummyAngle = 0;
 
   public DummySwerveModule(int driveMotorChannel, int turningMotorChannel) {
     super();
@@ -38,12 +38,25 @@ public class DummySwerveModule extends SwerveModule {
     return correctedEncoder;
   }
 
-  public SwerveModuleState getState() {
-    return dummyState;
+  public void sample(RobotFrame frame, int index) {
+    frame.moduleTurningPosition[index] = 0;
+    frame.moduleTurningVelocity[index] = 0;
+    frame.moduleDriveVelocity[index] = 0;
+    frame.moduleVelocity[index] = dummySpeed;
+    frame.moduleAngleRadians[index] = dummyAngle;
   }
 
-  public void setDesiredState(SwerveModuleState state) {
-    dummyState = state;
+  public double getVelocity() {
+    return dummySpeed;
+  }
+
+  public double getAngleRadians() {
+    return dummyAngle;
+  }
+
+  public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
+    dummySpeed = speedMetersPerSecond;
+    dummyAngle = angleRadians;
   }
 
   public void resetEncoders(double absoluteEncoderVoltage) {
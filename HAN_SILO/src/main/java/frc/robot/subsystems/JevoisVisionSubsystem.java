@@ -1,20 +1,21 @@
 package frc.robot.subsystems;
 
 import frc.robot.Constants.VisionConstants;
-import frc.robot.vision.GoalTracker;
+import frc.robot.util.LatencyHistogram;
+import frc.robot.util.LatestValue;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 import frc.robot.vision.JevoisVisionServer;
 import frc.robot.vision.JevoisVisionUpdate;
-import frc.robot.vision.ShooterAimingParameters;
 import frc.robot.vision.TargetInfo;
-import frc.robot.vision.GoalTracker.TrackReport;
+import frc.robot.vision.VisionFrame;
+import frc.robot.vision.VisionSource;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Timer;
-import edu.wpi.first.wpilibj.geometry.Pose2d;
 import edu.wpi.first.wpilibj.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.geometry.Transform2d;
 import edu.wpi.first.wpilibj.geometry.Translation2d;
@@ -22,26 +23,39 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
 
 /**
- * This function adds vision updates (from the Nexus smartphone) to a list in RobotState. This helps keep track of goals
- * detected by the vision system. The code to determine the best goal to shoot at and prune old Goal tracks is in
- * GoalTracker.java
+ * The JeVois camera as a VisionSource. Targets arrive over serial on the JevoisVisionServer thread and are turned
+ * into robot relative goal observations here, tracking and aiming happen in VisionSubsystem.
  * 
- * @see GoalTracker.java
+ * @see VisionSubsystem.java
  */
-public class JevoisVisionSubsystem extends SubsystemBase {
+public class JevoisVisionSubsystem extends SubsystemBase implements VisionSource {
     private static final Transform2d kVehicleToCamera = new Transform2d(new Translation2d(VisionConstants.kCameraXOffset, VisionConstants.kCameraYOffset), new Rotation2d());
 
-    private DriveSubsystem m_robotDrive;
-    private JevoisVisionUpdate update_ = null;
+    private final LoopProfiler.Section periodic_profile_ = LoopProfiler.getInstance().addSection("JevoisVisionSubsystem.periodic()");
+
+    // newest update from the serial reader thread, the buffers are reused so nothing is allocated per frame
+    private final LatestValue<JevoisVisionUpdate> latest_update_ = new LatestValue<>(JevoisVisionUpdate::new);
     private JevoisVisionServer m_VisionServer;
     private Solenoid ringLight;
-    private ShooterAimingParameters cachedAimingParameters = null;
-    private GoalTracker goal_tracker_;
+    // robot relative goals of the last update, reused
+    private final VisionFrame frame_ = new VisionFrame();
+
+    // per-stage latency of each update: capture -> serial read -> handed off -> used here
+    private final LatencyHistogram camera_latency_ = new LatencyHistogram(0.2, 0.001);
+    private final LatencyHistogram parse_latency_ = new LatencyHistogram(0.2, 0.001);
+    private final LatencyHistogram handoff_latency_ = new LatencyHistogram(0.2, 0.001);
+    private final LatencyHistogram total_latency_ = new LatencyHistogram(0.2, 0.001);
+    private final NumberEntry[] camera_latency_entries_ = latencyEntries("Vis_CameraLatency");
+    private final NumberEntry[] parse_latency_entries_ = latencyEntries("Vis_ParseLatency");
+    private final NumberEntry[] handoff_latency_entries_ = latencyEntries("Vis_HandoffLatency");
+    private final NumberEntry[] total_latency_entries_ = latencyEntries("Vis_TotalLatency");
+    private final NumberEntry updates_published_entry_ = TelemetryPublisher.getInstance()
+            .addNumber("Vis_UpdatesPublished", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry updates_overwritten_entry_ = TelemetryPublisher.getInstance()
+            .addNumber("Vis_UpdatesOverwritten", TelemetryPublisher.kSlow, 0);
 
-    public JevoisVisionSubsystem(DriveSubsystem m_robotDrive) {
+    public JevoisVisionSubsystem() {
         ringLight = new Solenoid(0, 0);
-        goal_tracker_ = new GoalTracker();
-        this.m_robotDrive = m_robotDrive;
         m_VisionServer = new JevoisVisionServer(this);
     }
 
@@ -64,27 +78,80 @@ public class JevoisVisionSubsystem extends SubsystemBase {
     }
 
     @Override
-    public void periodic() {
+    public void enableLED() {
+        ringLightOn();
+    }
+
+    @Override
+    public void disableLED() {
+        ringLightOff();
+    }
+
+    @Override
+    public boolean hasTarget() {
+        return frame_.getCount() > 0
+                && Timer.getFPGATimestamp() - frame_.getTimestamp() < VisionConstants.kMaxGoalTrackAge;
+    }
+
+    @Override
+    public VisionFrame pollFrame() {
         double timestamp = Timer.getFPGATimestamp();
-        JevoisVisionUpdate update;
-        synchronized (this) {
-            if (update_ == null) {
-                return;
-            }
-            update = update_;
-            update_ = null;
+        JevoisVisionUpdate update = latest_update_.takeNew();
+        if (update == null) {
+            return null;
         }
+        camera_latency_.record(update.getReceivedAtTimestamp() - update.getCapturedAtTimestamp());
+        parse_latency_.record(update.getPostedAtTimestamp() - update.getReceivedAtTimestamp());
+        handoff_latency_.record(timestamp - update.getPostedAtTimestamp());
+        total_latency_.record(timestamp - update.getCapturedAtTimestamp());
 
      //   SmartDashboard.putString("JevoisVisionProcessorUpdate", "update was captured at "+update.getCapturedAtTimestamp());
         //robot_state_.addVisionUpdate(update.getCapturedAtTimestamp(), update.getTargets());
         addVisionUpdate(update.getCapturedAtTimestamp(), update.getTargets());
+        return frame_;
+    }
+
+    @Override
+    public void periodic() {
+        periodic_profile_.start();
+        putLatency(camera_latency_entries_, camera_latency_);
+        putLatency(parse_latency_entries_, parse_latency_);
+        putLatency(handoff_latency_entries_, handoff_latency_);
+        putLatency(total_latency_entries_, total_latency_);
+        updates_published_entry_.set(latest_update_.getPublished());
+        updates_overwritten_entry_.set(latest_update_.getOverwritten());
+        periodic_profile_.stop();
     }
     int updateCounter = 0;
    
-    public synchronized void gotUpdate(JevoisVisionUpdate update) {
+    /**
+     * Serial reader thread only. The update to fill in before publishUpdate().
+     */
+    public JevoisVisionUpdate getUpdateBuffer() {
+        return latest_update_.getWriteBuffer();
+    }
+
+    /**
+     * Serial reader thread only. Never blocks; an update periodic() hasn't used yet is replaced.
+     */
+    public void publishUpdate() {
         updateCounter++;
      //   SmartDashboard.putString("JevoisVisionProcessorGotUpdate", "Got Update: "+updateCounter);
-        update_ = update;
+        latest_update_.publish();
+    }
+
+    private static NumberEntry[] latencyEntries(String name) {
+        TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+        return new NumberEntry[] {
+                telemetry.addNumber(name + " p50 ms", TelemetryPublisher.kSlow, 0.1),
+                telemetry.addNumber(name + " p95 ms", TelemetryPublisher.kSlow, 0.1),
+                telemetry.addNumber(name + " p99 ms", TelemetryPublisher.kSlow, 0.1) };
+    }
+
+    private static void putLatency(NumberEntry[] entries, LatencyHistogram histogram) {
+        entries[0].set(histogram.getPercentile(50) * 1000);
+        entries[1].set(histogram.getPercentile(95) * 1000);
+        entries[2].set(histogram.getPercentile(99) * 1000);
     }
 
     /**
@@ -108,18 +175,17 @@ public class JevoisVisionSubsystem extends SubsystemBase {
         return new Rotation2d(cos_angle_, sin_angle_);
     }
 
-    public void addVisionUpdate(double timestamp, List<TargetInfo> vision_update) {
+    /**
+     * Fills frame_ with the goals in an update, relative to the robot center.
+     */
+    private void addVisionUpdate(double timestamp, List<TargetInfo> vision_update) {
         
         //RigidTransform2d kVehicleToCamera = new RigidTransform2d(
         //    new Translation2d(Constants.kCameraXOffset, Constants.kCameraYOffset), new Rotation2d());
 
-        
-
-        //RigidTransform2d field_to_camera = getFieldToCamera(timestamp);
+        frame_.clear(timestamp);
         if (!(vision_update == null || vision_update.isEmpty())) {
-            List<Translation2d> field_to_goals = new ArrayList<>();
-
-            Pose2d field_to_camera = m_robotDrive.getPose().transformBy(kVehicleToCamera);
+            // camera has no yaw relative to the robot, so camera_to_goal only needs the mount offset added
             Rotation2d camera_pitch_correction_ = Rotation2d.fromDegrees(-VisionConstants.kCameraPitchAngleDegrees);
             Rotation2d camera_yaw_correction_ = Rotation2d.fromDegrees(-VisionConstants.kCameraYawAngleDegrees);
             double differential_height_ = VisionConstants.kBoilerTargetTopHeight - VisionConstants.kCameraZOffset;
@@ -151,41 +217,13 @@ public class JevoisVisionSubsystem extends SubsystemBase {
                    
                     
 
-                   field_to_camera = field_to_camera.transformBy(new Transform2d(new Translation2d(distance * angle.getCos(), distance * angle.getSin()), new Rotation2d()));
-                   
-                   field_to_goals.add(field_to_camera.getTranslation());
+                   // each target is relative to the camera, not to the previous target
+                   double camera_to_goal_x = distance * angle.getCos();
+                   double camera_to_goal_y = distance * angle.getSin();
+                   frame_.add(kVehicleToCamera.getTranslation().getX() + camera_to_goal_x,
+                           kVehicleToCamera.getTranslation().getY() + camera_to_goal_y);
                 }
             }
-            
-            synchronized (this) {
-                goal_tracker_.update(timestamp, field_to_goals);
-            }
-        }
-    }
-
-    public synchronized Optional<ShooterAimingParameters> getAimingParameters() {
-        List<TrackReport> reports = goal_tracker_.getTracks();
-        if (!reports.isEmpty()) {
-            TrackReport report = reports.get(0);
-
-            Translation2d robot_to_goal = m_robotDrive.getPose().getTranslation().unaryMinus().plus(report.field_to_goal);
-            //Translation2d robot_to_goal = getLatestFieldToVehicle().getTranslation().inverse()
-            //        .translateBy(report.field_to_goal);
-
-            //Old code used fromRadians, but from the constructor it looks like it already does that.
-            //Also, the angle is calculated when you give it cartesian points. If you give it an angle, it converts it
-            //into cartesian points. Keeping it cleaned up by just giving the cartesian points.
-            Rotation2d robot_to_goal_rotation = new Rotation2d(robot_to_goal.getX(), robot_to_goal.getY());
-            //Rotation2d robot_to_goal_rotation = Rotation2d
-            //        .fromRadians(Math.atan2(robot_to_goal.getY(), robot_to_goal.getX()));
-
-            ShooterAimingParameters params = new ShooterAimingParameters(robot_to_goal.getNorm(), robot_to_goal_rotation,
-                    report.latest_timestamp, report.stability);
-            cachedAimingParameters = params;
-
-            return Optional.of(params);
-        } else {
-            return Optional.empty();
         }
     }
 
@@ -18,8 +18,10 @@ import edu.wpi.first.wpilibj.AddressableLEDBuffer;
 
 
 import frc.robot.Constants.OpConstants;
+import frc.robot.util.LoopProfiler;
 
 public class LedStringSubsystem extends SubsystemBase {
+  private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("LedStringSubsystem.periodic()");
 
   private Timer mTimer;
   // Store what the last hue of the first pixel is
@@ -55,6 +57,7 @@ public class LedStringSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
+    m_periodicProfile.start();
     // This method will be called once per scheduler run
     if (delay){
       if (mTimer.get() - elapsed > delayNum) {
@@ -64,6 +67,7 @@ public class LedStringSubsystem extends SubsystemBase {
     } else {
       option(mLedOption);
     }
+    m_periodicProfile.stop();
   }
 
   public void init() {
@@ -1,13 +1,17 @@
 package frc.robot.subsystems;
 
 import frc.robot.Constants.VisionConstants;
-import frc.robot.vision.GoalTracker;
+import frc.robot.util.LatestValue;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 import frc.robot.vision.JevoisVisionServer;
 import frc.robot.vision.JevoisVisionUpdate;
 import frc.robot.vision.LimeTargetInfo;
 import frc.robot.vision.ShooterAimingParameters;
 import frc.robot.vision.TargetInfo;
-import frc.robot.vision.GoalTracker.TrackReport;
+import frc.robot.vision.VisionFrame;
+import frc.robot.vision.VisionSource;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -16,6 +20,8 @@ import java.util.Optional;
 import edu.wpi.first.networktables.NetworkTable;
 import edu.wpi.first.networktables.NetworkTableEntry;
 import edu.wpi.first.networktables.NetworkTableInstance;
+import edu.wpi.first.networktables.NetworkTablesJNI;
+import edu.wpi.first.wpilibj.Notifier;
 import edu.wpi.first.wpilibj.Solenoid;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.geometry.Pose2d;
@@ -48,51 +54,177 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 */
 
 /**
- * This function adds vision updates (from the Nexus smartphone) to a list in RobotState. This helps keep track of goals
- * detected by the vision system. The code to determine the best goal to shoot at and prune old Goal tracks is in
- * GoalTracker.java
+ * The Limelight as a VisionSource, timestamped at arrival - tl - VisionConstants.kLimelightCaptureLatencySeconds.
+ *
+ * NT3 has no atomic read across entries and only sends a value when it changes, so there is no one entry that
+ * marks a frame. A frame is any change to tv, tx, ty, ta or tl. The Limelight flushes all of a frame's entries at
+ * once, so they are read after none of them changed for kLimelightSettleSeconds, and read again if one changed
+ * during the read. tv is then checked against ta (a seen target always has an area, the Limelight zeroes tx, ty and
+ * ta without one) and a read that mixes two frames is skipped. A frame where every value repeats exactly doesn't reach the robot, which with a
+ * target in view (noisy tx/ty/ta) doesn't happen in practice; hasTarget() times out after kLimelightStaleSeconds.
+ *
+ * With kLimelightNotifierMode on, a Notifier polls every kLimelightPollPeriodSeconds so frames don't wait for
+ * periodic(). Each frame is published as one immutable LimeTargetInfo, so hasTarget() and getLastTarget() always
+ * agree with each other and with the VisionFrame.
  * 
- * @see GoalTracker.java
+ * @see VisionSubsystem.java
  */
-public class LimeLightSubsystem extends SubsystemBase {
+public class LimeLightSubsystem extends SubsystemBase implements VisionSource {
+    private final LoopProfiler.Section periodic_profile_ = LoopProfiler.getInstance().addSection("LimeLightSubsystem.periodic()");
 
     private NetworkTable limeTable;
     private NetworkTableEntry limeTX;
     private NetworkTableEntry limeTY;
+    private NetworkTableEntry limeArea;
     private NetworkTableEntry limeValidTargets;
+    private NetworkTableEntry limeLatency;
     private NetworkTableEntry limeLED;
-
-    private LimeTargetInfo lastTarget;
+    // everything the Limelight writes per frame
+    private final NetworkTableEntry[] frame_entries_;
+
+    // immutable snapshots, written by whichever thread polls
+    private volatile LimeTargetInfo latestFrame = null;
+    private volatile LimeTargetInfo lastTarget = null;
+    // only touched by the polling thread
+    private long lastFrameChange = 0;
+    private volatile long inconsistentReads = 0;
+    private final NumberEntry inconsistent_entry_ = TelemetryPublisher.getInstance()
+            .addNumber("Limelight/Inconsistent Reads", TelemetryPublisher.kSlow, 0);
+    private final Notifier poll_notifier_;
+    // frames from the polling thread, reused
+    private final LatestValue<VisionFrame> latest_frame_ = new LatestValue<>(VisionFrame::new);
 
     public LimeLightSubsystem() {
         limeTable = NetworkTableInstance.getDefault().getTable("limelight");
         limeTX = limeTable.getEntry("tx");
         limeTY = limeTable.getEntry("ty");
+        limeArea = limeTable.getEntry("ta");
         limeValidTargets = limeTable.getEntry("tv");
+        limeLatency = limeTable.getEntry("tl");
         limeLED = limeTable.getEntry("ledMode");
+        frame_entries_ = new NetworkTableEntry[] {limeValidTargets, limeTX, limeTY, limeArea, limeLatency};
+
+        if (VisionConstants.kLimelightNotifierMode) {
+            poll_notifier_ = new Notifier(this::poll);
+            poll_notifier_.setName("Limelight");
+            poll_notifier_.startPeriodic(VisionConstants.kLimelightPollPeriodSeconds);
+        } else {
+            poll_notifier_ = null;
+        }
 
         disableLED();
     }
 
+    private long getNewestChange() {
+        long newest = 0;
+        for (NetworkTableEntry entry : frame_entries_) {
+            newest = Math.max(newest, entry.getLastChange());
+        }
+        return newest;
+    }
+
+    /**
+     * Commits a frame if the Limelight sent a new one and all of it has arrived. Polling thread only.
+     */
+    private void poll() {
+        long newest = getNewestChange();
+        if (newest == lastFrameChange) {
+            return;
+        }
+        // NT times are microseconds
+        double sinceChange = (NetworkTablesJNI.now() - newest) * 1e-6;
+        if (sinceChange < VisionConstants.kLimelightSettleSeconds) {
+            return;
+        }
+        double tv = limeValidTargets.getDouble(0);
+        double tx = limeTX.getDouble(0);
+        double ty = limeTY.getDouble(0);
+        double ta = limeArea.getDouble(0);
+        double tl = limeLatency.getDouble(0);
+        if (getNewestChange() != newest) {
+            // the next frame landed while reading, take it on the next poll
+            return;
+        }
+        lastFrameChange = newest;
+
+        boolean valid = tv > 0;
+        // a centred target has tx = ty = 0, only ta tells a valid frame apart
+        if (valid ? ta == 0 : (ta != 0 || tx != 0 || ty != 0)) {
+            // tv from one frame, the rest from another
+            inconsistentReads++;
+            return;
+        }
+        double arrived = Timer.getFPGATimestamp() - sinceChange;
+        commitFrame(arrived - tl / 1000.0 - VisionConstants.kLimelightCaptureLatencySeconds, valid, tx, ty);
+    }
+
+    /**
+     * Publishes one Limelight frame, both as a LimeTargetInfo and as a VisionFrame.
+     */
+    private void commitFrame(double captured, boolean valid, double tx, double ty) {
+        LimeTargetInfo snapshot = new LimeTargetInfo(valid, tx, ty, captured);
+        if (valid) {
+            lastTarget = snapshot;
+        }
+        latestFrame = snapshot;
+
+        VisionFrame frame = latest_frame_.getWriteBuffer();
+        frame.clear(captured);
+        if (valid) {
+            double elevation = Math.toRadians(VisionConstants.kLimelightPitchDegrees + ty);
+            if (elevation > 0) {
+                double range = (VisionConstants.kPowerPortTargetHeightMeters - VisionConstants.kLimelightHeightMeters) / Math.tan(elevation);
+                // tx is positive to the right, robot frame is CCW positive
+                double bearing = -Math.toRadians(tx);
+                frame.add(range * Math.cos(bearing), range * Math.sin(bearing));
+            }
+        }
+        latest_frame_.publish();
+    }
+
+    @Override
+    public VisionFrame pollFrame() {
+        return latest_frame_.takeNew();
+    }
+
     @Override
     public void periodic() {
-        if(hasTarget()){
-            lastTarget = new LimeTargetInfo(limeTX.getDouble(0), limeTY.getDouble(0), Timer.getFPGATimestamp());
+        periodic_profile_.start();
+        if (!VisionConstants.kLimelightNotifierMode) {
+            poll();
         }
+        inconsistent_entry_.set(inconsistentReads);
+        periodic_profile_.stop();
     }
 
+    /**
+     * @return the newest frame, with or without a target, or null before the first one. It may be old, check
+     *         getTimeCaptured()
+     */
+    public LimeTargetInfo getLatestFrame(){
+        return latestFrame;
+    }
+
+    /**
+     * @return the newest frame that had a target, or null if there hasn't been one
+     */
     public LimeTargetInfo getLastTarget(){
         return lastTarget;
     }
 
+    @Override
     public boolean hasTarget(){
-        return limeValidTargets.getDouble(0) > 0;
+        LimeTargetInfo frame = latestFrame;
+        return frame != null && frame.hasTarget()
+                && Timer.getFPGATimestamp() - frame.getTimeCaptured() < VisionConstants.kLimelightStaleSeconds;
     }
 
+    @Override
     public void enableLED(){
         limeLED.setNumber(3);
     }
 
+    @Override
     public void disableLED(){
         limeLED.setNumber(1);
     }
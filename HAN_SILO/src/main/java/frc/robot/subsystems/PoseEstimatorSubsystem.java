@@ -0,0 +1,334 @@
+package frc.robot.subsystems;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.Constants.PoseEstimatorConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.PoseHistory;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+
+/**
+ * Extended Kalman filter over the robot pose {x, y, theta}.
+ *
+ * Every loop the estimate is predicted forward with the measured chassis speeds and gyro
+ * rate, then corrected with the gyro heading. Vision observations of the power port
+ * (robot-relative x/y to the goal, from any camera through VisionSubsystem) correct x, y and theta
+ * against the goal's field position, set with setGoalLandmark(). Vision is ignored until it is
+ * set. When vision keeps failing the gate the estimate has drifted further than its covariance
+ * says, so the covariance is widened until the observations pull the pose back.
+ *
+ * Vision is latency compensated: the innovation is computed against the estimated pose at
+ * the frame's capture time (from a pose history) and the correction is applied to the
+ * current estimate. Observations are queued and at most kMaxVisionUpdatesPerLoop are
+ * applied per loop, so the cost of periodic() is bounded.
+ */
+public class PoseEstimatorSubsystem extends SubsystemBase {
+    private static final int kObservationQueueSize = 16;
+
+    private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("PoseEstimatorSubsystem.periodic()");
+
+    private final DriveSubsystem m_robotDrive;
+
+    // state and row-major 3x3 covariance
+    private double m_x, m_y, m_theta;
+    private final double[] m_P = new double[9];
+
+    private volatile Pose2d m_estimatedPose = new Pose2d();
+    private final PoseHistory m_history = new PoseHistory(DriveConstants.kPoseHistoryCapacity);
+    private double m_lastTimestamp = -1;
+
+    private boolean m_hasLandmark = false;
+    private double m_landmarkX, m_landmarkY;
+    private int m_consecutiveRejects = 0;
+    private int m_acceptedUpdates = 0;
+    private int m_rejectedUpdates = 0;
+
+    private final TelemetryPublisher m_telemetry = TelemetryPublisher.getInstance();
+    private final NumberEntry m_xEntry = m_telemetry.addNumber("estimate x", TelemetryPublisher.kFast, 0.005);
+    private final NumberEntry m_yEntry = m_telemetry.addNumber("estimate y", TelemetryPublisher.kFast, 0.005);
+    private final NumberEntry m_degEntry = m_telemetry.addNumber("estimate deg", TelemetryPublisher.kFast, 0.1);
+    private final NumberEntry m_xStdDevEntry = m_telemetry.addNumber("estimate x stddev", TelemetryPublisher.kSlow, 0.005);
+    private final NumberEntry m_yStdDevEntry = m_telemetry.addNumber("estimate y stddev", TelemetryPublisher.kSlow, 0.005);
+    private final NumberEntry m_degStdDevEntry = m_telemetry.addNumber("estimate deg stddev", TelemetryPublisher.kSlow, 0.1);
+    private final NumberEntry m_acceptedEntry = m_telemetry.addNumber("estimate vision accepted", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry m_rejectedEntry = m_telemetry.addNumber("estimate vision rejected", TelemetryPublisher.kSlow, 0);
+
+    // queued vision observations, robot relative translation to the goal at a capture time
+    private final double[] m_obsTime = new double[kObservationQueueSize];
+    private final double[] m_obsX = new double[kObservationQueueSize];
+    private final double[] m_obsY = new double[kObservationQueueSize];
+    private int m_obsHead = 0;
+    private int m_obsCount = 0;
+
+    // scratch so updates don't allocate
+    private final double[] m_poseAtCapture = new double[3];
+    private final double[] m_H = new double[6];
+    private final double[] m_PHt = new double[6];
+    private final double[] m_K = new double[6];
+    private final double[] m_newP = new double[9];
+    private final double[] m_chassisSpeeds = new double[3];
+
+    public PoseEstimatorSubsystem(DriveSubsystem robotDrive) {
+        m_robotDrive = robotDrive;
+        reset(robotDrive.getOdometryPose());
+    }
+
+    /**
+     * Resets the estimate to a known pose and forgets any queued vision. The goal landmark is kept.
+     */
+    public void reset(Pose2d pose) {
+        m_x = pose.getX();
+        m_y = pose.getY();
+        m_theta = pose.getRotation().getRadians();
+        double xyVar = PoseEstimatorConstants.kInitialXYStdDevMeters * PoseEstimatorConstants.kInitialXYStdDevMeters;
+        double thetaVar = PoseEstimatorConstants.kInitialThetaStdDevRadians * PoseEstimatorConstants.kInitialThetaStdDevRadians;
+        for (int i = 0; i < 9; i++) {
+            m_P[i] = 0;
+        }
+        m_P[0] = xyVar;
+        m_P[4] = xyVar;
+        m_P[8] = thetaVar;
+        m_consecutiveRejects = 0;
+        m_obsCount = 0;
+        m_history.clear();
+        m_estimatedPose = pose;
+    }
+
+    /**
+     * Sets the field position of the power port, e.g. PoseEstimatorConstants.kGoalXMeters/kGoalYMeters.
+     */
+    public void setGoalLandmark(double x, double y) {
+        m_landmarkX = x;
+        m_landmarkY = y;
+        m_hasLandmark = true;
+        m_consecutiveRejects = 0;
+    }
+
+    /**
+     * Queues a vision observation of the goal.
+     *
+     * @param timestamp FPGA time the frame was captured
+     * @param robotToGoalX goal position relative to the robot center, robot frame (forward)
+     * @param robotToGoalY goal position relative to the robot center, robot frame (left)
+     */
+    public void addVisionObservation(double timestamp, double robotToGoalX, double robotToGoalY) {
+        int index;
+        if (m_obsCount < kObservationQueueSize) {
+            index = (m_obsHead + m_obsCount) % kObservationQueueSize;
+            m_obsCount++;
+        } else {
+            // full, overwrite the oldest
+            index = m_obsHead;
+            m_obsHead = (m_obsHead + 1) % kObservationQueueSize;
+        }
+        m_obsTime[index] = timestamp;
+        m_obsX[index] = robotToGoalX;
+        m_obsY[index] = robotToGoalY;
+    }
+
+    @Override
+    public void periodic() {
+        m_periodicProfile.start();
+        double now = Timer.getFPGATimestamp();
+        double dt = m_lastTimestamp < 0 ? 0 : Math.min(now - m_lastTimestamp, 0.1);
+        m_lastTimestamp = now;
+
+        predict(dt);
+        // the odometry heading is the gyro plus the odometry's reset offset
+        updateHeading(m_robotDrive.getOdometryPose().getRotation().getRadians());
+
+        for (int i = 0; i < PoseEstimatorConstants.kMaxVisionUpdatesPerLoop && m_obsCount > 0; i++) {
+            updateVision(m_obsTime[m_obsHead], m_obsX[m_obsHead], m_obsY[m_obsHead]);
+            m_obsHead = (m_obsHead + 1) % kObservationQueueSize;
+            m_obsCount--;
+        }
+
+        m_history.add(now, m_x, m_y, m_theta);
+        m_estimatedPose = new Pose2d(m_x, m_y, new Rotation2d(m_theta));
+
+        m_xEntry.set(m_x);
+        m_yEntry.set(m_y);
+        m_degEntry.set(Math.toDegrees(m_theta));
+        m_xStdDevEntry.set(Math.sqrt(m_P[0]));
+        m_yStdDevEntry.set(Math.sqrt(m_P[4]));
+        m_degStdDevEntry.set(Math.toDegrees(Math.sqrt(m_P[8])));
+        m_acceptedEntry.set(m_acceptedUpdates);
+        m_rejectedEntry.set(m_rejectedUpdates);
+        m_periodicProfile.stop();
+    }
+
+    public Pose2d getPose() {
+        return m_estimatedPose;
+    }
+
+    /**
+     * @param out receives {x, y, theta} of the estimate at the given time
+     * @return false if there is no history yet
+     */
+    public boolean getPoseAt(double timestamp, double[] out) {
+        return m_history.getPoseAt(timestamp, out);
+    }
+
+    /**
+     * @param out receives the row-major 3x3 covariance of {x, y, theta}
+     */
+    public void getCovariance(double[] out) {
+        System.arraycopy(m_P, 0, out, 0, 9);
+    }
+
+    private void predict(double dt) {
+        if (dt <= 0) {
+            return;
+        }
+        m_robotDrive.getChassisSpeeds(m_chassisSpeeds);
+        double vx = m_chassisSpeeds[0];
+        double vy = m_chassisSpeeds[1];
+        double omega = Math.toRadians(m_robotDrive.getTurnRate());
+        // integrate at the middle of the step
+        double midTheta = m_theta + 0.5 * omega * dt;
+        double cos = Math.cos(midTheta);
+        double sin = Math.sin(midTheta);
+        double dx = (vx * cos - vy * sin) * dt;
+        double dy = (vx * sin + vy * cos) * dt;
+        m_x += dx;
+        m_y += dy;
+        m_theta += omega * dt;
+
+        // P = F P F^T + Q with F = [1 0 -dy; 0 1 dx; 0 0 1]
+        double[] P = m_P;
+        double p02 = P[2] - dy * P[8];
+        double p12 = P[5] + dx * P[8];
+        double p00 = P[0] - 2 * dy * P[2] + dy * dy * P[8];
+        double p11 = P[4] + 2 * dx * P[5] + dx * dx * P[8];
+        double p01 = P[1] + dx * P[2] - dy * P[5] - dx * dy * P[8];
+        double distance = Math.hypot(dx, dy);
+        double xyNoise = PoseEstimatorConstants.kXYVariancePerMeter * distance + PoseEstimatorConstants.kXYVariancePerSecond * dt;
+        double thetaNoise = PoseEstimatorConstants.kThetaVariancePerRadian * Math.abs(omega * dt) + PoseEstimatorConstants.kThetaVariancePerSecond * dt;
+        P[0] = p00 + xyNoise;
+        P[1] = p01;
+        P[2] = p02;
+        P[3] = p01;
+        P[4] = p11 + xyNoise;
+        P[5] = p12;
+        P[6] = p02;
+        P[7] = p12;
+        P[8] = P[8] + thetaNoise;
+    }
+
+    private void updateHeading(double measuredTheta) {
+        double innovation = Math.IEEEremainder(measuredTheta - m_theta, 2 * Math.PI);
+        double r = PoseEstimatorConstants.kGyroStdDevRadians * PoseEstimatorConstants.kGyroStdDevRadians;
+        double s = m_P[8] + r;
+        double k0 = m_P[2] / s;
+        double k1 = m_P[5] / s;
+        double k2 = m_P[8] / s;
+        m_x += k0 * innovation;
+        m_y += k1 * innovation;
+        m_theta += k2 * innovation;
+        // P = P - k * (row 2 of P)
+        double p20 = m_P[6], p21 = m_P[7], p22 = m_P[8];
+        m_P[0] -= k0 * p20; m_P[1] -= k0 * p21; m_P[2] -= k0 * p22;
+        m_P[3] -= k1 * p20; m_P[4] -= k1 * p21; m_P[5] -= k1 * p22;
+        m_P[6] -= k2 * p20; m_P[7] -= k2 * p21; m_P[8] -= k2 * p22;
+        symmetrize();
+    }
+
+    private void updateVision(double timestamp, double zx, double zy) {
+        if (!m_history.getPoseAt(timestamp, m_poseAtCapture)) {
+            m_poseAtCapture[0] = m_x;
+            m_poseAtCapture[1] = m_y;
+            m_poseAtCapture[2] = m_theta;
+        }
+        double cx = m_poseAtCapture[0];
+        double cy = m_poseAtCapture[1];
+        double cos = Math.cos(m_poseAtCapture[2]);
+        double sin = Math.sin(m_poseAtCapture[2]);
+
+        if (!m_hasLandmark) {
+            return;
+        }
+
+        // expected robot relative goal position at capture time
+        double ex = m_landmarkX - cx;
+        double ey = m_landmarkY - cy;
+        double hx = cos * ex + sin * ey;
+        double hy = -sin * ex + cos * ey;
+        double v0 = zx - hx;
+        double v1 = zy - hy;
+
+        // H = [-cos -sin hy; sin -cos -hx]
+        double[] H = m_H;
+        H[0] = -cos; H[1] = -sin; H[2] = hy;
+        H[3] = sin;  H[4] = -cos; H[5] = -hx;
+
+        // PHt (3x2) = P * H^T
+        double[] P = m_P;
+        double[] PHt = m_PHt;
+        for (int i = 0; i < 3; i++) {
+            PHt[i * 2] = P[i * 3] * H[0] + P[i * 3 + 1] * H[1] + P[i * 3 + 2] * H[2];
+            PHt[i * 2 + 1] = P[i * 3] * H[3] + P[i * 3 + 1] * H[4] + P[i * 3 + 2] * H[5];
+        }
+        // S (2x2) = H * PHt + R
+        double r = PoseEstimatorConstants.kVisionStdDevMeters * PoseEstimatorConstants.kVisionStdDevMeters;
+        double s00 = H[0] * PHt[0] + H[1] * PHt[2] + H[2] * PHt[4] + r;
+        double s01 = H[0] * PHt[1] + H[1] * PHt[3] + H[2] * PHt[5];
+        double s10 = H[3] * PHt[0] + H[4] * PHt[2] + H[5] * PHt[4];
+        double s11 = H[3] * PHt[1] + H[4] * PHt[3] + H[5] * PHt[5] + r;
+        double det = s00 * s11 - s01 * s10;
+        if (Math.abs(det) < VisionConstants.kEpsilon) {
+            return;
+        }
+        double i00 = s11 / det, i01 = -s01 / det, i10 = -s10 / det, i11 = s00 / det;
+
+        double mahalanobis = v0 * (i00 * v0 + i01 * v1) + v1 * (i10 * v0 + i11 * v1);
+        if (mahalanobis > PoseEstimatorConstants.kVisionGate) {
+            m_rejectedUpdates++;
+            if (++m_consecutiveRejects >= PoseEstimatorConstants.kMaxConsecutiveRejects) {
+                // the landmark is fixed, so it's the pose that's wrong. Trust it less until vision gets through
+                double xy = PoseEstimatorConstants.kRejectInflationXYStdDevMeters;
+                double theta = PoseEstimatorConstants.kRejectInflationThetaStdDevRadians;
+                m_P[0] += xy * xy;
+                m_P[4] += xy * xy;
+                m_P[8] += theta * theta;
+                m_consecutiveRejects = 0;
+            }
+            return;
+        }
+        m_consecutiveRejects = 0;
+        m_acceptedUpdates++;
+
+        // K (3x2) = PHt * S^-1
+        double[] K = m_K;
+        for (int i = 0; i < 3; i++) {
+            K[i * 2] = PHt[i * 2] * i00 + PHt[i * 2 + 1] * i10;
+            K[i * 2 + 1] = PHt[i * 2] * i01 + PHt[i * 2 + 1] * i11;
+        }
+        m_x += K[0] * v0 + K[1] * v1;
+        m_y += K[2] * v0 + K[3] * v1;
+        m_theta += K[4] * v0 + K[5] * v1;
+
+        // P = P - K * (H * P) = P - K * PHt^T
+        double[] newP = m_newP;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                newP[i * 3 + j] = P[i * 3 + j] - (K[i * 2] * PHt[j * 2] + K[i * 2 + 1] * PHt[j * 2 + 1]);
+            }
+        }
+        System.arraycopy(newP, 0, P, 0, 9);
+        symmetrize();
+    }
+
+    private void symmetrize() {
+        double p01 = 0.5 * (m_P[1] + m_P[3]);
+        double p02 = 0.5 * (m_P[2] + m_P[6]);
+        double p12 = 0.5 * (m_P[5] + m_P[7]);
+        m_P[1] = p01; m_P[3] = p01;
+        m_P[2] = p02; m_P[6] = p02;
+        m_P[5] = p12; m_P[7] = p12;
+    }
+}
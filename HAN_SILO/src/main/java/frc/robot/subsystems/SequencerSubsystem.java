@@ -8,9 +8,16 @@
 package frc.robot.subsystems;
 
 import edu.wpi.first.wpilibj2.command.SubsystemBase;
+import frc.robot.Constants.CanConstants;
 import frc.robot.Constants.OpConstants;
 import edu.wpi.first.wpilibj.PWMTalonFX;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.util.CanDeviceManager;
+import frc.robot.util.CanDeviceManager.Signal;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotorConfigurator;
+import frc.robot.util.RobotFrame;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 
 import com.ctre.phoenix.motorcontrol.ControlMode;
 import com.ctre.phoenix.motorcontrol.FeedbackDevice;
@@ -22,6 +29,7 @@ import edu.wpi.first.wpilibj.InterruptHandlerFunction;
 //import edu.wpi.first.wpilibj.Timer;
 
 public class SequencerSubsystem extends SubsystemBase {
+  private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("SequencerSubsystem.periodic()");
 
   private final LedStringSubsystem m_ledstring;
   private final TalonFX mTalonSeq;
@@ -37,6 +45,9 @@ public class SequencerSubsystem extends SubsystemBase {
   private int mPowerCellCount;
   private int targetTicks = 20000;
   private boolean mIsIntakingBall = false;
+  private final NumberEntry mEncoderEntry = TelemetryPublisher.getInstance().addNumber("seqencoder", TelemetryPublisher.kFast, 1);
+  // this loop's sensor readings, see sample()
+  private final RobotFrame mFrame = RobotFrame.getInstance();
 
   /**
    * Creates a new SequencerSubsystem.
@@ -45,19 +56,17 @@ public class SequencerSubsystem extends SubsystemBase {
   public SequencerSubsystem(LedStringSubsystem m_ledstring) {
     this.m_ledstring = m_ledstring;
     mTalonSeq = new TalonFX(OpConstants.kMotorSeq);
-    mTalonSeq.configFactoryDefault();
-    mTalonSeq.configSelectedFeedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx, OpConstants.kTimeoutMs);
-		mTalonSeq.configNominalOutputForward(0, OpConstants.kTimeoutMs);
-		mTalonSeq.configNominalOutputReverse(0, OpConstants.kTimeoutMs);
-		mTalonSeq.configPeakOutputForward(1, OpConstants.kTimeoutMs);
-    mTalonSeq.configPeakOutputReverse(-1, OpConstants.kTimeoutMs);
-    mTalonSeq.config_kF(OpConstants.kPIDLoopIdx, 0.07, OpConstants.kTimeoutMs);
-		mTalonSeq.config_kP(OpConstants.kPIDLoopIdx, 0.05, OpConstants.kTimeoutMs);
-		mTalonSeq.config_kI(OpConstants.kPIDLoopIdx, 0, OpConstants.kTimeoutMs);
-    mTalonSeq.config_kD(OpConstants.kPIDLoopIdx, 0, OpConstants.kTimeoutMs);
-    mTalonSeq.configMotionCruiseVelocity(12000);
-    mTalonSeq.configMotionAcceleration(20000);
+    // written at boot by MotorConfigurator, after a factory reset if anything differs
+    MotorConfigurator.getInstance().addTalonFX("sequencer", mTalonSeq)
+      .feedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx)
+      .nominalOutput(0, 0)
+      .peakOutput(1, -1)
+      .pidf(OpConstants.kPIDLoopIdx, 0.05, 0, 0, 0.07)
+      .motionMagic(12000, 20000);
     mTalonSeq.setInverted(true);
+    // atSetpoint() and the ball count logic read the position
+    CanDeviceManager.getInstance().addTalonFX("sequencer", mTalonSeq)
+      .need(Signal.POSITION, CanConstants.kSequencerPositionPeriodMs);
     
     
     mLowSensor = new DigitalInput(OpConstants.kLowSequencer);
@@ -86,11 +95,21 @@ public class SequencerSubsystem extends SubsystemBase {
     //mTimer.start();
     //startDelay = false;
     //mLowSensorCur = mLowSensor.get();
-    mLastLowHasBall = lowSensorHasBall();
-    mLastHighHasBall = highSensorHasBall();
     mPowerCellCount = 0;
     mTalonSeq.setSelectedSensorPosition(0);
-   
+    mFrame.addSampler(this::sample);
+    mLastLowHasBall = lowSensorHasBall();
+    mLastHighHasBall = highSensorHasBall();
+  }
+
+  /**
+   * Reads the ball sensors and the encoder into the robot frame, once at the top of the loop.
+   */
+  private void sample(RobotFrame frame) {
+    frame.seqLowHasBall = !mLowSensor.get();
+    frame.seqMidHasBall = !mMidSensor.get();
+    frame.seqHighHasBall = !mHighSensor.get();
+    frame.seqEncoderPosition = mTalonSeq.getSelectedSensorPosition();
   }
 
   public void enableInterrupts(){
@@ -109,7 +128,8 @@ public class SequencerSubsystem extends SubsystemBase {
 
   @Override
   public void periodic() {
-    SmartDashboard.putNumber("seqencoder", mTalonSeq.getSelectedSensorPosition());
+    m_periodicProfile.start();
+    mEncoderEntry.set(mFrame.seqEncoderPosition);
     // Incrementing ball count
     if (lowSensorHasBall()) {
       if (!mLastLowHasBall) {
@@ -131,6 +151,7 @@ public class SequencerSubsystem extends SubsystemBase {
     mLastHighHasBall = highSensorHasBall();
 
    // System.out.println(mTalonSeq.getSelectedSensorPosition());
+    m_periodicProfile.stop();
   }
   
   /**
@@ -170,15 +191,15 @@ public class SequencerSubsystem extends SubsystemBase {
   }
 
   public boolean lowSensorHasBall() {
-    return !mLowSensor.get();
+    return mFrame.seqLowHasBall;
   }
 
   public boolean midSensorHasBall() {
-    return !mMidSensor.get();
+    return mFrame.seqMidHasBall;
   }
 
   public boolean highSensorHasBall() {
-    return !mHighSensor.get();
+    return mFrame.seqHighHasBall;
   }
 
   public boolean getMaxPowerCells() {
@@ -191,6 +212,7 @@ public class SequencerSubsystem extends SubsystemBase {
 
 public void resetEncoder() {
   mTalonSeq.setSelectedSensorPosition(0);
+  mFrame.seqEncoderPosition = 0;
 }
 
 public void intakeBall() {
@@ -199,11 +221,11 @@ public void intakeBall() {
 }
 
 public boolean atSetpoint() {
-	return Math.abs(targetTicks - mTalonSeq.getSelectedSensorPosition())  < 1000;
+	return Math.abs(targetTicks - mFrame.seqEncoderPosition)  < 1000;
 }
 
 public double getencoder() {
-	return mTalonSeq.getSelectedSensorPosition();
+	return mFrame.seqEncoderPosition;
 }
 
 public void setIntakingBall(boolean b) {
@@ -21,10 +21,20 @@ import com.ctre.phoenix.motorcontrol.TalonFXInvertType;
 import edu.wpi.first.wpilibj.DigitalInput;
 
 import frc.robot.Constants;
+import frc.robot.Constants.CanConstants;
 import frc.robot.Constants.OpConstants;
 import frc.robot.Constants.OpConstants.LedOption;
+import frc.robot.util.CanDeviceManager;
+import frc.robot.util.CanDeviceManager.Signal;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.MotorConfigurator;
+import frc.robot.util.RobotFrame;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.BooleanEntry;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 
 public class ShootClimbSubsystem extends SubsystemBase {
+  private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("ShootClimbSubsystem.periodic()");
 
   private final LedStringSubsystem m_ledstring;
   private DoubleSolenoid mShootClimbSolenoid;
@@ -40,6 +50,17 @@ public class ShootClimbSubsystem extends SubsystemBase {
   private final DigitalInput sClimbRetract;
   private boolean isHoodExtended;
   private double targetVelocity_UnitsPer100ms;
+  // this loop's sensor readings, see sample()
+  private final RobotFrame m_frame = RobotFrame.getInstance();
+
+  private final TelemetryPublisher m_telemetry = TelemetryPublisher.getInstance();
+  private final NumberEntry m_targetVelocityEntry = m_telemetry.addNumber("bdltargetvelocity", TelemetryPublisher.kFast, 1);
+  private final NumberEntry m_talon1VelocityEntry = m_telemetry.addNumber("talon1Velocity", TelemetryPublisher.kFast, 1);
+  private final NumberEntry m_talon2VelocityEntry = m_telemetry.addNumber("talon1Velocity2", TelemetryPublisher.kFast, 1);
+  private final BooleanEntry m_hiCylinderEntry = m_telemetry.addBoolean("isHiCy", TelemetryPublisher.kFast);
+  private final BooleanEntry m_loCylinderEntry = m_telemetry.addBoolean("isLoCy", TelemetryPublisher.kFast);
+  private final BooleanEntry m_climbExtendEntry = m_telemetry.addBoolean("isClimbEx", TelemetryPublisher.kFast);
+  private final BooleanEntry m_climbRetractEntry = m_telemetry.addBoolean("isClimbRt", TelemetryPublisher.kFast);
 
   
   /**
@@ -61,44 +82,18 @@ public class ShootClimbSubsystem extends SubsystemBase {
     sClimbExtend = new DigitalInput(OpConstants.kClimbExtend);
     sClimbRetract = new DigitalInput(OpConstants.kClimbRetract);
 
-    mTalonShoot1.configFactoryDefault();
-    mTalonShoot2.configFactoryDefault();
-
     //make both shooter motors run
     //mTalonShoot2.follow(mTalonShoot1);
     //mTalonShoot2.setInverted(TalonFXInvertType.OpposeMaster);
     mTalonShoot1.setInverted(TalonFXInvertType.CounterClockwise);
     mTalonShoot2.setInverted(TalonFXInvertType.Clockwise);
 
-    /* Config sensor used for Primary PID [Velocity] */
-    mTalonShoot1.configSelectedFeedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx, OpConstants.kTimeoutMs);
-    mTalonShoot2.configSelectedFeedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx, OpConstants.kTimeoutMs);
     /** Phase sensor accordingly. 
       * Positive Sensor Reading should match Green (blinking) Leds on Talon
     */
 		mTalonShoot1.setSensorPhase(false);
 		mTalonShoot2.setSensorPhase(true);
 
-		/* Config the peak and nominal outputs */
-		mTalonShoot1.configNominalOutputForward(0, OpConstants.kTimeoutMs);
-		mTalonShoot1.configNominalOutputReverse(0, OpConstants.kTimeoutMs);
-		mTalonShoot1.configPeakOutputForward(1, OpConstants.kTimeoutMs);
-		mTalonShoot1.configPeakOutputReverse(-1, OpConstants.kTimeoutMs);
-		mTalonShoot2.configNominalOutputForward(0, OpConstants.kTimeoutMs);
-		mTalonShoot2.configNominalOutputReverse(0, OpConstants.kTimeoutMs);
-		mTalonShoot2.configPeakOutputForward(1, OpConstants.kTimeoutMs);
-		mTalonShoot2.configPeakOutputReverse(-1, OpConstants.kTimeoutMs);
-
-		/* Config the Velocity closed loop gains in slot0 */
-		mTalonShoot1.config_kF(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kF, OpConstants.kTimeoutMs);
-		mTalonShoot1.config_kP(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kP, OpConstants.kTimeoutMs);
-		mTalonShoot1.config_kI(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kI, OpConstants.kTimeoutMs);
-		mTalonShoot1.config_kD(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kD, OpConstants.kTimeoutMs);
-		mTalonShoot2.config_kF(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kF, OpConstants.kTimeoutMs);
-		mTalonShoot2.config_kP(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kP, OpConstants.kTimeoutMs);
-		mTalonShoot2.config_kI(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kI, OpConstants.kTimeoutMs);
-		mTalonShoot2.config_kD(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity.kD, OpConstants.kTimeoutMs);
-
     mTalonShoot1.setNeutralMode(NeutralMode.Brake);
     mTalonShoot2.setNeutralMode(NeutralMode.Brake);
 
@@ -106,22 +101,54 @@ public class ShootClimbSubsystem extends SubsystemBase {
     StatorCurrentLimitConfiguration statorConfig = 
 //                                    ENABLED   LIMIT(AMP)   TRIGGER THRESHOLD(AMP)   TRIGGER THRESHOLD TIME(s)
     new StatorCurrentLimitConfiguration(true,      40,                45,                   1.0);
-    mTalonShoot1.configStatorCurrentLimit(statorConfig);
-    mTalonShoot2.configStatorCurrentLimit(statorConfig);
     */
+    // stator limit off, the factory default, declared so it is checked every boot
+    StatorCurrentLimitConfiguration statorConfig = new StatorCurrentLimitConfiguration();
     SupplyCurrentLimitConfiguration supplyConfig = 
     //                                ENABLED   LIMIT(AMP)   TRIGGER THRESHOLD(AMP)   TRIGGER THRESHOLD TIME(s)
     new SupplyCurrentLimitConfiguration(true,      40,                45,                   0.5);
-    mTalonShoot1.configSupplyCurrentLimit(supplyConfig);
-    mTalonShoot2.configSupplyCurrentLimit(supplyConfig);
+
+    // persistent configs are written at boot by MotorConfigurator, after a factory reset if anything differs
+    MotorConfigurator configurator = MotorConfigurator.getInstance();
+    configurator.addTalonFX("shooter1", mTalonShoot1)
+      .feedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx)  // sensor for the velocity PID
+      .nominalOutput(0, 0)
+      .peakOutput(1, -1)
+      .gains(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity)  // velocity closed loop gains
+      .statorCurrentLimit(statorConfig)
+      .supplyCurrentLimit(supplyConfig);
+    configurator.addTalonFX("shooter2", mTalonShoot2)
+      .feedbackSensor(FeedbackDevice.IntegratedSensor, OpConstants.kPIDLoopIdx)
+      .nominalOutput(0, 0)
+      .peakOutput(1, -1)
+      .gains(OpConstants.kPIDLoopIdx, OpConstants.kGains_Velocity)
+      .statorCurrentLimit(statorConfig)
+      .supplyCurrentLimit(supplyConfig);
+
+    // atTargetVelocity() reads shooter 1, shooter 2's velocity only goes to the dashboard
+    CanDeviceManager can = CanDeviceManager.getInstance();
+    can.addTalonFX("shooter1", mTalonShoot1).need(Signal.VELOCITY, CanConstants.kShooterVelocityPeriodMs);
+    can.addTalonFX("shooter2", mTalonShoot2).need(Signal.VELOCITY, CanConstants.kDebugPeriodMs);
 
     shootMode();    
     hoodRetract();
     brakeOff();
 
-    if(System.currentTimeMillis() % 100 == 0){
-      SmartDashboard.putNumber("ShootingPercent", 0.5);
-    }
+    SmartDashboard.putNumber("ShootingPercent", 0.5);
+
+    m_frame.addSampler(this::sample);
+  }
+
+  /**
+   * Reads the flywheel speeds and the cylinder/climber sensors into the robot frame, once at the top of the loop.
+   */
+  private void sample(RobotFrame frame) {
+    frame.shooter1Velocity = mTalonShoot1.getSelectedSensorVelocity();
+    frame.shooter2Velocity = mTalonShoot2.getSelectedSensorVelocity();
+    frame.hiCylinder = !sHiCylinder.get();
+    frame.loCylinder = !sLoCylinder.get();
+    frame.climbExtend = !sClimbExtend.get();
+    frame.climbRetract = !sClimbRetract.get();
   }
 
   public void testSpeed(){
@@ -130,24 +157,25 @@ public class ShootClimbSubsystem extends SubsystemBase {
   
   @Override
   public void periodic() {
+    m_periodicProfile.start();
     // This method will be called once per scheduler run
     //shootPercent = SmartDashboard.getNumber("ShootingPercent", 0.5);
     //enableShooting(shootPercent);
     
-    if(System.currentTimeMillis() % 100 == 0){
-      SmartDashboard.putBoolean("isHiCy", isHiCylinderSensor());
-      SmartDashboard.putBoolean("isLoCy", isLoCylinderSensor());
-      SmartDashboard.putBoolean("isClimbEx", isClimbExtendSensor());
-      SmartDashboard.putBoolean("isClimbRt", isClimbRetractSensor());
-    }
+    m_hiCylinderEntry.set(isHiCylinderSensor());
+    m_loCylinderEntry.set(isLoCylinderSensor());
+    m_climbExtendEntry.set(isClimbExtendSensor());
+    m_climbRetractEntry.set(isClimbRetractSensor());
+    m_periodicProfile.stop();
   }
 
   public double getShootMotor1Velocity() {
-    return mTalonShoot1.getSelectedSensorVelocity();
+    return m_frame.shooter1Velocity;
   }
 
   public boolean atTargetVelocity(){
-    return mTalonShoot1.getSelectedSensorVelocity() >= targetVelocity_UnitsPer100ms*0.95 && mTalonShoot1.getSelectedSensorVelocity() < targetVelocity_UnitsPer100ms*1.05;
+    double velocity = m_frame.shooter1Velocity;
+    return velocity >= targetVelocity_UnitsPer100ms*0.95 && velocity < targetVelocity_UnitsPer100ms*1.05;
   }
   
   public void enableShooting() {
@@ -157,7 +185,16 @@ public class ShootClimbSubsystem extends SubsystemBase {
   }
   
   public void spinShooter(double shootMotorPercent_0_to_1) {
-		targetVelocity_UnitsPer100ms = shootMotorPercent_0_to_1 * 3000.0 * 2048 / 600;
+    spinShooterRpm(shootMotorPercent_0_to_1 * 3000.0, true);
+  }
+
+  /**
+   * Closed loop flywheel speed, e.g. from the shot solver's table.
+   * @param rpm flywheel motor RPM
+   * @param hoodExtended hood position for the shot
+   */
+  public void spinShooterRpm(double rpm, boolean hoodExtended) {
+		targetVelocity_UnitsPer100ms = rpm * 2048 / 600;
     /**
 			 * Convert 500 RPM to units / 100ms.
 			 * 2048(FX) 4096(SRX) Units/Rev * 500 RPM / 600 100ms/min in either direction:
@@ -170,13 +207,13 @@ public class ShootClimbSubsystem extends SubsystemBase {
 		mTalonShoot1.set(ControlMode.Velocity, targetVelocity_UnitsPer100ms);
     mTalonShoot2.set(ControlMode.Velocity, targetVelocity_UnitsPer100ms);
 
-  //  if(System.currentTimeMillis() % 100 == 0){
-      SmartDashboard.putNumber("bdltargetvelocity", targetVelocity_UnitsPer100ms);
-      SmartDashboard.putNumber("talon1Velocity", mTalonShoot1.getSelectedSensorVelocity());
-      SmartDashboard.putNumber("talon1Velocity2", mTalonShoot2.getSelectedSensorVelocity());
-  //  }
-    if (!isHoodExtended) {
+    m_targetVelocityEntry.set(targetVelocity_UnitsPer100ms);
+    m_talon1VelocityEntry.set(m_frame.shooter1Velocity);
+    m_talon2VelocityEntry.set(m_frame.shooter2Velocity);
+    if (hoodExtended && !isHoodExtended) {
       hoodExtend();
+    } else if (!hoodExtended && isHoodExtended) {
+      hoodRetract();
     }
   }
 
@@ -273,16 +310,16 @@ public class ShootClimbSubsystem extends SubsystemBase {
   }
 
   public boolean isHiCylinderSensor() {
-    return !sHiCylinder.get();
+    return m_frame.hiCylinder;
   }
   public boolean isLoCylinderSensor() {
-    return !sLoCylinder.get();
+    return m_frame.loCylinder;
   }
   public boolean isClimbExtendSensor() {
-    return !sClimbExtend.get();
+    return m_frame.climbExtend;
   }
   public boolean isClimbRetractSensor() {
-    return !sClimbRetract.get();
+    return m_frame.climbRetract;
   }
 
   public void resetClimbEncoder() {
@@ -12,12 +12,19 @@ import com.revrobotics.CANPIDController;
 import com.revrobotics.CANSparkMax;
 import com.revrobotics.ControlType;
 import com.revrobotics.CANSparkMaxLowLevel.MotorType;
-import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
 
 import edu.wpi.first.wpilibj.RobotBase;
 import edu.wpi.first.wpilibj.geometry.Rotation2d;
 import edu.wpi.first.wpilibj.kinematics.SwerveModuleState;
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+import frc.robot.Constants.CanConstants;
+import frc.robot.Constants.DriveConstants;
+import frc.robot.util.CanDeviceManager;
+import frc.robot.util.CanDeviceManager.Signal;
+import frc.robot.util.MotorConfigurator;
+import frc.robot.util.RobotFrame;
+import frc.robot.util.TelemetryPublisher;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
 
 import static frc.robot.Constants.kTICKS;
 
@@ -36,6 +43,13 @@ public class SwerveModule {
   private int id;
   private Boolean isInverted = Boolean.FALSE;
   private DebugValues debugValues;
+  private NumberEntry turningMotorOutputEntry;
+  private NumberEntry driveVelocityOutputEntry;
+
+  // encoders as of the last sample(), setDesiredState() runs on these instead of reading them again
+  private double m_turningPosition;
+  private double m_turningVelocity;
+  private double m_driveVelocity;
 
   /**
    * Constructs a SwerveModule.
@@ -46,11 +60,14 @@ public class SwerveModule {
   public SwerveModule(int driveMotorChannel, int turningMotorChannel) {
     id = driveMotorChannel;
     debugValues = new DebugValues(id);
+    turningMotorOutputEntry = TelemetryPublisher.getInstance().addNumber("turningMotorOutput-" + id, TelemetryPublisher.kFast, 0.01);
+    driveVelocityOutputEntry = TelemetryPublisher.getInstance().addNumber("driveVelocityOutput-" + id, TelemetryPublisher.kFast, 0.01);
 
     if(RobotBase.isReal()){
       int smartMotionSlot = 0;
       m_driveMotor = new CANSparkMax(driveMotorChannel, MotorType.kBrushless);
-      m_driveMotor.restoreFactoryDefaults();
+      // parameters are written at boot by MotorConfigurator, after a factory reset if anything differs
+      MotorConfigurator configurator = MotorConfigurator.getInstance();
 
       /*
         Sets the current limit in Amps. The motor controller will reduce the controller voltage output
@@ -68,42 +85,38 @@ public class SwerveModule {
           limitRPM      RPM less than this value will be set to the stallLimit,
                         RPM values greater than limitRPM will scale linearly to freeLimit
       */
-     // m_driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus0, 5);
-     // m_driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, 5);
-     // m_driveMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, 10);
-               
-      m_driveMotor.setSmartCurrentLimit(40, 40);
       //m_driveMotor.setSmartCurrentLimit(stallLimit, freeLimit, limitRPM);
       m_drivePIDController = m_driveMotor.getPIDController();
       m_driveEncoder = m_driveMotor.getEncoder();
-      m_drivePIDController.setP(1.5e-4); //500 rpm error with 5e-5
-      m_drivePIDController.setI(0);
-      m_drivePIDController.setD(0);
-      m_drivePIDController.setFF(0.0002); //156);
-      m_drivePIDController.setOutputRange(-1, 1);
-      m_drivePIDController.setSmartMotionMaxVelocity(2000, smartMotionSlot); //RPM
-      m_drivePIDController.setSmartMotionMinOutputVelocity(0, smartMotionSlot);
-      m_drivePIDController.setSmartMotionMaxAccel(1500, smartMotionSlot); //RPM per second
-      m_drivePIDController.setSmartMotionAllowedClosedLoopError(50, smartMotionSlot);
+      configurator.addSparkMax("drive-" + id, m_driveMotor)
+        .inverted(false)
+        .smartCurrentLimit(40, 40)
+        .pidf(smartMotionSlot, 1.5e-4, 0, 0, 0.0002) //P 500 rpm error with 5e-5, FF was 156
+        .outputRange(smartMotionSlot, -1, 1)
+        //                                 max RPM  min  RPM per second  allowed error
+        .smartMotion(smartMotionSlot,        2000,   0,       1500,           50);
   
       m_turningMotor = new CANSparkMax(turningMotorChannel, MotorType.kBrushless);
-      m_turningMotor.restoreFactoryDefaults();
-   //   m_turningMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus0, 5);
-    //  m_turningMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus1, 5);
-    //  m_turningMotor.setPeriodicFramePeriod(PeriodicFrame.kStatus2, 10);
       m_turningPIDController = m_turningMotor.getPIDController();
       m_turningEncoder = m_turningMotor.getEncoder();
-      m_turningMotor.setInverted(true);
-      m_turningPIDController.setP(5e-5);
-      m_turningPIDController.setI(0);
-      m_turningPIDController.setD(0);
-      m_turningPIDController.setIZone(0);
-      m_turningPIDController.setFF(0.0002); //.000156
-      m_turningPIDController.setOutputRange(-1, 1);
-      m_turningPIDController.setSmartMotionMaxVelocity(5000, smartMotionSlot);
-      m_turningPIDController.setSmartMotionMinOutputVelocity(0, smartMotionSlot);
-      m_turningPIDController.setSmartMotionMaxAccel(50000, smartMotionSlot);
-      m_turningPIDController.setSmartMotionAllowedClosedLoopError(0.1, smartMotionSlot); 
+      configurator.addSparkMax("turning-" + turningMotorChannel, m_turningMotor)
+        .inverted(true)
+        .pidf(smartMotionSlot, 5e-5, 0, 0, 0.0002) //FF was .000156
+        .iZone(smartMotionSlot, 0)
+        .outputRange(smartMotionSlot, -1, 1)
+        .smartMotion(smartMotionSlot,        5000,   0,      50000,          0.1);
+
+      // status frames for what we read: drive velocity and turning position every loop (every odometry
+      // update with the odometry thread), applied output and turning velocity only for the debug log
+      int odometryPeriodMs = (int) (DriveConstants.kOdometryPeriodSeconds * 1000);
+      CanDeviceManager can = CanDeviceManager.getInstance();
+      can.addSparkMax("drive-" + id, m_driveMotor)
+        .need(Signal.VELOCITY, DriveConstants.kUseOdometryThread ? odometryPeriodMs : CanConstants.kDriveVelocityPeriodMs)
+        .need(Signal.APPLIED_OUTPUT, CanConstants.kDebugPeriodMs);
+      can.addSparkMax("turning-" + turningMotorChannel, m_turningMotor)
+        .need(Signal.POSITION, DriveConstants.kUseOdometryThread ? odometryPeriodMs : CanConstants.kTurningPositionPeriodMs)
+        .need(Signal.VELOCITY, CanConstants.kDebugPeriodMs)
+        .need(Signal.APPLIED_OUTPUT, CanConstants.kDebugPeriodMs);
     }
     else{
       m_driveMotor = null;
@@ -117,10 +130,6 @@ public SwerveModule() {
   System.err.println("DUMMY SWERVE MODULE HAS BEEN INSTANTIATED");
 }
 
-public double getDriveEncoderPosition(){
-  return m_driveEncoder.getPosition();
-}
-
   /**
    * Set the azimuthTalon encoder relative to wheel zero alignment position. For example, if current
    * absolute encoder = 0 and zero setpoint = 2767, then current relative setpoint = -2767.
@@ -169,22 +178,60 @@ public double getDriveEncoderPosition(){
    * @return The current state of the module.
    */
   public SwerveModuleState getState() {
-    //return new SwerveModuleState(m_driveEncoder.getRate(), new Rotation2d(m_turningEncoder.get()));
-        //FIXME: apply any needed unit convertion here...
-    double velocity = 0;
-    double azimuth = 0;
-    if(RobotBase.isReal()){ // RPM/60 is RPS *PI*D is inches/s * 39.37 is meter/s but it's 5.5 ticks/rev
-       velocity = (m_driveEncoder.getVelocity() * Math.PI * 3.0) / (39.37 * 60.0 * 5.5);
-       azimuth = -m_turningEncoder.getPosition();
+    return new SwerveModuleState(getVelocity(), new Rotation2d(getAngleRadians()));
+  }
+
+  /**
+   * Reads this module's encoders into the robot frame, once per loop from DriveSubsystem.
+   *
+   * @param index the module's slot in the frame arrays
+   */
+  public void sample(RobotFrame frame, int index) {
+    if(RobotBase.isReal()){
+      m_turningPosition = m_turningEncoder.getPosition();
+      m_turningVelocity = m_turningEncoder.getVelocity();
+      m_driveVelocity = m_driveEncoder.getVelocity();
+    }
+    frame.moduleTurningPosition[index] = m_turningPosition;
+    frame.moduleTurningVelocity[index] = m_turningVelocity;
+    frame.moduleDriveVelocity[index] = m_driveVelocity;
+    frame.moduleVelocity[index] = toMetersPerSecond(m_driveVelocity);
+    frame.moduleAngleRadians[index] = toAngleRadians(m_turningPosition);
+  }
+
+  /**
+   * Reads the encoder now, for the odometry thread. The robot loop uses the frame.
+   *
+   * @return drive wheel speed in meters per second
+   */
+  public double getVelocity() {
+    if(RobotBase.isReal()){
+      return toMetersPerSecond(m_driveEncoder.getVelocity());
     }
-    double azimuthPercent = Math.IEEEremainder(azimuth, kTICKS)/kTICKS;
+    return 0;
+  }
 
+  /**
+   * Reads the encoder now, for the odometry thread. The robot loop uses the frame.
+   *
+   * @return module angle in radians, -PI to PI
+   */
+  public double getAngleRadians() {
     if(RobotBase.isReal()){
-      //SmartDashboard.putNumber("Module"+id+" Drive Encoder Tick", m_driveEncoder.getPosition());
+      return toAngleRadians(m_turningEncoder.getPosition());
     }
+    return toAngleRadians(0);
+  }
 
-    return new SwerveModuleState(velocity, new Rotation2d(azimuthPercent * 2.0 * Math.PI));
+  private static double toMetersPerSecond(double driveEncoderVelocity) {
+    //FIXME: apply any needed unit convertion here...
+    // RPM/60 is RPS *PI*D is inches/s * 39.37 is meter/s but it's 5.5 ticks/rev
+    return (driveEncoderVelocity * Math.PI * 3.0) / (39.37 * 60.0 * 5.5);
+  }
 
+  private static double toAngleRadians(double turningEncoderPosition) {
+    double azimuthPercent = Math.IEEEremainder(-turningEncoderPosition, kTICKS)/kTICKS;
+    return azimuthPercent * 2.0 * Math.PI;
   }
 
   /**
@@ -193,6 +240,16 @@ public double getDriveEncoderPosition(){
    * @param state Desired state with speed and angle.
    */
   public void setDesiredState(SwerveModuleState state) {
+    setDesiredState(state.speedMetersPerSecond, state.angle.getRadians());
+  }
+
+  /**
+   * Sets the desired state for the module.
+   *
+   * @param speedMetersPerSecond Desired wheel speed.
+   * @param angleRadians         Desired module angle.
+   */
+  public void setDesiredState(double speedMetersPerSecond, double angleRadians) {
     // Calculate the drive output from the drive PID controller.
     //final var driveOutput = m_drivePIDController.calculate(
     //    m_driveEncoder.getRate(), state.speedMetersPerSecond);
@@ -206,16 +263,12 @@ public double getDriveEncoderPosition(){
     //m_driveMotor.set(driveOutput);
     //m_turningMotor.set(turnOutput);
 
-    double azimuth = -state.angle.getDegrees() * kTICKS/360.0;
-    double speedMetersPerSecond = state.speedMetersPerSecond;
+    double azimuth = -angleRadians * kTICKS/(2.0 * Math.PI);
     //SmartDashboard.putNumber("SpeedMPS-"+id, speedMetersPerSecond);
     // meters per sec * 39.37 is inches/s * 60 is inches per min / PI*D is RPM * 5.5 is ticks
     double drive = (speedMetersPerSecond * 5.5 * 39.37  * 60.0) / (3.0 * Math.PI);
     //wheel.set(-angleDegrees/360, speedMetersPerSecond * 16.0 * 39.37  * 60.0 / 3.0 / Math.PI);
-    double azimuthPosition = 0;
-    if(RobotBase.isReal()){
-      azimuthPosition = m_turningEncoder.getPosition();
-    }
+    double azimuthPosition = m_turningPosition;
     double azimuthError = Math.IEEEremainder(azimuth - azimuthPosition, kTICKS);
 
     // ********************************************************
@@ -234,13 +287,11 @@ public double getDriveEncoderPosition(){
       double turningMotorOutput = azimuthPosition + azimuthError;
       m_turningPIDController.setReference(turningMotorOutput, ControlType.kSmartMotion);
       m_drivePIDController.setReference(drive, ControlType.kVelocity);
-      if(System.currentTimeMillis() % 100 == 0){
-        SmartDashboard.putNumber("turningMotorOutput-" + id,  turningMotorOutput);
-        SmartDashboard.putNumber("driveVelocityOutput-" + id,  drive);
-      }
+      turningMotorOutputEntry.set(turningMotorOutput);
+      driveVelocityOutputEntry.set(drive);
 
-      debugValues.update(drive, turningMotorOutput, m_turningMotor.getAppliedOutput(), m_turningEncoder.getVelocity(), 
-      m_driveMotor.getAppliedOutput(), m_driveEncoder.getVelocity());
+      debugValues.update(drive, turningMotorOutput, m_turningMotor.getAppliedOutput(), m_turningVelocity,
+      m_driveMotor.getAppliedOutput(), m_driveVelocity);
     }
 
     //SmartDashboard.putNumber("RelativeEncoder"+id, m_turningEncoder.getPosition());
@@ -256,6 +307,7 @@ public double getDriveEncoderPosition(){
         m_driveEncoder.setPosition(0);
         m_turningEncoder.setPosition(absoluteEncoderVoltage * 16/3.26);
       }
+      m_turningPosition = absoluteEncoderVoltage * 16/3.26;
     }
  // }
 
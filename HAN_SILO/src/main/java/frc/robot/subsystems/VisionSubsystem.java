@@ -0,0 +1,218 @@
+package frc.robot.subsystems;
+
+import frc.robot.Constants.OpConstants;
+import frc.robot.Constants.VisionConstants;
+import frc.robot.util.LoopProfiler;
+import frc.robot.util.ShotTable;
+import frc.robot.vision.GoalTracker;
+import frc.robot.vision.ShooterAimingParameters;
+import frc.robot.vision.ShotSolution;
+import frc.robot.vision.ShotSolver;
+import frc.robot.vision.TargetObservation;
+import frc.robot.vision.VisionFrame;
+import frc.robot.vision.VisionSource;
+import frc.robot.vision.GoalTracker.TrackReport;
+
+import java.util.Optional;
+
+import edu.wpi.first.wpilibj.Timer;
+import edu.wpi.first.wpilibj.geometry.Pose2d;
+import edu.wpi.first.wpilibj.geometry.Rotation2d;
+import edu.wpi.first.wpilibj2.command.SubsystemBase;
+
+/**
+ * Fuses every camera (VisionSource) into one GoalTracker. Each loop the new frames from all sources are taken in
+ * capture order, moved into field coordinates with the robot pose from when they were captured, and fed to the
+ * tracker and the pose estimator. Aiming comes from the tracker, so either camera can drive it.
+ *
+ * @see GoalTracker.java
+ */
+public class VisionSubsystem extends SubsystemBase {
+    private final LoopProfiler.Section m_periodicProfile = LoopProfiler.getInstance().addSection("VisionSubsystem.periodic()");
+    private final DriveSubsystem m_robotDrive;
+    private final VisionSource[] m_sources;
+    private final GoalTracker goal_tracker_ = new GoalTracker();
+    private PoseEstimatorSubsystem pose_estimator_ = null;
+
+    // new frames this loop, sorted by capture time
+    private final VisionFrame[] frames_;
+    // robot pose {x, y, theta} at frame capture time, reused for every frame
+    private final double[] field_to_vehicle_ = new double[3];
+    // field positions of the goals in one frame, reused
+    private final double[] field_to_goal_x_ = new double[VisionConstants.kMaxDetectionsPerUpdate];
+    private final double[] field_to_goal_y_ = new double[VisionConstants.kMaxDetectionsPerUpdate];
+    private final double[] chassis_speeds_ = new double[3];
+    // robot {x, y, vx, vy} in field coordinates, extrapolated to when the shot leaves
+    private final double[] robot_at_release_ = new double[4];
+    private final ShotSolver shot_solver_ = new ShotSolver(
+            new ShotTable(OpConstants.kShotTableRangeMeters, OpConstants.kShotTableRpm,
+                    OpConstants.kShotTableHoodExtended, OpConstants.kShotTableTimeOfFlightSeconds),
+            OpConstants.kShotSolverIterations);
+
+    public VisionSubsystem(DriveSubsystem robotDrive, VisionSource... sources) {
+        m_robotDrive = robotDrive;
+        m_sources = sources;
+        frames_ = new VisionFrame[sources.length];
+    }
+
+    /**
+     * Also feed goal observations to the pose estimator as landmark measurements.
+     */
+    public void setPoseEstimator(PoseEstimatorSubsystem poseEstimator) {
+        pose_estimator_ = poseEstimator;
+    }
+
+    @Override
+    public void periodic() {
+        m_periodicProfile.start();
+        int frame_count = 0;
+        for (VisionSource source : m_sources) {
+            VisionFrame frame = source.pollFrame();
+            if (frame == null) {
+                continue;
+            }
+            // insertion sort, there are only ever a couple of cameras
+            int i = frame_count++;
+            while (i > 0 && frames_[i - 1].getTimestamp() > frame.getTimestamp()) {
+                frames_[i] = frames_[i - 1];
+                i--;
+            }
+            frames_[i] = frame;
+        }
+        for (int i = 0; i < frame_count; i++) {
+            addFrame(frames_[i]);
+            frames_[i] = null;
+        }
+        // age the tracks out even when no camera sent anything
+        goal_tracker_.prune(Timer.getFPGATimestamp());
+        m_periodicProfile.stop();
+    }
+
+    private void addFrame(VisionFrame frame) {
+        double timestamp = frame.getTimestamp();
+        // Use the pose from when the frame was captured, not from now, so targets seen while turning don't smear
+        if (!m_robotDrive.getPoseAt(timestamp, field_to_vehicle_)) {
+            Pose2d pose = m_robotDrive.getPose();
+            field_to_vehicle_[0] = pose.getX();
+            field_to_vehicle_[1] = pose.getY();
+            field_to_vehicle_[2] = pose.getRotation().getRadians();
+        }
+        double cos = Math.cos(field_to_vehicle_[2]);
+        double sin = Math.sin(field_to_vehicle_[2]);
+
+        int goal_count = frame.getCount();
+        for (int i = 0; i < goal_count; i++) {
+            TargetObservation observation = frame.get(i);
+            double x = observation.getX();
+            double y = observation.getY();
+            if (pose_estimator_ != null) {
+                pose_estimator_.addVisionObservation(timestamp, x, y);
+            }
+            field_to_goal_x_[i] = field_to_vehicle_[0] + x * cos - y * sin;
+            field_to_goal_y_[i] = field_to_vehicle_[1] + x * sin + y * cos;
+        }
+        // an empty frame still ages out the old tracks
+        goal_tracker_.update(timestamp, field_to_goal_x_, field_to_goal_y_, goal_count);
+    }
+
+    public boolean hasTarget() {
+        for (VisionSource source : m_sources) {
+            if (source.hasTarget()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void enableLEDs() {
+        for (VisionSource source : m_sources) {
+            source.enableLED();
+        }
+    }
+
+    public void disableLEDs() {
+        for (VisionSource source : m_sources) {
+            source.disableLED();
+        }
+    }
+
+    /**
+     * The best goal's filtered field position and velocity, predicted to timestamp.
+     *
+     * @param out {x, y, vx, vy, track id}
+     * @return false if no goal is tracked
+     */
+    public boolean getGoal(double timestamp, double[] out) {
+        TrackReport report = goal_tracker_.getBestTrack(Timer.getFPGATimestamp());
+        if (report == null) {
+            return false;
+        }
+        out[0] = report.getPredictedX(timestamp);
+        out[1] = report.getPredictedY(timestamp);
+        out[2] = report.field_to_goal_vx;
+        out[3] = report.field_to_goal_vy;
+        out[4] = report.id;
+        return true;
+    }
+
+    /**
+     * Aims for when the shot actually leaves, now + OpConstants.kShotLatencySeconds.
+     */
+    public Optional<ShooterAimingParameters> getAimingParameters() {
+        return getAimingParameters(Timer.getFPGATimestamp() + OpConstants.kShotLatencySeconds);
+    }
+
+    /**
+     * Range and direction from the robot to the goal at a future time. The goal comes from the track's filter
+     * extrapolated to that time, the robot from its pose moved on at its current velocity.
+     */
+    public Optional<ShooterAimingParameters> getAimingParameters(double aim_timestamp) {
+        double now = Timer.getFPGATimestamp();
+        TrackReport report = goal_tracker_.getBestTrack(now);
+        if (report == null) {
+            return Optional.empty();
+        }
+        predictRobot(Math.max(0, aim_timestamp - now));
+        double robot_to_goal_x = report.getPredictedX(aim_timestamp) - robot_at_release_[0];
+        double robot_to_goal_y = report.getPredictedY(aim_timestamp) - robot_at_release_[1];
+        return Optional.of(new ShooterAimingParameters(Math.hypot(robot_to_goal_x, robot_to_goal_y),
+                new Rotation2d(robot_to_goal_x, robot_to_goal_y), report.latest_timestamp, report.stability));
+    }
+
+    /**
+     * Solves a shot on the move for when it would leave, now + OpConstants.kShotLatencySeconds: the aim point
+     * compensated for time of flight and the robot's velocity, and the flywheel/hood setpoints for it.
+     *
+     * @return false if no goal is tracked, out is unchanged
+     */
+    public boolean getShotSolution(ShotSolution out) {
+        double now = Timer.getFPGATimestamp();
+        TrackReport report = goal_tracker_.getBestTrack(now);
+        if (report == null) {
+            return false;
+        }
+        double release_timestamp = now + OpConstants.kShotLatencySeconds;
+        predictRobot(OpConstants.kShotLatencySeconds);
+        shot_solver_.solve(robot_at_release_[0], robot_at_release_[1], robot_at_release_[2], robot_at_release_[3],
+                report.getPredictedX(release_timestamp), report.getPredictedY(release_timestamp),
+                report.field_to_goal_vx, report.field_to_goal_vy, out);
+        return true;
+    }
+
+    /**
+     * Moves the current pose on at the current chassis speeds, into robot_at_release_.
+     */
+    private void predictRobot(double lead) {
+        Pose2d pose = m_robotDrive.getPose();
+        m_robotDrive.getChassisSpeeds(chassis_speeds_);
+        double heading = pose.getRotation().getRadians();
+        double cos = Math.cos(heading);
+        double sin = Math.sin(heading);
+        double vx = chassis_speeds_[0] * cos - chassis_speeds_[1] * sin;
+        double vy = chassis_speeds_[0] * sin + chassis_speeds_[1] * cos;
+        robot_at_release_[0] = pose.getX() + vx * lead;
+        robot_at_release_[1] = pose.getY() + vy * lead;
+        robot_at_release_[2] = vx;
+        robot_at_release_[3] = vy;
+    }
+}
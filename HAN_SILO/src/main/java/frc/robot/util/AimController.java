@@ -0,0 +1,152 @@
+package frc.robot.util;
+
+/**
+ * Turns the robot to face a goal in field coordinates, in radians throughout.
+ *
+ * The target bearing is the field direction from the robot to the goal, so it stays put while the robot turns and
+ * only moves when the robot or goal moves. The error is wrapped to [-pi, pi], so there is no -179/179 problem.
+ * On top of PD on the error, the rate the bearing changes from the robot's (and goal's) translation is fed forward,
+ * so the robot stays locked on while strafing instead of lagging behind. The derivative is taken on the wrapped change
+ * in error and starts over when the tracked goal changes, so neither crossing pi nor a track switch kicks the output.
+ *
+ * Settle time and overshoot are measured from the last reset(), for tuning.
+ */
+public class AimController {
+    private final double mKp;
+    private final double mKd;
+    private final double mMaxRate;
+    private final double mTolerance;
+    private final double mSettleDuration;
+
+    private double mTargetBearing;
+    private double mFeedForward;
+    private double mError;
+    private double mLastError;
+    private double mLastTimestamp;
+    private int mTrackId;
+
+    // metrics since reset()
+    private double mStartTime;
+    private double mInitialErrorSign;
+    private double mOvershoot;
+    private double mWithinToleranceSince;
+    private double mSettleTime;
+
+    /**
+     * @param kp             rad/s per radian of error
+     * @param kd             rad/s per rad/s of error rate
+     * @param maxRate        output limit, rad/s
+     * @param tolerance      on target within this many radians
+     * @param settleDuration seconds within tolerance to count as settled
+     */
+    public AimController(double kp, double kd, double maxRate, double tolerance, double settleDuration) {
+        mKp = kp;
+        mKd = kd;
+        mMaxRate = maxRate;
+        mTolerance = tolerance;
+        mSettleDuration = settleDuration;
+        reset(0);
+    }
+
+    /**
+     * Starts a new aim, restarting the settle time and overshoot measurement.
+     */
+    public void reset(double timestamp) {
+        mStartTime = timestamp;
+        mLastTimestamp = Double.NaN;
+        mTrackId = -1;
+        mInitialErrorSign = 0;
+        mOvershoot = 0;
+        mWithinToleranceSince = Double.NaN;
+        mSettleTime = Double.NaN;
+    }
+
+    /**
+     * @param trackId id of the goal track aimed at, a new id restarts the derivative
+     * @param heading field heading of the robot, CCW positive
+     * @param robotVx robot velocity in field coordinates
+     * @param goalVx  goal velocity in field coordinates, 0 for a fixed goal
+     * @return CCW rotation rate to command, rad/s
+     */
+    public double calculate(double timestamp, int trackId, double heading, double robotX, double robotY, double robotVx,
+            double robotVy, double goalX, double goalY, double goalVx, double goalVy) {
+        double dx = goalX - robotX;
+        double dy = goalY - robotY;
+        double rangeSquared = dx * dx + dy * dy;
+        mTargetBearing = Math.atan2(dy, dx);
+        // d/dt atan2(dy, dx) for the relative velocity of the goal
+        mFeedForward = rangeSquared > 1e-6
+                ? (dx * (goalVy - robotVy) - dy * (goalVx - robotVx)) / rangeSquared
+                : 0;
+        mError = Math.IEEEremainder(mTargetBearing - heading, 2 * Math.PI);
+
+        if (trackId != mTrackId) {
+            // the bearing jumps to the new goal, that is not an error rate
+            mTrackId = trackId;
+            mLastTimestamp = Double.NaN;
+        }
+        double dt = timestamp - mLastTimestamp;
+        double derivative = dt > 0 ? Math.IEEEremainder(mError - mLastError, 2 * Math.PI) / dt : 0;
+        mLastError = mError;
+        mLastTimestamp = timestamp;
+
+        updateMetrics(timestamp);
+
+        double output = mFeedForward + mKp * mError + mKd * derivative;
+        return Math.max(-mMaxRate, Math.min(mMaxRate, output));
+    }
+
+    private void updateMetrics(double timestamp) {
+        double absError = Math.abs(mError);
+        if (mInitialErrorSign == 0 && absError > mTolerance) {
+            mInitialErrorSign = Math.signum(mError);
+        }
+        if (mInitialErrorSign != 0 && mError * mInitialErrorSign < 0) {
+            mOvershoot = Math.max(mOvershoot, absError);
+        }
+        if (absError <= mTolerance) {
+            if (Double.isNaN(mWithinToleranceSince)) {
+                mWithinToleranceSince = timestamp;
+            }
+            if (Double.isNaN(mSettleTime) && timestamp - mWithinToleranceSince >= mSettleDuration) {
+                mSettleTime = mWithinToleranceSince - mStartTime;
+            }
+        } else {
+            mWithinToleranceSince = Double.NaN;
+        }
+    }
+
+    public double getTargetBearing() {
+        return mTargetBearing;
+    }
+
+    public double getFeedForward() {
+        return mFeedForward;
+    }
+
+    /**
+     * @return target bearing - heading, wrapped to [-pi, pi]
+     */
+    public double getError() {
+        return mError;
+    }
+
+    public boolean isOnTarget() {
+        return Math.abs(mError) <= mTolerance;
+    }
+
+    /**
+     * @return seconds from reset() until the error entered the tolerance and stayed there for the settle duration,
+     *         NaN if it hasn't settled yet
+     */
+    public double getSettleTime() {
+        return mSettleTime;
+    }
+
+    /**
+     * @return largest error past the target, on the other side from where the aim started, radians
+     */
+    public double getOvershoot() {
+        return mOvershoot;
+    }
+}
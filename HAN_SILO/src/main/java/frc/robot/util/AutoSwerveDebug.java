@@ -9,7 +9,21 @@ package frc.robot.util;
     public double actualY;
     public double actualTheta;
 
+  public AutoSwerveDebug() {
+  }
+
   public AutoSwerveDebug(
+    double curTime,
+    double desiredX,
+    double desiredY,
+    double desiredTheta,
+    double actualX,
+    double actualY,
+    double actualTheta){
+        update(curTime, desiredX, desiredY, desiredTheta, actualX, actualY, actualTheta);
+    }
+
+  public void update(
     double curTime,
     double desiredX,
     double desiredY,
@@ -0,0 +1,105 @@
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Offline tool that turns {@link LogSegmentStore} .bin segments into CSVs.
+ * Copy the .bin files off of /home/lvuser/telemetry and run:
+ *
+ * <pre>
+ *   java -cp robot.jar frc.robot.util.BinaryLogConverter AutoSwerveDebug-000012-AUTO.bin SwerveModuleDebug-000013-AUTO.bin
+ * </pre>
+ *
+ * Each input file is written next to itself with ".csv" appended.
+ */
+public class BinaryLogConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("usage: BinaryLogConverter <log.bin> [<log.bin> ...]");
+            return;
+        }
+        for (String arg : args) {
+            File input = new File(arg);
+            File output = new File(arg + ".csv");
+            int records = convert(input, output);
+            System.out.println(input + " -> " + output + " (" + records + " records)");
+        }
+    }
+
+    /**
+     * @return number of records written to the csv
+     */
+    public static int convert(File input, File output) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(input.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < 4 || in.getInt() != BinaryLogWriter.kMagic) {
+            throw new IOException(input + " is not a binary log");
+        }
+        short version = in.getShort();
+        if (version != BinaryLogWriter.kVersion) {
+            throw new IOException(input + " has unsupported version " + version);
+        }
+        int recordSize = in.getInt();
+        long dataLength = in.getLong();
+        long segmentIndex = in.getLong();
+        MatchPhase phase = MatchPhase.values()[in.get()];
+        int fieldCount = in.getShort();
+        String name = readString(in);
+        System.out.println(input + ": " + name + " segment " + segmentIndex + " " + phase + ", " + dataLength + " bytes");
+
+        byte[] types = new byte[fieldCount];
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < fieldCount; i++) {
+            types[i] = in.get();
+            if (line.length() != 0) {
+                line.append(", ");
+            }
+            line.append(readString(in));
+        }
+
+        // segments are preallocated, only dataLength bytes after the header are records
+        in.limit(in.position() + (int) Math.min(dataLength, in.remaining()));
+
+        int records = 0;
+        try (PrintWriter out = new PrintWriter(output)) {
+            out.println(line);
+            while (in.remaining() >= recordSize) {
+                line.setLength(0);
+                for (int i = 0; i < fieldCount; i++) {
+                    if (i != 0) {
+                        line.append(", ");
+                    }
+                    appendValue(line, types[i], in);
+                }
+                out.println(line);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void appendValue(StringBuilder line, byte type, ByteBuffer in) throws IOException {
+        switch (type) {
+            case BinaryLogWriter.kTypeDouble: line.append(in.getDouble()); break;
+            case BinaryLogWriter.kTypeFloat: line.append(in.getFloat()); break;
+            case BinaryLogWriter.kTypeLong: line.append(in.getLong()); break;
+            case BinaryLogWriter.kTypeInt: line.append(in.getInt()); break;
+            case BinaryLogWriter.kTypeShort: line.append(in.getShort()); break;
+            case BinaryLogWriter.kTypeByte: line.append(in.get()); break;
+            case BinaryLogWriter.kTypeBoolean: line.append(in.get() != 0); break;
+            default: throw new IOException("unknown field type " + (char) type);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package frc.robot.util;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+
+/**
+ * Writes fixed-width, little-endian binary records for every public primitive field of T.
+ *
+ * The schema (field names and types) is written once at the top of each segment and the
+ * field accessors are resolved once per class, so add() does no reflection, boxing or
+ * string building. Records are packed into a preallocated ring of direct ByteBuffers
+ * that is handed to the {@link TelemetryFlusher} thread one full buffer at a time, so
+ * the robot loop never touches the disk. The flusher copies them into memory-mapped
+ * {@link LogSegmentStore} segments, one series of segments per match phase. If the flusher falls behind and every buffer
+ * is full, records are dropped according to the {@link DropPolicy} and counted.
+ *
+ * add(), suspend(), resume() and flush() must all be called from the same (robot) thread.
+ *
+ * Use {@link BinaryLogConverter} to turn a .bin segment back into a CSV off the robot.
+ */
+public class BinaryLogWriter<T> {
+    public static final int kMagic = 0x474F4C48; // "HLOG"
+    public static final short kVersion = 2;
+
+    public static final byte kTypeDouble = 'D';
+    public static final byte kTypeFloat = 'F';
+    public static final byte kTypeLong = 'J';
+    public static final byte kTypeInt = 'I';
+    public static final byte kTypeShort = 'S';
+    public static final byte kTypeByte = 'B';
+    public static final byte kTypeBoolean = 'Z';
+
+    private static final int kBufferCount = 8;
+    private static final int kBufferBytes = 64 * 1024;
+
+    // buffer states, only the robot thread moves a buffer out of FREE,
+    // only the flusher thread moves a buffer out of WRITING
+    private static final int kFree = 0;
+    private static final int kFilling = 1;
+    private static final int kReady = 2;
+    private static final int kWriting = 3;
+
+    /**
+     * What to throw away when the flusher thread has not caught up and every buffer is full.
+     */
+    public enum DropPolicy {
+        // overwrite the oldest buffer that has not been written yet
+        DROP_OLDEST,
+        // discard new records until a buffer is free again
+        DROP_NEWEST
+    }
+
+    private final String mName;
+    private final FieldWriter[] mFields;
+    private final int mRecordSize;
+    private final DropPolicy mDropPolicy;
+
+    private final ByteBuffer[] mBuffers = new ByteBuffer[kBufferCount];
+    private final AtomicIntegerArray mStates = new AtomicIntegerArray(kBufferCount);
+    // order in which READY buffers were handed off, so they are written oldest first
+    private final long[] mSequences = new long[kBufferCount];
+    // match phase each buffer was filled in
+    private final MatchPhase[] mPhases = new MatchPhase[kBufferCount];
+    private long mNextSequence = 0;
+    private int mCurrent = -1;
+    private MatchPhase mPhase = MatchPhase.DISABLED;
+
+    private final LogSegmentStore mStore;
+    private volatile boolean mForceRequested = false;
+
+    private long mDroppedRecords = 0;
+    private volatile long mWriteErrors = 0;
+
+    private boolean suspended;
+
+    public void suspend(){
+        suspended = true;
+        flush();
+    }
+
+    public void resume(){
+        suspended = false;
+    }
+
+    public boolean isSuspended(){
+        return suspended;
+    }
+
+    public BinaryLogWriter(Class<T> typeClass) {
+        this(typeClass, DropPolicy.DROP_OLDEST);
+    }
+
+    public BinaryLogWriter(Class<T> typeClass, DropPolicy dropPolicy) {
+        mName = typeClass.getSimpleName();
+        mDropPolicy = dropPolicy;
+
+        mFields = createFieldWriters(typeClass);
+        int recordSize = 0;
+        for (FieldWriter field : mFields) {
+            recordSize += field.size();
+        }
+        if (recordSize == 0) {
+            throw new IllegalArgumentException(typeClass.getName() + " has no public primitive fields to log");
+        }
+        mRecordSize = recordSize;
+
+        for (int i = 0; i < kBufferCount; i++) {
+            mBuffers[i] = ByteBuffer.allocateDirect(kBufferBytes - (kBufferBytes % mRecordSize)).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        mStore = new LogSegmentStore(LogSegmentStore.getDefaultDirectory(), mName, mRecordSize, createSchema(mName, mFields));
+
+        TelemetryFlusher.getInstance().register(this);
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * Starts logging into a new segment for the given match phase.
+     */
+    public void setPhase(MatchPhase phase) {
+        if (phase != mPhase) {
+            flush();
+            mPhase = phase;
+        }
+    }
+
+    public void add(T value) {
+        if(!suspended){
+            if (mCurrent < 0 || mBuffers[mCurrent].remaining() < mRecordSize) {
+                if (mCurrent >= 0) {
+                    publish(mCurrent);
+                }
+                mCurrent = acquire();
+                if (mCurrent < 0) {
+                    mDroppedRecords++;
+                    return;
+                }
+                mPhases[mCurrent] = mPhase;
+            }
+            ByteBuffer buffer = mBuffers[mCurrent];
+            for (FieldWriter field : mFields) {
+                field.write(value, buffer);
+            }
+        }
+    }
+
+    /**
+     * Hands whatever has been logged so far to the flusher thread and wakes it up.
+     * Never waits for the disk.
+     */
+    public void flush() {
+        if (mCurrent >= 0 && mBuffers[mCurrent].position() > 0) {
+            publish(mCurrent);
+            mCurrent = -1;
+        }
+        mForceRequested = true;
+        TelemetryFlusher.getInstance().wakeup();
+    }
+
+    /**
+     * @return records thrown away because every buffer was full
+     */
+    public long getDroppedRecords() {
+        return mDroppedRecords;
+    }
+
+    /**
+     * @return buffers that could not be written to disk
+     */
+    public long getWriteErrors() {
+        return mWriteErrors;
+    }
+
+    private void publish(int index) {
+        mSequences[index] = mNextSequence++;
+        mStates.set(index, kReady);
+    }
+
+    /**
+     * @return index of a buffer the robot thread now owns, or -1 if the record has to be dropped
+     */
+    private int acquire() {
+        for (int i = 0; i < kBufferCount; i++) {
+            if (mStates.compareAndSet(i, kFree, kFilling)) {
+                return i;
+            }
+        }
+        if (mDropPolicy == DropPolicy.DROP_OLDEST) {
+            int oldest = oldestReady();
+            if (oldest >= 0 && mStates.compareAndSet(oldest, kReady, kFilling)) {
+                ByteBuffer buffer = mBuffers[oldest];
+                mDroppedRecords += buffer.position() / mRecordSize;
+                buffer.clear();
+                return oldest;
+            }
+        }
+        return -1;
+    }
+
+    private int oldestReady() {
+        int oldest = -1;
+        for (int i = 0; i < kBufferCount; i++) {
+            if (mStates.get(i) == kReady && (oldest < 0 || mSequences[i] < mSequences[oldest])) {
+                oldest = i;
+            }
+        }
+        return oldest;
+    }
+
+    /**
+     * Writes every buffer the robot thread has handed off. Called only from the flusher thread.
+     */
+    void drain() {
+        for (;;) {
+            int index = oldestReady();
+            if (index < 0) {
+                break;
+            }
+            if (!mStates.compareAndSet(index, kReady, kWriting)) {
+                // taken back by DROP_OLDEST, look again
+                continue;
+            }
+            ByteBuffer buffer = mBuffers[index];
+            buffer.flip();
+            try {
+                mStore.append(buffer, mPhases[index]);
+            } catch (IOException e) {
+                if (mWriteErrors++ == 0) {
+                    e.printStackTrace();
+                }
+            }
+            buffer.clear();
+            mStates.set(index, kFree);
+        }
+        if (mForceRequested) {
+            mForceRequested = false;
+            mStore.force();
+        }
+    }
+
+    /**
+     * @return field count, class name and the type and name of every field
+     */
+    static byte[] createSchema(String name, FieldWriter[] fields) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        int size = 2 + 2 + nameBytes.length;
+        byte[][] fieldNames = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            fieldNames[i] = fields[i].name.getBytes(StandardCharsets.UTF_8);
+            size += 1 + 2 + fieldNames[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        header.putShort((short) fields.length);
+        header.putShort((short) nameBytes.length);
+        header.put(nameBytes);
+        for (int i = 0; i < fields.length; i++) {
+            header.put(fields[i].type);
+            header.putShort((short) fieldNames[i].length);
+            header.put(fieldNames[i]);
+        }
+        return header.array();
+    }
+
+    /**
+     * Builds one accessor per public, non-static primitive field, in declaration order.
+     * Fields of any other type are skipped.
+     */
+    static FieldWriter[] createFieldWriters(Class<?> typeClass) {
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        List<FieldWriter> writers = new ArrayList<>();
+        for (Field field : typeClass.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) || !field.getType().isPrimitive()) {
+                continue;
+            }
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflectGetter(field)
+                    .asType(MethodType.methodType(field.getType(), Object.class));
+            } catch (IllegalAccessException e) {
+                e.printStackTrace();
+                continue;
+            }
+            Class<?> type = field.getType();
+            String name = field.getName();
+            if (type == double.class) {
+                writers.add(new DoubleFieldWriter(name, getter));
+            } else if (type == float.class) {
+                writers.add(new FloatFieldWriter(name, getter));
+            } else if (type == long.class) {
+                writers.add(new LongFieldWriter(name, getter));
+            } else if (type == int.class) {
+                writers.add(new IntFieldWriter(name, getter));
+            } else if (type == short.class) {
+                writers.add(new ShortFieldWriter(name, getter));
+            } else if (type == byte.class) {
+                writers.add(new ByteFieldWriter(name, getter));
+            } else if (type == boolean.class) {
+                writers.add(new BooleanFieldWriter(name, getter));
+            }
+        }
+        return writers.toArray(new FieldWriter[0]);
+    }
+
+    /**
+     * Copies one field of a record into the output buffer.
+     */
+    abstract static class FieldWriter {
+        final String name;
+        final byte type;
+        final MethodHandle getter;
+
+        FieldWriter(String name, byte type, MethodHandle getter) {
+            this.name = name;
+            this.type = type;
+            this.getter = getter;
+        }
+
+        abstract int size();
+
+        abstract void write(Object value, ByteBuffer buffer);
+    }
+
+    static final class DoubleFieldWriter extends FieldWriter {
+        DoubleFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeDouble, getter);
+        }
+
+        int size() {
+            return Double.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.putDouble((double) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class FloatFieldWriter extends FieldWriter {
+        FloatFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeFloat, getter);
+        }
+
+        int size() {
+            return Float.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.putFloat((float) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class LongFieldWriter extends FieldWriter {
+        LongFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeLong, getter);
+        }
+
+        int size() {
+            return Long.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.putLong((long) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class IntFieldWriter extends FieldWriter {
+        IntFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeInt, getter);
+        }
+
+        int size() {
+            return Integer.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.putInt((int) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class ShortFieldWriter extends FieldWriter {
+        ShortFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeShort, getter);
+        }
+
+        int size() {
+            return Short.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.putShort((short) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class ByteFieldWriter extends FieldWriter {
+        ByteFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeByte, getter);
+        }
+
+        int size() {
+            return Byte.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.put((byte) getter.invokeExact(value));
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    static final class BooleanFieldWriter extends FieldWriter {
+        BooleanFieldWriter(String name, MethodHandle getter) {
+            super(name, kTypeBoolean, getter);
+        }
+
+        int size() {
+            return Byte.BYTES;
+        }
+
+        void write(Object value, ByteBuffer buffer) {
+            try {
+                buffer.put((boolean) getter.invokeExact(value) ? (byte) 1 : (byte) 0);
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
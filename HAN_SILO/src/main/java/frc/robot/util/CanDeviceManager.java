@@ -0,0 +1,383 @@
+package frc.robot.util;
+
+import java.util.ArrayList;
+
+import com.ctre.phoenix.motorcontrol.StatusFrameEnhanced;
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+import com.revrobotics.CANSparkMax;
+import com.revrobotics.CANSparkMaxLowLevel.PeriodicFrame;
+
+import edu.wpi.first.hal.can.CANStatus;
+import edu.wpi.first.wpilibj.RobotController;
+import frc.robot.Constants.CanConstants;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+import frc.robot.util.TelemetryPublisher.StringEntry;
+
+/**
+ * Sets every CAN motor controller's status frame periods from what the code actually reads, and keeps track of the
+ * bus load that costs.
+ *
+ * Subsystems register each controller after configuring it and declare the signals they read and how fresh they
+ * need them, e.g. need(Signal.VELOCITY, 10). Each status frame runs at the fastest period any of its signals needs,
+ * frames nothing reads are slowed to CanConstants.kUnusedFramePeriodMs on a TalonFX and to the longest period a SparkMax
+ * allows. The vendor libraries keep the last received value of every frame and RobotFrame reads each one once per
+ * loop, so a sampled value is at most getMaxAgeSeconds() old.
+ *
+ * Controllers go back to their default periods when they reboot (e.g. a brownout), periodic() checks for that and
+ * applies the schedule again. A SparkMax's reset flag can only be cleared with all its sticky faults, so the fault word
+ * is published as "CAN/<name> Sticky Faults" first. It also puts the estimated and the measured bus utilization and
+ * the last reset on the dashboard.
+ *
+ * Robot thread only.
+ */
+public class CanDeviceManager {
+    public enum Signal {
+        APPLIED_OUTPUT, VELOCITY, POSITION, CURRENT, TEMPERATURE, CLOSED_LOOP_ERROR
+    }
+
+    // extended id data frame with 8 bytes plus typical bit stuffing
+    private static final double kBitsPerFrame = 144;
+    private static final double kBusBitsPerSecond = 1e6;
+    private static final double kCheckPeriodSeconds = 1.0;
+
+    private static CanDeviceManager instance;
+
+    private final ArrayList<Device> mDevices = new ArrayList<>();
+    private final ArrayList<String> mFixedLoadNames = new ArrayList<>();
+    private double mFixedFramesPerSecond = 0;
+    private double mLastCheck = Double.NEGATIVE_INFINITY;
+    private int mResets = 0;
+
+    private final TelemetryPublisher mTelemetry = TelemetryPublisher.getInstance();
+    private final NumberEntry mEstimatedEntry = mTelemetry.addNumber("CAN/Estimated Utilization", TelemetryPublisher.kSlow, 0.001);
+    private final NumberEntry mMeasuredEntry = mTelemetry.addNumber("CAN/Measured Utilization", TelemetryPublisher.kSlow, 0.001);
+    private final NumberEntry mTxFullEntry = mTelemetry.addNumber("CAN/Tx Full", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry mRxErrorEntry = mTelemetry.addNumber("CAN/Rx Errors", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry mTxErrorEntry = mTelemetry.addNumber("CAN/Tx Errors", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry mBusOffEntry = mTelemetry.addNumber("CAN/Bus Off", TelemetryPublisher.kSlow, 0);
+    private final NumberEntry mResetsEntry = mTelemetry.addNumber("CAN/Device Resets", TelemetryPublisher.kSlow, 0);
+    private final StringEntry mLastResetEntry = mTelemetry.addString("CAN/Last Reset", TelemetryPublisher.kSlow);
+
+    public static synchronized CanDeviceManager getInstance() {
+        if (instance == null) {
+            instance = new CanDeviceManager();
+        }
+        return instance;
+    }
+
+    private CanDeviceManager() {
+    }
+
+    /**
+     * Registers a configured SparkMax, with every status frame slowed down until something needs it.
+     */
+    public Device addSparkMax(String name, CANSparkMax spark) {
+        return add(new SparkMaxDevice(name, spark));
+    }
+
+    /**
+     * Registers a configured TalonFX, with every status frame slowed down until something needs it.
+     */
+    public Device addTalonFX(String name, TalonFX talon) {
+        return add(new TalonFXDevice(name, talon));
+    }
+
+    private Device add(Device device) {
+        // clear the reset flag from power on, only later reboots should count
+        device.checkReset();
+        device.applyAll(CanConstants.kConfigTimeoutMs);
+        mDevices.add(device);
+        return device;
+    }
+
+    /**
+     * Traffic from devices we don't schedule (PDP, PCMs), for the estimate.
+     */
+    public void addFixedLoad(String name, double framesPerSecond) {
+        mFixedLoadNames.add(name);
+        mFixedFramesPerSecond += framesPerSecond;
+    }
+
+    /**
+     * @return fraction of the 1 Mbit/s bus the current schedule uses, including control frames
+     */
+    public double getEstimatedUtilization() {
+        double framesPerSecond = mFixedFramesPerSecond;
+        for (int i = 0; i < mDevices.size(); i++) {
+            framesPerSecond += mDevices.get(i).getFramesPerSecond();
+        }
+        return framesPerSecond * kBitsPerFrame / kBusBitsPerSecond;
+    }
+
+    /**
+     * Applies the schedule to every controller again, e.g. after MotorConfigurator factory reset some of them.
+     */
+    public void applyAll() {
+        for (int i = 0; i < mDevices.size(); i++) {
+            mDevices.get(i).applyAll(CanConstants.kConfigTimeoutMs);
+        }
+    }
+
+    public int getResets() {
+        return mResets;
+    }
+
+    /**
+     * Re-applies the schedule to controllers that rebooted and reports bus health. Call once per loop.
+     */
+    public void periodic(double timestamp) {
+        if (timestamp - mLastCheck < kCheckPeriodSeconds) {
+            return;
+        }
+        mLastCheck = timestamp;
+
+        for (int i = 0; i < mDevices.size(); i++) {
+            Device device = mDevices.get(i);
+            if (device.checkReset()) {
+                // don't wait for acks in the loop
+                device.applyAll(0);
+                mResets++;
+                mLastResetEntry.set(String.format("%s at %.1fs", device.mName, timestamp));
+            }
+        }
+
+        CANStatus status = RobotController.getCANStatus();
+        mEstimatedEntry.set(getEstimatedUtilization());
+        mMeasuredEntry.set(status.percentBusUtilization);
+        mTxFullEntry.set(status.txFullCount);
+        mRxErrorEntry.set(status.receiveErrorCount);
+        mTxErrorEntry.set(status.transmitErrorCount);
+        mBusOffEntry.set(status.busOffCount);
+        mResetsEntry.set(mResets);
+    }
+
+    public void printSchedule() {
+        System.out.println("CAN status frame schedule:");
+        for (Device device : mDevices) {
+            StringBuilder periods = new StringBuilder();
+            for (int i = 0; i < device.mPeriods.length; i++) {
+                periods.append(' ').append(device.getFrameName(i)).append('=').append(device.mPeriods[i]).append("ms");
+            }
+            System.out.println(String.format("  %-16s %6.0f frames/s %s", device.mName, device.getFramesPerSecond(),
+                    periods));
+        }
+        System.out.println(String.format("  %-16s %6.0f frames/s", String.join(", ", mFixedLoadNames),
+                mFixedFramesPerSecond));
+        System.out.println(String.format("  estimated bus utilization %.0f%%", getEstimatedUtilization() * 100));
+    }
+
+    /**
+     * One motor controller's status frames, indexed the way the subclass lists them.
+     */
+    public abstract static class Device {
+        final String mName;
+        final int[] mPeriods;
+
+        Device(String name, int frames) {
+            mName = name;
+            mPeriods = new int[frames];
+            for (int i = 0; i < frames; i++) {
+                mPeriods[i] = getUnusedPeriod();
+            }
+        }
+
+        /**
+         * Makes the frame carrying this signal arrive at least every periodMs. The fastest need wins.
+         *
+         * @throws IllegalArgumentException if the controller doesn't report the signal
+         */
+        public Device need(Signal signal, int periodMs) {
+            int frame = getFrame(signal);
+            if (frame < 0) {
+                throw new IllegalArgumentException(mName + " doesn't report " + signal);
+            }
+            int period = clampPeriod(periodMs);
+            if (period < mPeriods[frame]) {
+                mPeriods[frame] = period;
+                setFramePeriod(frame, period, CanConstants.kConfigTimeoutMs);
+            }
+            return this;
+        }
+
+        /**
+         * @return the longest a sampled value of this signal can be behind the controller, in seconds
+         */
+        public double getMaxAgeSeconds(Signal signal) {
+            int frame = getFrame(signal);
+            return frame < 0 ? Double.POSITIVE_INFINITY : mPeriods[frame] / 1000.0;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        double getFramesPerSecond() {
+            double framesPerSecond = 1000.0 / CanConstants.kControlFramePeriodMs;
+            for (int i = 0; i < mPeriods.length; i++) {
+                framesPerSecond += 1000.0 / mPeriods[i];
+            }
+            return framesPerSecond;
+        }
+
+        void applyAll(int timeoutMs) {
+            for (int i = 0; i < mPeriods.length; i++) {
+                setFramePeriod(i, mPeriods[i], timeoutMs);
+            }
+        }
+
+        /**
+         * @return frame index for the signal, -1 if there is none
+         */
+        abstract int getFrame(Signal signal);
+
+        abstract String getFrameName(int frame);
+
+        abstract int clampPeriod(int periodMs);
+
+        /**
+         * @return the period for a frame nothing reads
+         */
+        abstract int getUnusedPeriod();
+
+        abstract void setFramePeriod(int frame, int periodMs, int timeoutMs);
+
+        /**
+         * @return true once after the controller rebooted
+         */
+        abstract boolean checkReset();
+    }
+
+    private static class SparkMaxDevice extends Device {
+        // 0: applied output and faults, 1: velocity, current, temperature, 2: position
+        private static final PeriodicFrame[] kFrames = {PeriodicFrame.kStatus0, PeriodicFrame.kStatus1,
+            PeriodicFrame.kStatus2};
+
+        private static final int kMaxFramePeriodMs = 65535;
+
+        private final CANSparkMax mSpark;
+        private final NumberEntry mStickyFaultsEntry;
+
+        SparkMaxDevice(String name, CANSparkMax spark) {
+            super(name, kFrames.length);
+            mSpark = spark;
+            mStickyFaultsEntry = TelemetryPublisher.getInstance().addNumber("CAN/" + name + " Sticky Faults",
+                    TelemetryPublisher.kSlow, 0);
+        }
+
+        @Override
+        int getFrame(Signal signal) {
+            switch (signal) {
+                case APPLIED_OUTPUT:
+                    return 0;
+                case VELOCITY:
+                case CURRENT:
+                case TEMPERATURE:
+                    return 1;
+                case POSITION:
+                    return 2;
+                default:
+                    return -1;
+            }
+        }
+
+        @Override
+        String getFrameName(int frame) {
+            return kFrames[frame].name();
+        }
+
+        @Override
+        int clampPeriod(int periodMs) {
+            return Math.max(1, Math.min(periodMs, kMaxFramePeriodMs));
+        }
+
+        /**
+         * Off as far as the SparkMax goes, Status0 included. A rebooted SparkMax sends every frame at its default rate
+         * until the schedule is applied again, so the reset flag in Status0 still arrives.
+         */
+        @Override
+        int getUnusedPeriod() {
+            return kMaxFramePeriodMs;
+        }
+
+        @Override
+        void setFramePeriod(int frame, int periodMs, int timeoutMs) {
+            // REV doesn't take a timeout, the call doesn't wait for the controller
+            mSpark.setPeriodicFramePeriod(kFrames[frame], periodMs);
+        }
+
+        @Override
+        boolean checkReset() {
+            if (mSpark.getStickyFault(CANSparkMax.FaultID.kHasReset)) {
+                // clearFaults() takes every sticky fault with it, keep what it was clearing
+                mStickyFaultsEntry.set(mSpark.getStickyFaults() & 0xffff);
+                mSpark.clearFaults();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private static class TalonFXDevice extends Device {
+        private static final StatusFrameEnhanced[] kFrames = {
+            StatusFrameEnhanced.Status_1_General,          // applied output, faults
+            StatusFrameEnhanced.Status_2_Feedback0,        // selected sensor position and velocity
+            StatusFrameEnhanced.Status_Brushless_Current,  // supply and stator current
+            StatusFrameEnhanced.Status_4_AinTempVbat,      // temperature, bus voltage
+            StatusFrameEnhanced.Status_13_Base_PIDF0,      // closed loop error
+            StatusFrameEnhanced.Status_10_Targets,         // motion magic targets
+            StatusFrameEnhanced.Status_12_Feedback1,       // auxiliary sensor
+            StatusFrameEnhanced.Status_14_Turn_PIDF1};     // auxiliary closed loop
+
+        private final TalonFX mTalon;
+
+        TalonFXDevice(String name, TalonFX talon) {
+            super(name, kFrames.length);
+            mTalon = talon;
+        }
+
+        @Override
+        int getFrame(Signal signal) {
+            switch (signal) {
+                case APPLIED_OUTPUT:
+                    return 0;
+                case VELOCITY:
+                case POSITION:
+                    return 1;
+                case CURRENT:
+                    return 2;
+                case TEMPERATURE:
+                    return 3;
+                case CLOSED_LOOP_ERROR:
+                    return 4;
+                default:
+                    return -1;
+            }
+        }
+
+        @Override
+        String getFrameName(int frame) {
+            return kFrames[frame].name();
+        }
+
+        @Override
+        int clampPeriod(int periodMs) {
+            // Phoenix status frame periods are a byte
+            return Math.max(1, Math.min(periodMs, 255));
+        }
+
+        @Override
+        int getUnusedPeriod() {
+            return clampPeriod(CanConstants.kUnusedFramePeriodMs);
+        }
+
+        @Override
+        void setFramePeriod(int frame, int periodMs, int timeoutMs) {
+            mTalon.setStatusFramePeriod(kFrames[frame], periodMs, timeoutMs);
+        }
+
+        @Override
+        boolean checkReset() {
+            return mTalon.hasResetOccurred();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package frc.robot.util;
+
+/**
+ * Fixed-bucket latency histogram for percentiles without keeping samples around.
+ *
+ * Buckets are bucketWidth seconds wide from 0 to maxSeconds; anything slower lands in the
+ * last bucket (getMax() still has the real worst case). Percentiles are reported as the upper
+ * edge of the bucket they fall in, so they are at most one bucket pessimistic.
+ *
+ * Not thread safe, record and read from the same thread.
+ */
+public class LatencyHistogram {
+    private final double mBucketWidth;
+    private final long[] mCounts;
+    private long mTotal = 0;
+    private double mMax = 0;
+
+    public LatencyHistogram(double maxSeconds, double bucketWidthSeconds) {
+        mBucketWidth = bucketWidthSeconds;
+        mCounts = new long[(int) Math.ceil(maxSeconds / bucketWidthSeconds)];
+    }
+
+    public void record(double seconds) {
+        int bucket = (int) (Math.max(seconds, 0) / mBucketWidth);
+        if (bucket >= mCounts.length) {
+            bucket = mCounts.length - 1;
+        }
+        mCounts[bucket]++;
+        mTotal++;
+        mMax = Math.max(mMax, seconds);
+    }
+
+    /**
+     * @param percentile 0 to 100
+     * @return latency in seconds, 0 if nothing was recorded
+     */
+    public double getPercentile(double percentile) {
+        if (mTotal == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile / 100.0 * mTotal);
+        long seen = 0;
+        for (int i = 0; i < mCounts.length; i++) {
+            seen += mCounts[i];
+            if (seen >= rank && mCounts[i] > 0) {
+                return Math.min((i + 1) * mBucketWidth, mMax);
+            }
+        }
+        return mMax;
+    }
+
+    public long getCount() {
+        return mTotal;
+    }
+
+    public double getMax() {
+        return mMax;
+    }
+
+    public void reset() {
+        for (int i = 0; i < mCounts.length; i++) {
+            mCounts[i] = 0;
+        }
+        mTotal = 0;
+        mMax = 0;
+    }
+}
@@ -0,0 +1,85 @@
+package frc.robot.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Wait-free triple buffer for handing the newest value from one producer thread to one
+ * consumer thread, e.g. the vision serial thread to the robot loop.
+ *
+ * The three buffers are made once and reused, so nothing is allocated per value. The producer
+ * fills getWriteBuffer() and calls publish(); the consumer calls takeNew(). Each side only
+ * ever touches its own buffer plus one atomic swap with the shared middle buffer, so neither
+ * can block the other. If the producer publishes twice before the consumer takes, the older
+ * value is overwritten and counted.
+ *
+ * The buffer returned by takeNew() stays valid until the consumer's next takeNew().
+ */
+public class LatestValue<T> {
+    private static final int kIndexMask = 0x3;
+    // set while the middle buffer holds a value the consumer hasn't taken yet
+    private static final int kFresh = 0x4;
+
+    private final Object[] mBuffers = new Object[3];
+    // index of the middle buffer plus the fresh flag
+    private final AtomicInteger mMiddle = new AtomicInteger(1);
+    private final AtomicLong mPublished = new AtomicLong();
+    private final AtomicLong mOverwritten = new AtomicLong();
+    // only touched by the producer
+    private int mWriteIndex = 0;
+    // only touched by the consumer
+    private int mReadIndex = 2;
+
+    public LatestValue(Supplier<T> factory) {
+        for (int i = 0; i < mBuffers.length; i++) {
+            mBuffers[i] = factory.get();
+        }
+    }
+
+    /**
+     * Producer only. The buffer to fill before the next publish(); it may hold an old value.
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer() {
+        return (T) mBuffers[mWriteIndex];
+    }
+
+    /**
+     * Producer only. Makes the write buffer the newest value and moves on to another buffer.
+     */
+    public void publish() {
+        int previous = mMiddle.getAndSet(mWriteIndex | kFresh);
+        mWriteIndex = previous & kIndexMask;
+        mPublished.incrementAndGet();
+        if ((previous & kFresh) != 0) {
+            mOverwritten.incrementAndGet();
+        }
+    }
+
+    /**
+     * Consumer only.
+     *
+     * @return the newest value published since the last call, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public T takeNew() {
+        if ((mMiddle.get() & kFresh) == 0) {
+            return null;
+        }
+        int previous = mMiddle.getAndSet(mReadIndex);
+        mReadIndex = previous & kIndexMask;
+        return (T) mBuffers[mReadIndex];
+    }
+
+    public long getPublished() {
+        return mPublished.get();
+    }
+
+    /**
+     * @return values that were replaced by a newer one before the consumer took them
+     */
+    public long getOverwritten() {
+        return mOverwritten.get();
+    }
+}
@@ -0,0 +1,315 @@
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.wpi.first.wpilibj.RobotBase;
+
+/**
+ * Stores the records of one {@link BinaryLogWriter} in a series of memory-mapped segment files
+ * named {@code <name>-<index>-<phase>.bin}. A new segment is started whenever the match phase
+ * changes or the current segment reaches kMaxSegmentBytes. Segment indexes keep increasing across
+ * reboots, and the oldest segments in the directory are deleted once the disk quota is reached,
+ * so the telemetry from several matches survives power cycles.
+ *
+ * A segment starts at kInitialSegmentBytes and doubles when it fills up. Each step is allocated
+ * on disk before it is mapped, so appending is a memory copy and the zero fill only ever covers
+ * what the data needs. A finished segment is unmapped and trimmed to its data, so the quota counts
+ * real bytes. A segment left behind by a power cut keeps its allocated size, the data length in
+ * the header says how much of it is records.
+ *
+ * All methods are called from the {@link TelemetryFlusher} thread only.
+ */
+public class LogSegmentStore {
+    public static final long kInitialSegmentBytes = 256L * 1024;
+    public static final long kMaxSegmentBytes = 8L * 1024 * 1024;
+    public static final long kQuotaBytes = 256L * 1024 * 1024;
+
+    // header layout, see createHeader()
+    static final int kDataLengthOffset = 4 + 2 + 4;
+
+    private static final Pattern kSegmentName = Pattern.compile("(.+)-(\\d+)-([A-Z]+)\\.bin");
+    private static final ByteBuffer kZeros = ByteBuffer.allocateDirect(64 * 1024);
+    private static final MethodHandle kInvokeCleaner = findInvokeCleaner();
+
+    private static long sNextIndex = -1;
+    private static final Set<Path> sOpenSegments = ConcurrentHashMap.newKeySet();
+
+    private final Path mDirectory;
+    private final String mName;
+    private final int mRecordSize;
+    private final byte[] mSchema;
+
+    private MappedByteBuffer mSegment = null;
+    private FileChannel mChannel = null;
+    private Path mSegmentPath = null;
+    private MatchPhase mPhase = null;
+    private int mDataStart;
+
+    public static Path getDefaultDirectory() {
+        if(RobotBase.isReal()){
+            return Paths.get("/home/lvuser/telemetry");
+        }
+        else{
+            return Paths.get("telemetry");
+        }
+    }
+
+    /**
+     * @param schema field count, class name and field descriptions as written by BinaryLogWriter
+     */
+    public LogSegmentStore(Path directory, String name, int recordSize, byte[] schema) {
+        mDirectory = directory;
+        mName = name;
+        mRecordSize = recordSize;
+        mSchema = schema;
+    }
+
+    /**
+     * Copies all remaining bytes of records into the current segment, starting a new
+     * segment first if the phase changed or there is not enough room left.
+     */
+    public void append(ByteBuffer records, MatchPhase phase) throws IOException {
+        if (mSegment == null || phase != mPhase) {
+            rotate(phase);
+        }
+        if (mSegment.remaining() < records.remaining()) {
+            grow(mSegment.position() + records.remaining());
+            if (mSegment.remaining() < records.remaining()) {
+                // at kMaxSegmentBytes
+                rotate(phase);
+            }
+            if (mSegment.remaining() < records.remaining()) {
+                throw new IOException(records.remaining() + " bytes will not fit in a " + kInitialSegmentBytes + " byte segment");
+            }
+        }
+        mSegment.put(records);
+        mSegment.putLong(kDataLengthOffset, mSegment.position() - mDataStart);
+    }
+
+    /**
+     * Pushes the current segment's dirty pages out to the disk.
+     */
+    public void force() {
+        if (mSegment != null) {
+            mSegment.force();
+        }
+    }
+
+    /**
+     * Finishes the current segment: writes it out, unmaps it and trims the file to the data.
+     */
+    public void close() throws IOException {
+        if (mSegment == null) {
+            return;
+        }
+        long length = mSegment.position();
+        mSegment.force();
+        unmap(mSegment);
+        mSegment = null;
+        try {
+            mChannel.truncate(length);
+        } finally {
+            mChannel.close();
+            mChannel = null;
+            sOpenSegments.remove(mSegmentPath);
+        }
+    }
+
+    private void rotate(MatchPhase phase) throws IOException {
+        close();
+
+        Files.createDirectories(mDirectory);
+        long index = nextIndex(mDirectory);
+        Path path = mDirectory.resolve(String.format("%s-%06d-%s.bin", mName, index, phase.name()));
+        enforceQuota(mDirectory, kInitialSegmentBytes, kQuotaBytes);
+
+        mChannel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mSegmentPath = path;
+        sOpenSegments.add(path);
+        try {
+            allocate(0, kInitialSegmentBytes);
+            map(kInitialSegmentBytes);
+        } catch (IOException e) {
+            mChannel.close();
+            mChannel = null;
+            sOpenSegments.remove(path);
+            throw e;
+        }
+        mSegment.put(createHeader(mRecordSize, index, phase, mSchema));
+        mDataStart = mSegment.position();
+        mPhase = phase;
+    }
+
+    /**
+     * Doubles the current segment until it holds the given number of bytes or reaches kMaxSegmentBytes.
+     */
+    private void grow(long bytes) throws IOException {
+        long size = mSegment.capacity();
+        if (size >= kMaxSegmentBytes) {
+            return;
+        }
+        long newSize = size;
+        while (newSize < bytes && newSize < kMaxSegmentBytes) {
+            newSize = Math.min(newSize * 2, kMaxSegmentBytes);
+        }
+        enforceQuota(mDirectory, newSize - size, kQuotaBytes);
+        allocate(size, newSize);
+
+        int position = mSegment.position();
+        unmap(mSegment);
+        mSegment = null;
+        try {
+            map(newSize);
+        } catch (IOException e) {
+            // the data length in the header still covers what was written, start a new segment next time
+            mChannel.close();
+            mChannel = null;
+            sOpenSegments.remove(mSegmentPath);
+            throw e;
+        }
+        mSegment.position(position);
+    }
+
+    /**
+     * Really allocates the blocks, a sparse file could fail later when the mapping is written.
+     */
+    private void allocate(long from, long to) throws IOException {
+        for (long position = from; position < to; ) {
+            ByteBuffer zeros = kZeros.duplicate();
+            zeros.limit((int) Math.min(zeros.capacity(), to - position));
+            position += mChannel.write(zeros, position);
+        }
+    }
+
+    private void map(long size) throws IOException {
+        mSegment = mChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        mSegment.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Releases the mapping now instead of whenever the buffer is garbage collected, so the file can
+     * be trimmed and a deleted segment's space comes back right away. The buffer must not be used after.
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (kInvokeCleaner == null) {
+            return;
+        }
+        try {
+            kInvokeCleaner.invoke(buffer);
+        } catch (Throwable t) {
+            System.err.println("LogSegmentStore: could not unmap segment: " + t);
+        }
+    }
+
+    private static MethodHandle findInvokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            System.err.println("LogSegmentStore: segments will be unmapped by the GC: " + e);
+            return null;
+        }
+    }
+
+    static ByteBuffer createHeader(int recordSize, long index, MatchPhase phase, byte[] schema) {
+        ByteBuffer header = ByteBuffer.allocate(kDataLengthOffset + 8 + 8 + 1 + schema.length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(BinaryLogWriter.kMagic);
+        header.putShort(BinaryLogWriter.kVersion);
+        header.putInt(recordSize);
+        header.putLong(0); // data length, updated on every append
+        header.putLong(index);
+        header.put((byte) phase.ordinal());
+        header.put(schema);
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Segment indexes are shared by every store in the directory and continue
+     * from the highest index already on disk.
+     */
+    private static synchronized long nextIndex(Path directory) {
+        if (sNextIndex < 0) {
+            sNextIndex = 0;
+            for (Segment segment : listSegments(directory)) {
+                sNextIndex = Math.max(sNextIndex, segment.index + 1);
+            }
+        }
+        return sNextIndex++;
+    }
+
+    /**
+     * Deletes the oldest segments until there is room for one more segment of the given size.
+     */
+    private static synchronized void enforceQuota(Path directory, long segmentBytes, long quotaBytes) {
+        List<Segment> segments = listSegments(directory);
+        long total = 0;
+        for (Segment segment : segments) {
+            total += segment.file.length();
+        }
+        for (Segment segment : segments) {
+            if (total + segmentBytes <= quotaBytes) {
+                break;
+            }
+            if (sOpenSegments.contains(segment.file.toPath())) {
+                continue;
+            }
+            long length = segment.file.length();
+            if (segment.file.delete()) {
+                total -= length;
+            }
+        }
+    }
+
+    /**
+     * @return all segment files in the directory, oldest first
+     */
+    private static List<Segment> listSegments(Path directory) {
+        List<Segment> segments = new ArrayList<>();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher matcher = kSegmentName.matcher(file.getName());
+                if (matcher.matches()) {
+                    segments.add(new Segment(file, Long.parseLong(matcher.group(2))));
+                }
+            }
+        }
+        segments.sort(Comparator.comparingLong(segment -> segment.index));
+        return segments;
+    }
+
+    private static class Segment {
+        final File file;
+        final long index;
+
+        Segment(File file, long index) {
+            this.file = file;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package frc.robot.util;
+
+/**
+ * One LoopProfiler section's numbers at a report, for the match log. The section ids are
+ * printed with their names when the profiler reports at the end of a match phase.
+ */
+public class LoopProfileRecord {
+    public double timestamp;
+    public int section;
+    public long count;
+    public long overruns;
+    public double p50Ms;
+    public double p99Ms;
+    public double maxMs;
+}
@@ -0,0 +1,203 @@
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.wpi.first.wpilibj.Timer;
+import frc.robot.util.TelemetryPublisher.NumberEntry;
+
+/**
+ * Times the pieces of the robot loop (subsystem periodic(), command execute(), the scheduler, the whole loop) so we
+ * can see which one blows the 20 ms budget.
+ *
+ * Code registers a named section once and brackets the work with start()/stop(). A section records into its own
+ * preallocated LatencyHistogram (50 us buckets up to 100 ms), so timing a section costs two System.nanoTime() calls
+ * and an array increment, no allocation or boxing. Every kReportPeriodSeconds report() puts p50/p99/max and the
+ * number of samples over the section's budget on the dashboard ("Loop/...") and in the LoopProfileRecord match log.
+ * The numbers cover the current match phase, setPhase() prints a summary and starts over.
+ *
+ * Robot thread only.
+ */
+public class LoopProfiler {
+    public static final double kSectionBudgetSeconds = 0.002;
+
+    private static final double kHistogramMaxSeconds = 0.1;
+    private static final double kBucketSeconds = 0.00005;
+    private static final double kReportPeriodSeconds = TelemetryPublisher.kSlow;
+
+    private static LoopProfiler instance;
+
+    private final ArrayList<Section> mSections = new ArrayList<>();
+    private final HashMap<String, Section> mByName = new HashMap<>();
+    private final BinaryLogWriter<LoopProfileRecord> mLogWriter = new BinaryLogWriter<>(LoopProfileRecord.class);
+    private final LoopProfileRecord mRecord = new LoopProfileRecord();
+    private MatchPhase mPhase = MatchPhase.DISABLED;
+    private double mLastReport = Double.NEGATIVE_INFINITY;
+
+    public static synchronized LoopProfiler getInstance() {
+        if (instance == null) {
+            instance = new LoopProfiler();
+        }
+        return instance;
+    }
+
+    private LoopProfiler() {
+    }
+
+    public Section addSection(String name) {
+        return addSection(name, kSectionBudgetSeconds);
+    }
+
+    /**
+     * The same name registered twice shares one section, e.g. a command that is built again for every auto run.
+     *
+     * @param budgetSeconds a sample longer than this counts as an overrun
+     */
+    public Section addSection(String name, double budgetSeconds) {
+        Section section = mByName.get(name);
+        if (section == null) {
+            section = new Section(name, mSections.size(), budgetSeconds);
+            mByName.put(name, section);
+            mSections.add(section);
+        }
+        return section;
+    }
+
+    /**
+     * Puts every section on the dashboard and in the match log if a report is due. Call once per loop.
+     */
+    public void report(double timestamp) {
+        if (timestamp - mLastReport < kReportPeriodSeconds) {
+            return;
+        }
+        mLastReport = timestamp;
+        reportAll(timestamp);
+    }
+
+    private void reportAll(double timestamp) {
+        for (int i = 0; i < mSections.size(); i++) {
+            mSections.get(i).report(timestamp);
+        }
+    }
+
+    /**
+     * Prints the finished phase's numbers to the console, then starts the new phase from empty histograms.
+     */
+    public void setPhase(MatchPhase phase) {
+        if (phase == mPhase) {
+            return;
+        }
+        printSummary();
+        reportAll(Timer.getFPGATimestamp());
+        mLastReport = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < mSections.size(); i++) {
+            mSections.get(i).reset();
+        }
+        mPhase = phase;
+        mLogWriter.setPhase(phase);
+    }
+
+    public void printSummary() {
+        System.out.println("Loop profile, " + mPhase + ":");
+        System.out.println(String.format("  %3s %-40s %8s %8s %8s %8s %8s", "id", "section", "count", "p50 ms", "p99 ms",
+                "max ms", "overruns"));
+        for (Section section : mSections) {
+            LatencyHistogram histogram = section.mHistogram;
+            System.out.println(String.format("  %3d %-40s %8d %8.2f %8.2f %8.2f %8d", section.mId, section.mName,
+                    histogram.getCount(), histogram.getPercentile(50) * 1000, histogram.getPercentile(99) * 1000,
+                    histogram.getMax() * 1000, section.mOverruns));
+        }
+    }
+
+    public long getDroppedRecords() {
+        return mLogWriter.getDroppedRecords();
+    }
+
+    public class Section {
+        private final String mName;
+        private final int mId;
+        private final double mBudget;
+        private final LatencyHistogram mHistogram = new LatencyHistogram(kHistogramMaxSeconds, kBucketSeconds);
+        private final NumberEntry mP50Entry;
+        private final NumberEntry mP99Entry;
+        private final NumberEntry mMaxEntry;
+        private final NumberEntry mOverrunsEntry;
+        private long mOverruns = 0;
+        private long mStart = -1;
+        private double mLast = 0;
+
+        private Section(String name, int id, double budgetSeconds) {
+            mName = name;
+            mId = id;
+            mBudget = budgetSeconds;
+            TelemetryPublisher telemetry = TelemetryPublisher.getInstance();
+            mP50Entry = telemetry.addNumber("Loop/" + name + " p50 ms", kReportPeriodSeconds, 0.01);
+            mP99Entry = telemetry.addNumber("Loop/" + name + " p99 ms", kReportPeriodSeconds, 0.01);
+            mMaxEntry = telemetry.addNumber("Loop/" + name + " max ms", kReportPeriodSeconds, 0.01);
+            mOverrunsEntry = telemetry.addNumber("Loop/" + name + " overruns", kReportPeriodSeconds, 0);
+        }
+
+        public void start() {
+            mStart = System.nanoTime();
+        }
+
+        /**
+         * Records the time since start(). Does nothing if start() wasn't called.
+         */
+        public void stop() {
+            if (mStart < 0) {
+                return;
+            }
+            record((System.nanoTime() - mStart) * 1e-9);
+            mStart = -1;
+        }
+
+        public void record(double seconds) {
+            mHistogram.record(seconds);
+            if (seconds > mBudget) {
+                mOverruns++;
+            }
+            mLast = seconds;
+        }
+
+        /**
+         * @return the latest sample, seconds
+         */
+        public double getLast() {
+            return mLast;
+        }
+
+        public long getOverruns() {
+            return mOverruns;
+        }
+
+        public String getName() {
+            return mName;
+        }
+
+        private void report(double timestamp) {
+            if (mHistogram.getCount() == 0) {
+                return;
+            }
+            mRecord.timestamp = timestamp;
+            mRecord.section = mId;
+            mRecord.count = mHistogram.getCount();
+            mRecord.overruns = mOverruns;
+            mRecord.p50Ms = mHistogram.getPercentile(50) * 1000;
+            mRecord.p99Ms = mHistogram.getPercentile(99) * 1000;
+            mRecord.maxMs = mHistogram.getMax() * 1000;
+            mLogWriter.add(mRecord);
+
+            mP50Entry.set(mRecord.p50Ms);
+            mP99Entry.set(mRecord.p99Ms);
+            mMaxEntry.set(mRecord.maxMs);
+            mOverrunsEntry.set(mOverruns);
+        }
+
+        private void reset() {
+            mHistogram.reset();
+            mOverruns = 0;
+            mStart = -1;
+        }
+    }
+}
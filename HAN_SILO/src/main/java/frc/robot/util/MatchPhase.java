@@ -0,0 +1,8 @@
+package frc.robot.util;
+
+/**
+ * The part of the match the robot is in, used to split telemetry into separate log segments.
+ */
+public enum MatchPhase {
+    DISABLED, AUTO, TELEOP, TEST
+}
@@ -0,0 +1,604 @@
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.ctre.phoenix.ErrorCode;
+import com.ctre.phoenix.ParamEnum;
+import com.ctre.phoenix.motorcontrol.FeedbackDevice;
+import com.ctre.phoenix.motorcontrol.StatorCurrentLimitConfiguration;
+import com.ctre.phoenix.motorcontrol.SupplyCurrentLimitConfiguration;
+import com.ctre.phoenix.motorcontrol.can.TalonFX;
+import com.revrobotics.CANError;
+import com.revrobotics.CANPIDController;
+import com.revrobotics.CANSparkMax;
+
+import edu.wpi.first.wpilibj.Filesystem;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.CanConstants;
+import frc.robot.Gains;
+
+/**
+ * Configures every CAN motor controller at boot, in parallel and only where the controller isn't already set up.
+ *
+ * Subsystems declare each controller's config in their constructor instead of calling config*()/set*() directly,
+ * e.g. addTalonFX("sequencer", talon).peakOutput(1, -1).gains(0, gains). Robot.robotInit() calls start() once
+ * every subsystem exists and finish() before anything drives the motors. start() gives each controller to a worker
+ * thread and finish() waits for them and prints a report.
+ *
+ * A controller is left alone when the config it was last given (saved in getStateDirectory()) is the declared one
+ * and every parameter that can be read back still matches. Otherwise it is factory reset, so nothing undeclared
+ * survives, every declared parameter is written and read back, and once all of them are verified the config is
+ * saved to the controller's flash (SparkMax, Talon configs persist on their own) and to getStateDirectory().
+ * Parameters the vendor library can't read back are covered by the saved config and checked by their ack.
+ */
+public class MotorConfigurator {
+    // relative tolerance for read back values, controllers store floats or fixed point
+    private static final double kTolerance = 1e-4;
+
+    private static MotorConfigurator instance;
+
+    private final ArrayList<Device> mDevices = new ArrayList<>();
+    private final ArrayList<Future<?>> mFutures = new ArrayList<>();
+    private ExecutorService mPool;
+    private long mStartNanos;
+    // set when finish() gives up waiting, workers stop at the next parameter
+    private volatile boolean mStopped = false;
+
+    public static synchronized MotorConfigurator getInstance() {
+        if (instance == null) {
+            instance = new MotorConfigurator();
+        }
+        return instance;
+    }
+
+    private MotorConfigurator() {
+    }
+
+    public SparkMaxConfig addSparkMax(String name, CANSparkMax spark) {
+        return add(new SparkMaxConfig(name, spark));
+    }
+
+    public TalonFXConfig addTalonFX(String name, TalonFX talon) {
+        return add(new TalonFXConfig(name, talon));
+    }
+
+    private <T extends Device> T add(T device) {
+        if (mPool != null) {
+            throw new IllegalStateException("Can't add " + device.mName + " after start()");
+        }
+        mDevices.add(device);
+        return device;
+    }
+
+    /**
+     * Starts configuring every declared controller on CanConstants.kConfigThreads worker threads. Returns right away.
+     */
+    public void start() {
+        if (mPool != null) {
+            return;
+        }
+        mStartNanos = System.nanoTime();
+        mPool = Executors.newFixedThreadPool(CanConstants.kConfigThreads, runnable -> {
+            Thread thread = new Thread(runnable, "MotorConfigurator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (Device device : mDevices) {
+            mFutures.add(mPool.submit(device::configure));
+        }
+        mPool.shutdown();
+    }
+
+    /**
+     * Waits up to CanConstants.kConfigWaitSeconds for the workers, prints the report and puts the totals on the
+     * dashboard.
+     *
+     * @return true if every parameter of every controller was verified
+     */
+    public boolean finish() {
+        start();
+        try {
+            if (!mPool.awaitTermination((long) (CanConstants.kConfigWaitSeconds * 1000), TimeUnit.MILLISECONDS)) {
+                // every CAN call has a timeout, so the workers stop soon after they see the flag. Wait for them so
+                // nothing writes configs once the robot is running
+                System.err.println("Motor controller config not done after " + CanConstants.kConfigWaitSeconds
+                        + "s, stopping");
+                mStopped = true;
+                mPool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            mStopped = true;
+            Thread.currentThread().interrupt();
+        }
+        double seconds = (System.nanoTime() - mStartNanos) * 1e-9;
+
+        int written = 0;
+        int failed = 0;
+        for (int i = 0; i < mDevices.size(); i++) {
+            Device device = mDevices.get(i);
+            try {
+                mFutures.get(i).get(0, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // only if finish() was interrupted
+                device.mFailures.add("still running");
+            } catch (ExecutionException e) {
+                device.mFailures.add("threw " + e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            written += device.mWritten;
+            failed += device.mFailures.size();
+        }
+
+        printReport(seconds);
+        SmartDashboard.putNumber("Config/Boot ms", seconds * 1000);
+        SmartDashboard.putNumber("Config/Written", written);
+        SmartDashboard.putNumber("Config/Failed", failed);
+        return failed == 0;
+    }
+
+    private void printReport(double seconds) {
+        System.out.println(String.format("Motor controller config: %d controllers in %.0f ms on %d threads",
+                mDevices.size(), seconds * 1000, CanConstants.kConfigThreads));
+        for (Device device : mDevices) {
+            System.out.println(String.format("  %-16s %-9s %3d checked %3d written %3d failed %5.0f ms", device.mName,
+                    device.mReset ? "reset" : "unchanged", device.mChecked, device.mWritten, device.mFailures.size(),
+                    device.mMillis));
+            for (String failure : device.mFailures) {
+                System.err.println("  " + device.mName + " config FAILED: " + failure);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Reader {
+        double read(int timeoutMs);
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+        /**
+         * @return true if the controller acked the write
+         */
+        boolean write(double value, int timeoutMs);
+    }
+
+    @FunctionalInterface
+    public interface Check {
+        /**
+         * @return true if the controller already has the setting
+         */
+        boolean matches(int timeoutMs);
+    }
+
+    @FunctionalInterface
+    public interface Apply {
+        boolean apply(int timeoutMs);
+    }
+
+    /**
+     * One controller's declared parameters, in the order they get written.
+     */
+    public abstract class Device {
+        final String mName;
+        private final ArrayList<Param> mParams = new ArrayList<>();
+
+        // written by the worker thread, read after finish()
+        int mChecked;
+        int mWritten;
+        boolean mReset;
+        double mMillis;
+        final ArrayList<String> mFailures = new ArrayList<>();
+
+        Device(String name) {
+            mName = name;
+        }
+
+        /**
+         * Back to factory defaults, so no setting left over from earlier code or another robot survives.
+         */
+        abstract boolean factoryReset(int timeoutMs);
+
+        /**
+         * Makes the written config survive a power cycle.
+         */
+        abstract boolean persist(int timeoutMs);
+
+        /**
+         * A numeric parameter. Pass a null reader if the controller can't report it.
+         */
+        void value(String name, double value, Reader reader, Writer writer) {
+            mParams.add(new Param(name) {
+                private double mRead = Double.NaN;
+
+                @Override
+                boolean canRead() {
+                    return reader != null;
+                }
+
+                @Override
+                boolean matches(int timeoutMs) {
+                    mRead = reader.read(timeoutMs);
+                    return close(mRead, value);
+                }
+
+                @Override
+                boolean apply(int timeoutMs) {
+                    return writer.write(value, timeoutMs);
+                }
+
+                @Override
+                String describe() {
+                    return mName + " wanted " + value + (canRead() ? ", read " + mRead : ", not acked");
+                }
+
+                @Override
+                String signature() {
+                    return mName + "=" + value;
+                }
+            });
+        }
+
+        /**
+         * A setting made of several values (e.g. a current limit), described by value for the saved config. Pass a
+         * null check if the controller can't report it.
+         */
+        void setting(String name, String value, Check check, Apply apply) {
+            mParams.add(new Param(name) {
+                @Override
+                boolean canRead() {
+                    return check != null;
+                }
+
+                @Override
+                boolean matches(int timeoutMs) {
+                    return check.matches(timeoutMs);
+                }
+
+                @Override
+                boolean apply(int timeoutMs) {
+                    return apply.apply(timeoutMs);
+                }
+
+                @Override
+                String describe() {
+                    return mName + (canRead() ? " doesn't match after write" : " not acked");
+                }
+
+                @Override
+                String signature() {
+                    return mName + "=" + value;
+                }
+            });
+        }
+
+        void configure() {
+            long start = System.nanoTime();
+            try {
+                update(CanConstants.kConfigTimeoutMs);
+            } finally {
+                mMillis = (System.nanoTime() - start) * 1e-6;
+            }
+        }
+
+        private void update(int timeoutMs) {
+            String signature = getSignature();
+            if (signature.equals(readSavedSignature()) && readBackMatches(timeoutMs)) {
+                return;
+            }
+            if (mStopped) {
+                mFailures.add("stopped before writing");
+                return;
+            }
+
+            mReset = true;
+            mChecked = 0;
+            // forget the saved config first, a reset that doesn't get to the end must not look configured
+            saveSignature(null);
+            if (!factoryReset(timeoutMs)) {
+                mFailures.add("factory reset not acked");
+            }
+            for (Param param : mParams) {
+                if (mStopped) {
+                    mFailures.add("stopped after " + CanConstants.kConfigWaitSeconds + "s");
+                    return;
+                }
+                mChecked++;
+                // a reset leaves most parameters at a default that may already be right
+                if (param.canRead() && param.matches(timeoutMs)) {
+                    continue;
+                }
+                boolean ok = false;
+                for (int attempt = 0; attempt <= CanConstants.kConfigRetries && !ok; attempt++) {
+                    boolean acked = param.apply(timeoutMs);
+                    ok = param.canRead() ? param.matches(timeoutMs) : acked;
+                }
+                mWritten++;
+                if (!ok) {
+                    mFailures.add(param.describe());
+                }
+            }
+            if (!mFailures.isEmpty()) {
+                return;
+            }
+            if (persist(timeoutMs)) {
+                saveSignature(signature);
+            } else {
+                mFailures.add("saving to flash not acked");
+            }
+        }
+
+        private boolean readBackMatches(int timeoutMs) {
+            for (Param param : mParams) {
+                if (param.canRead()) {
+                    mChecked++;
+                    if (!param.matches(timeoutMs)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private String getSignature() {
+            StringBuilder signature = new StringBuilder();
+            for (Param param : mParams) {
+                signature.append(param.signature()).append('\n');
+            }
+            return signature.toString();
+        }
+
+        private File getSignatureFile() {
+            return new File(getStateDirectory(), mName + ".cfg");
+        }
+
+        private String readSavedSignature() {
+            try {
+                return new String(Files.readAllBytes(getSignatureFile().toPath()), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /**
+         * @param signature null to delete the saved config
+         */
+        private void saveSignature(String signature) {
+            File file = getSignatureFile();
+            try {
+                if (signature == null) {
+                    Files.deleteIfExists(file.toPath());
+                } else {
+                    Files.createDirectories(file.getParentFile().toPath());
+                    Files.write(file.toPath(), signature.getBytes(StandardCharsets.UTF_8));
+                }
+            } catch (IOException e) {
+                System.err.println("MotorConfigurator: could not update " + file + ": " + e);
+            }
+        }
+    }
+
+    /**
+     * Where the config each controller was last given is kept, so a boot can tell the declared config changed.
+     */
+    public static File getStateDirectory() {
+        return new File(Filesystem.getOperatingDirectory(), "motor-config");
+    }
+
+    private static String describe(boolean enable, double limit, double threshold, double time) {
+        return enable + "/" + limit + "/" + threshold + "/" + time;
+    }
+
+    static boolean close(double a, double b) {
+        return Math.abs(a - b) <= kTolerance * Math.max(Math.abs(a), Math.abs(b));
+    }
+
+    private abstract static class Param {
+        final String mName;
+
+        Param(String name) {
+            mName = name;
+        }
+
+        abstract boolean canRead();
+
+        abstract boolean matches(int timeoutMs);
+
+        abstract boolean apply(int timeoutMs);
+
+        abstract String describe();
+
+        abstract String signature();
+    }
+
+    /**
+     * REV doesn't take timeouts, parameter reads and writes wait for the controller on their own.
+     */
+    public class SparkMaxConfig extends Device {
+        private final CANSparkMax mSpark;
+        private final CANPIDController mPid;
+
+        SparkMaxConfig(String name, CANSparkMax spark) {
+            super(name);
+            mSpark = spark;
+            mPid = spark.getPIDController();
+        }
+
+        @Override
+        boolean factoryReset(int timeoutMs) {
+            return mSpark.restoreFactoryDefaults() == CANError.kOk;
+        }
+
+        @Override
+        boolean persist(int timeoutMs) {
+            return mSpark.burnFlash() == CANError.kOk;
+        }
+
+        public SparkMaxConfig inverted(boolean inverted) {
+            setting("inverted", String.valueOf(inverted), t -> mSpark.getInverted() == inverted, t -> {
+                mSpark.setInverted(inverted);
+                return true;
+            });
+            return this;
+        }
+
+        /**
+         * No read back for the current limit in this REVLib, the saved config covers it.
+         */
+        public SparkMaxConfig smartCurrentLimit(int stallLimit, int freeLimit) {
+            setting("smart current limit", stallLimit + "/" + freeLimit, null,
+                    t -> mSpark.setSmartCurrentLimit(stallLimit, freeLimit) == CANError.kOk);
+            return this;
+        }
+
+        public SparkMaxConfig pidf(int slot, double p, double i, double d, double ff) {
+            value("kP" + slot, p, t -> mPid.getP(slot), (v, t) -> mPid.setP(v, slot) == CANError.kOk);
+            value("kI" + slot, i, t -> mPid.getI(slot), (v, t) -> mPid.setI(v, slot) == CANError.kOk);
+            value("kD" + slot, d, t -> mPid.getD(slot), (v, t) -> mPid.setD(v, slot) == CANError.kOk);
+            value("kFF" + slot, ff, t -> mPid.getFF(slot), (v, t) -> mPid.setFF(v, slot) == CANError.kOk);
+            return this;
+        }
+
+        public SparkMaxConfig iZone(int slot, double iZone) {
+            value("iZone" + slot, iZone, t -> mPid.getIZone(slot), (v, t) -> mPid.setIZone(v, slot) == CANError.kOk);
+            return this;
+        }
+
+        public SparkMaxConfig outputRange(int slot, double min, double max) {
+            setting("output range " + slot, min + "/" + max,
+                    t -> close(mPid.getOutputMin(slot), min) && close(mPid.getOutputMax(slot), max),
+                    t -> mPid.setOutputRange(min, max, slot) == CANError.kOk);
+            return this;
+        }
+
+        public SparkMaxConfig smartMotion(int slot, double maxVelocity, double minOutputVelocity, double maxAccel,
+                double allowedError) {
+            value("smart motion max velocity " + slot, maxVelocity, t -> mPid.getSmartMotionMaxVelocity(slot),
+                    (v, t) -> mPid.setSmartMotionMaxVelocity(v, slot) == CANError.kOk);
+            value("smart motion min output velocity " + slot, minOutputVelocity,
+                    t -> mPid.getSmartMotionMinOutputVelocity(slot),
+                    (v, t) -> mPid.setSmartMotionMinOutputVelocity(v, slot) == CANError.kOk);
+            value("smart motion max accel " + slot, maxAccel, t -> mPid.getSmartMotionMaxAccel(slot),
+                    (v, t) -> mPid.setSmartMotionMaxAccel(v, slot) == CANError.kOk);
+            value("smart motion allowed error " + slot, allowedError,
+                    t -> mPid.getSmartMotionAllowedClosedLoopError(slot),
+                    (v, t) -> mPid.setSmartMotionAllowedClosedLoopError(v, slot) == CANError.kOk);
+            return this;
+        }
+    }
+
+    /**
+     * Only persistent configs go here. setInverted(), setSensorPhase() and setNeutralMode() are sent with the
+     * control frame and don't cost a round trip, subsystems still call them directly.
+     */
+    public class TalonFXConfig extends Device {
+        private final TalonFX mTalon;
+
+        TalonFXConfig(String name, TalonFX talon) {
+            super(name);
+            mTalon = talon;
+        }
+
+        @Override
+        boolean factoryReset(int timeoutMs) {
+            return mTalon.configFactoryDefault(timeoutMs) == ErrorCode.OK;
+        }
+
+        /**
+         * Talon configs are persistent as soon as they are written.
+         */
+        @Override
+        boolean persist(int timeoutMs) {
+            return true;
+        }
+
+        private Reader param(ParamEnum param, int ordinal) {
+            return t -> mTalon.configGetParameter(param, ordinal, t);
+        }
+
+        public TalonFXConfig feedbackSensor(FeedbackDevice sensor, int pidIdx) {
+            value("feedback sensor " + pidIdx, sensor.value, param(ParamEnum.eFeedbackSensorType, pidIdx),
+                    (v, t) -> mTalon.configSelectedFeedbackSensor(sensor, pidIdx, t) == ErrorCode.OK);
+            return this;
+        }
+
+        public TalonFXConfig nominalOutput(double forward, double reverse) {
+            value("nominal output forward", forward, param(ParamEnum.eNominalPosOutput, 0),
+                    (v, t) -> mTalon.configNominalOutputForward(v, t) == ErrorCode.OK);
+            value("nominal output reverse", reverse, param(ParamEnum.eNominalNegOutput, 0),
+                    (v, t) -> mTalon.configNominalOutputReverse(v, t) == ErrorCode.OK);
+            return this;
+        }
+
+        public TalonFXConfig peakOutput(double forward, double reverse) {
+            value("peak output forward", forward, param(ParamEnum.ePeakPosOutput, 0),
+                    (v, t) -> mTalon.configPeakOutputForward(v, t) == ErrorCode.OK);
+            value("peak output reverse", reverse, param(ParamEnum.ePeakNegOutput, 0),
+                    (v, t) -> mTalon.configPeakOutputReverse(v, t) == ErrorCode.OK);
+            return this;
+        }
+
+        public TalonFXConfig pidf(int slot, double p, double i, double d, double f) {
+            value("kP" + slot, p, param(ParamEnum.eProfileParamSlot_P, slot),
+                    (v, t) -> mTalon.config_kP(slot, v, t) == ErrorCode.OK);
+            value("kI" + slot, i, param(ParamEnum.eProfileParamSlot_I, slot),
+                    (v, t) -> mTalon.config_kI(slot, v, t) == ErrorCode.OK);
+            value("kD" + slot, d, param(ParamEnum.eProfileParamSlot_D, slot),
+                    (v, t) -> mTalon.config_kD(slot, v, t) == ErrorCode.OK);
+            value("kF" + slot, f, param(ParamEnum.eProfileParamSlot_F, slot),
+                    (v, t) -> mTalon.config_kF(slot, v, t) == ErrorCode.OK);
+            return this;
+        }
+
+        /**
+         * kP, kI, kD and kF from a Gains, the way the code has always set them (no iZone or peak output).
+         */
+        public TalonFXConfig gains(int slot, Gains gains) {
+            return pidf(slot, gains.kP, gains.kI, gains.kD, gains.kF);
+        }
+
+        public TalonFXConfig motionMagic(double cruiseVelocity, double acceleration) {
+            value("motion magic cruise velocity", cruiseVelocity, param(ParamEnum.eMotMag_VelCruise, 0),
+                    (v, t) -> mTalon.configMotionCruiseVelocity(v, t) == ErrorCode.OK);
+            value("motion magic acceleration", acceleration, param(ParamEnum.eMotMag_Accel, 0),
+                    (v, t) -> mTalon.configMotionAcceleration(v, t) == ErrorCode.OK);
+            return this;
+        }
+
+        public TalonFXConfig supplyCurrentLimit(SupplyCurrentLimitConfiguration limit) {
+            setting("supply current limit", describe(limit.enable, limit.currentLimit, limit.triggerThresholdCurrent,
+                    limit.triggerThresholdTime), t -> {
+                SupplyCurrentLimitConfiguration current = new SupplyCurrentLimitConfiguration();
+                return mTalon.configGetSupplyCurrentLimit(current, t) == ErrorCode.OK
+                        && current.enable == limit.enable
+                        && close(current.currentLimit, limit.currentLimit)
+                        && close(current.triggerThresholdCurrent, limit.triggerThresholdCurrent)
+                        && close(current.triggerThresholdTime, limit.triggerThresholdTime);
+            }, t -> mTalon.configSupplyCurrentLimit(limit, t) == ErrorCode.OK);
+            return this;
+        }
+
+        public TalonFXConfig statorCurrentLimit(StatorCurrentLimitConfiguration limit) {
+            setting("stator current limit", describe(limit.enable, limit.currentLimit, limit.triggerThresholdCurrent,
+                    limit.triggerThresholdTime), t -> {
+                StatorCurrentLimitConfiguration current = new StatorCurrentLimitConfiguration();
+                return mTalon.configGetStatorCurrentLimit(current, t) == ErrorCode.OK
+                        && current.enable == limit.enable
+                        && close(current.currentLimit, limit.currentLimit)
+                        && close(current.triggerThresholdCurrent, limit.triggerThresholdCurrent)
+                        && close(current.triggerThresholdTime, limit.triggerThresholdTime);
+            }, t -> mTalon.configStatorCurrentLimit(limit, t) == ErrorCode.OK);
+            return this;
+        }
+    }
+}
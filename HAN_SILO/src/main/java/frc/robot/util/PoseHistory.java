@@ -0,0 +1,127 @@
+package frc.robot.util;
+
+/**
+ * Fixed-capacity, time-indexed history of robot poses stored in primitive arrays.
+ *
+ * Samples must be added in increasing timestamp order (FPGA seconds). Once the buffer is
+ * full the oldest sample is overwritten. getPoseAt() binary searches for the two samples
+ * around the requested time and interpolates between them, writing x, y and theta into
+ * a caller-supplied array so a lookup never allocates.
+ */
+public class PoseHistory {
+    private final int mCapacity;
+    private final double[] mTimes;
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mTheta;
+
+    // index of the oldest sample and number of valid samples
+    private int mHead = 0;
+    private int mSize = 0;
+
+    public PoseHistory(int capacity) {
+        mCapacity = capacity;
+        mTimes = new double[capacity];
+        mX = new double[capacity];
+        mY = new double[capacity];
+        mTheta = new double[capacity];
+    }
+
+    /**
+     * @param timestamp FPGA time the pose was measured at, in seconds
+     * @param thetaRadians robot heading in radians
+     */
+    public synchronized void add(double timestamp, double x, double y, double thetaRadians) {
+        if (mSize > 0 && timestamp <= mTimes[physical(mSize - 1)]) {
+            // clock went backwards or duplicate sample, replace the newest one
+            if (timestamp < mTimes[physical(mSize - 1)]) {
+                clear();
+            } else {
+                mSize--;
+            }
+        }
+        int index;
+        if (mSize < mCapacity) {
+            index = physical(mSize);
+            mSize++;
+        } else {
+            index = mHead;
+            mHead = (mHead + 1) % mCapacity;
+        }
+        mTimes[index] = timestamp;
+        mX[index] = x;
+        mY[index] = y;
+        mTheta[index] = thetaRadians;
+    }
+
+    public synchronized void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    public synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * Looks up the pose at the given time. Times before the oldest sample or after the newest
+     * sample are clamped to that sample.
+     *
+     * @param out receives {x, y, thetaRadians}, must have length >= 3
+     * @return false if the history is empty (out is left untouched)
+     */
+    public synchronized boolean getPoseAt(double timestamp, double[] out) {
+        if (mSize == 0) {
+            return false;
+        }
+        int newest = physical(mSize - 1);
+        if (timestamp >= mTimes[newest]) {
+            copy(newest, out);
+            return true;
+        }
+        if (timestamp <= mTimes[mHead]) {
+            copy(mHead, out);
+            return true;
+        }
+
+        // find the first logical index whose time is after timestamp
+        int low = 1;
+        int high = mSize - 1;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (mTimes[physical(mid)] <= timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int after = physical(low);
+        int before = physical(low - 1);
+
+        double t = (timestamp - mTimes[before]) / (mTimes[after] - mTimes[before]);
+        out[0] = mX[before] + (mX[after] - mX[before]) * t;
+        out[1] = mY[before] + (mY[after] - mY[before]) * t;
+        // interpolate heading the short way around
+        double dTheta = Math.IEEEremainder(mTheta[after] - mTheta[before], 2 * Math.PI);
+        out[2] = mTheta[before] + dTheta * t;
+        return true;
+    }
+
+    /**
+     * @return time of the newest sample, or NaN if the history is empty
+     */
+    public synchronized double getLatestTimestamp() {
+        return mSize == 0 ? Double.NaN : mTimes[physical(mSize - 1)];
+    }
+
+    private void copy(int index, double[] out) {
+        out[0] = mX[index];
+        out[1] = mY[index];
+        out[2] = mTheta[index];
+    }
+
+    private int physical(int logical) {
+        int index = mHead + logical;
+        return index >= mCapacity ? index - mCapacity : index;
+    }
+}
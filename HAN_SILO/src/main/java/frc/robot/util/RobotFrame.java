@@ -0,0 +1,86 @@
+package frc.robot.util;
+
+import java.util.ArrayList;
+
+/**
+ * Every sensor the robot loop decides on, read once at the top of the loop with one timestamp.
+ *
+ * Subsystems that own hardware register a Sampler in their constructor. Robot.loopFunc() calls sample() before the
+ * mode periodic and the scheduler, and from then on subsystems and commands read these fields instead of the
+ * gyro, encoders and DIOs, so each sensor costs one CAN/SPI/JNI read per loop and everything in a loop sees the
+ * same values. The arrays are allocated once; module arrays are in DriveSubsystem order (leftFront, rightFront,
+ * leftRear, rightRear).
+ *
+ * Robot thread only. The odometry Notifier thread still reads its own sensors at its own rate.
+ */
+public class RobotFrame {
+    public static final int kModules = 4;
+
+    /**
+     * Reads one subsystem's sensors into the frame.
+     */
+    @FunctionalInterface
+    public interface Sampler {
+        void sample(RobotFrame frame);
+    }
+
+    private static RobotFrame instance;
+
+    private final ArrayList<Sampler> mSamplers = new ArrayList<>();
+
+    // FPGA seconds the frame was sampled at
+    public double timestamp;
+
+    // drive, gyro as the NavX reports it (CW positive, not wrapped)
+    public double gyroAngleDegrees;
+    public double gyroRateDegreesPerSecond;
+    public boolean gyroCalibrating;
+    public final double[] moduleVelocity = new double[kModules];          // m/s
+    public final double[] moduleAngleRadians = new double[kModules];      // -PI to PI
+    public final double[] moduleTurningPosition = new double[kModules];   // raw turning encoder
+    public final double[] moduleTurningVelocity = new double[kModules];   // raw turning encoder
+    public final double[] moduleDriveVelocity = new double[kModules];     // raw drive encoder
+    public final double[] moduleAbsEncoderVolts = new double[kModules];   // 0.0 to 3.26, 180=1.63V
+
+    // shooter/climber
+    public double shooter1Velocity;   // units per 100 ms
+    public double shooter2Velocity;
+    public boolean hiCylinder;
+    public boolean loCylinder;
+    public boolean climbExtend;
+    public boolean climbRetract;
+
+    // sequencer
+    public boolean seqLowHasBall;
+    public boolean seqMidHasBall;
+    public boolean seqHighHasBall;
+    public double seqEncoderPosition;
+
+    public static synchronized RobotFrame getInstance() {
+        if (instance == null) {
+            instance = new RobotFrame();
+        }
+        return instance;
+    }
+
+    private RobotFrame() {
+    }
+
+    /**
+     * Registers a sampler and runs it once, so the frame is valid before the first loop.
+     */
+    public void addSampler(Sampler sampler) {
+        mSamplers.add(sampler);
+        sampler.sample(this);
+    }
+
+    /**
+     * Reads every sensor. Call once at the top of the loop.
+     */
+    public void sample(double timestamp) {
+        this.timestamp = timestamp;
+        for (int i = 0; i < mSamplers.size(); i++) {
+            mSamplers.get(i).sample(this);
+        }
+    }
+}
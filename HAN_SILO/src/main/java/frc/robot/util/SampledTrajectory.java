@@ -0,0 +1,164 @@
+package frc.robot.util;
+
+import java.util.Arrays;
+
+import edu.wpi.first.wpilibj.trajectory.Trajectory;
+
+/**
+ * A trajectory resampled at a fixed time step into parallel primitive arrays.
+ *
+ * sample() finds the two neighbouring samples with a division instead of a binary search and
+ * linearly interpolates into a caller-owned {@link Sample}, so following a path allocates
+ * nothing per loop. The heading variants share the position/velocity arrays with the original
+ * and only replace the heading array.
+ */
+public class SampledTrajectory {
+    /**
+     * Mutable result of sample(), reuse one per command.
+     */
+    public static class Sample {
+        public double timeSeconds;
+        public double x;
+        public double y;
+        public double headingRadians;
+        public double velocityMetersPerSecond;
+        public double curvatureRadPerMeter;
+    }
+
+    private final double mDt;
+    private final double mTotalTime;
+    private final int mCount;
+    private final double[] mX;
+    private final double[] mY;
+    private final double[] mHeading;
+    private final double[] mVelocity;
+    private final double[] mCurvature;
+
+    /**
+     * Sample i is at time min(i * dt, totalTime), so every array must have ceil(totalTime / dt) + 1
+     * entries.
+     */
+    public SampledTrajectory(double dt, double totalTime, double[] x, double[] y, double[] heading,
+                             double[] velocity, double[] curvature) {
+        mDt = dt;
+        mTotalTime = totalTime;
+        mCount = x.length;
+        mX = x;
+        mY = y;
+        mHeading = heading;
+        mVelocity = velocity;
+        mCurvature = curvature;
+    }
+
+    public static int sampleCount(double dt, double totalTime) {
+        return (int) Math.ceil(totalTime / dt - 1e-9) + 1;
+    }
+
+    public static SampledTrajectory fromTrajectory(Trajectory trajectory, double dt) {
+        double totalTime = trajectory.getTotalTimeSeconds();
+        int count = sampleCount(dt, totalTime);
+        double[] x = new double[count];
+        double[] y = new double[count];
+        double[] heading = new double[count];
+        double[] velocity = new double[count];
+        double[] curvature = new double[count];
+        for (int i = 0; i < count; i++) {
+            Trajectory.State state = trajectory.sample(Math.min(i * dt, totalTime));
+            x[i] = state.poseMeters.getTranslation().getX();
+            y[i] = state.poseMeters.getTranslation().getY();
+            heading[i] = state.poseMeters.getRotation().getRadians();
+            velocity[i] = state.velocityMetersPerSecond;
+            curvature[i] = state.curvatureRadPerMeter;
+        }
+        return new SampledTrajectory(dt, totalTime, x, y, heading, velocity, curvature);
+    }
+
+    /**
+     * Same path with a heading of 0 everywhere except the final sample.
+     */
+    public SampledTrajectory withUnrotatedHeading(double finalHeadingRadians) {
+        double[] heading = new double[mCount];
+        heading[mCount - 1] = finalHeadingRadians;
+        return new SampledTrajectory(mDt, mTotalTime, mX, mY, heading, mVelocity, mCurvature);
+    }
+
+    /**
+     * Same path holding one heading the whole way.
+     */
+    public SampledTrajectory withConstantHeading(double headingRadians) {
+        double[] heading = new double[mCount];
+        Arrays.fill(heading, headingRadians);
+        return new SampledTrajectory(mDt, mTotalTime, mX, mY, heading, mVelocity, mCurvature);
+    }
+
+    public void sample(double timeSeconds, Sample out) {
+        out.timeSeconds = timeSeconds;
+        if (timeSeconds <= 0) {
+            copy(0, out);
+            return;
+        }
+        if (timeSeconds >= mTotalTime) {
+            copy(mCount - 1, out);
+            return;
+        }
+        int i = (int) (timeSeconds / mDt);
+        if (i >= mCount - 1) {
+            copy(mCount - 1, out);
+            return;
+        }
+        double t0 = i * mDt;
+        double t1 = Math.min(t0 + mDt, mTotalTime);
+        double t = (timeSeconds - t0) / (t1 - t0);
+        int j = i + 1;
+        out.x = mX[i] + (mX[j] - mX[i]) * t;
+        out.y = mY[i] + (mY[j] - mY[i]) * t;
+        out.headingRadians = mHeading[i] + Math.IEEEremainder(mHeading[j] - mHeading[i], 2 * Math.PI) * t;
+        out.velocityMetersPerSecond = mVelocity[i] + (mVelocity[j] - mVelocity[i]) * t;
+        out.curvatureRadPerMeter = mCurvature[i] + (mCurvature[j] - mCurvature[i]) * t;
+    }
+
+    private void copy(int i, Sample out) {
+        out.x = mX[i];
+        out.y = mY[i];
+        out.headingRadians = mHeading[i];
+        out.velocityMetersPerSecond = mVelocity[i];
+        out.curvatureRadPerMeter = mCurvature[i];
+    }
+
+    public double getTotalTimeSeconds() {
+        return mTotalTime;
+    }
+
+    public double getDt() {
+        return mDt;
+    }
+
+    public int getSampleCount() {
+        return mCount;
+    }
+
+    public double getFinalHeadingRadians() {
+        return mHeading[mCount - 1];
+    }
+
+    // raw arrays for TrajectoryCache
+    double[] getX() {
+        return mX;
+    }
+
+    double[] getY() {
+        return mY;
+    }
+
+    double[] getHeading() {
+        return mHeading;
+    }
+
+    double[] getVelocity() {
+        return mVelocity;
+    }
+
+    double[] getCurvature() {
+        return mCurvature;
+    }
+}
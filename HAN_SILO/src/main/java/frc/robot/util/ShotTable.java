@@ -0,0 +1,80 @@
+package frc.robot.util;
+
+/**
+ * Calibrated shots by range: flywheel RPM, hood position and time of flight, from shooting at known distances.
+ *
+ * RPM and time of flight are interpolated linearly between the two rows around the range, the hood comes from the
+ * nearer row. Ranges outside the table are clamped to its ends. Lookups are a binary search on primitive arrays.
+ */
+public class ShotTable {
+    private final double[] mRange;
+    private final double[] mRpm;
+    private final boolean[] mHoodExtended;
+    private final double[] mTimeOfFlight;
+
+    public ShotTable(double[] range, double[] rpm, boolean[] hoodExtended, double[] timeOfFlight) {
+        if (range.length == 0 || rpm.length != range.length || hoodExtended.length != range.length
+                || timeOfFlight.length != range.length) {
+            throw new IllegalArgumentException("Shot table columns must be the same, non-zero length");
+        }
+        for (int i = 1; i < range.length; i++) {
+            if (range[i] <= range[i - 1]) {
+                throw new IllegalArgumentException("Shot table ranges must increase");
+            }
+        }
+        mRange = range.clone();
+        mRpm = rpm.clone();
+        mHoodExtended = hoodExtended.clone();
+        mTimeOfFlight = timeOfFlight.clone();
+    }
+
+    public double getRpm(double range) {
+        return interpolate(mRpm, range);
+    }
+
+    public double getTimeOfFlight(double range) {
+        return interpolate(mTimeOfFlight, range);
+    }
+
+    public boolean isHoodExtended(double range) {
+        int i = lowerIndex(range);
+        if (i + 1 < mRange.length && range - mRange[i] > mRange[i + 1] - range) {
+            i++;
+        }
+        return mHoodExtended[i];
+    }
+
+    public double getMinRange() {
+        return mRange[0];
+    }
+
+    public double getMaxRange() {
+        return mRange[mRange.length - 1];
+    }
+
+    private double interpolate(double[] column, double range) {
+        int i = lowerIndex(range);
+        if (i + 1 == mRange.length || range <= mRange[i]) {
+            return column[i];
+        }
+        double t = (range - mRange[i]) / (mRange[i + 1] - mRange[i]);
+        return column[i] + t * (column[i + 1] - column[i]);
+    }
+
+    /**
+     * @return index of the last row at or below range, 0 below the table
+     */
+    private int lowerIndex(double range) {
+        int low = 0;
+        int high = mRange.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mRange[mid] <= range) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,136 @@
+package frc.robot.util;
+
+/**
+ * Swerve kinematics on plain double arrays.
+ *
+ * Inverse kinematics is the fixed 8x3 matrix multiply [vx_i; vy_i] = [1 0 -y_i; 0 1 x_i] *
+ * [vx; vy; omega] for each module; forward kinematics multiplies by its precomputed 3x8
+ * pseudo-inverse. Results go into caller-owned arrays so the drive loop allocates nothing.
+ * Module order matches DriveConstants.kDriveKinematics (leftFront, rightFront, leftRear, rightRear).
+ */
+public class SwerveKinematics {
+    private final int mModuleCount;
+    // row-major (2n)x3 inverse kinematics matrix
+    private final double[] mInverse;
+    // row-major 3x(2n) forward kinematics matrix (pseudo-inverse of mInverse)
+    private final double[] mForward;
+
+    /**
+     * @param moduleX module x positions relative to the robot center (forward)
+     * @param moduleY module y positions relative to the robot center (left)
+     */
+    public SwerveKinematics(double[] moduleX, double[] moduleY) {
+        mModuleCount = moduleX.length;
+        int rows = 2 * mModuleCount;
+        mInverse = new double[rows * 3];
+        for (int i = 0; i < mModuleCount; i++) {
+            int r = 2 * i * 3;
+            mInverse[r] = 1;
+            mInverse[r + 1] = 0;
+            mInverse[r + 2] = -moduleY[i];
+            mInverse[r + 3] = 0;
+            mInverse[r + 4] = 1;
+            mInverse[r + 5] = moduleX[i];
+        }
+
+        // forward = (A^T A)^-1 A^T, only done once so keep it simple
+        double[] ata = new double[9];
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                double sum = 0;
+                for (int k = 0; k < rows; k++) {
+                    sum += mInverse[k * 3 + i] * mInverse[k * 3 + j];
+                }
+                ata[i * 3 + j] = sum;
+            }
+        }
+        double[] ataInv = invert3x3(ata);
+        mForward = new double[3 * rows];
+        for (int i = 0; i < 3; i++) {
+            for (int k = 0; k < rows; k++) {
+                double sum = 0;
+                for (int j = 0; j < 3; j++) {
+                    sum += ataInv[i * 3 + j] * mInverse[k * 3 + j];
+                }
+                mForward[i * rows + k] = sum;
+            }
+        }
+    }
+
+    public int getModuleCount() {
+        return mModuleCount;
+    }
+
+    /**
+     * Robot relative chassis speeds to module speeds and angles.
+     *
+     * @param speeds receives module speeds in m/s
+     * @param angles receives module angles in radians (0 when the module speed is 0)
+     */
+    public void toModuleStates(double vx, double vy, double omega, double[] speeds, double[] angles) {
+        for (int i = 0; i < mModuleCount; i++) {
+            int r = 2 * i * 3;
+            double mvx = mInverse[r] * vx + mInverse[r + 1] * vy + mInverse[r + 2] * omega;
+            double mvy = mInverse[r + 3] * vx + mInverse[r + 4] * vy + mInverse[r + 5] * omega;
+            speeds[i] = Math.hypot(mvx, mvy);
+            angles[i] = Math.atan2(mvy, mvx);
+        }
+    }
+
+    /**
+     * Module speeds and angles to robot relative chassis speeds (least squares).
+     *
+     * @param out receives {vx, vy, omega}
+     */
+    public void toChassisSpeeds(double[] speeds, double[] angles, double[] out) {
+        int rows = 2 * mModuleCount;
+        double vx = 0;
+        double vy = 0;
+        double omega = 0;
+        for (int i = 0; i < mModuleCount; i++) {
+            double mvx = speeds[i] * Math.cos(angles[i]);
+            double mvy = speeds[i] * Math.sin(angles[i]);
+            int c = 2 * i;
+            vx += mForward[c] * mvx + mForward[c + 1] * mvy;
+            vy += mForward[rows + c] * mvx + mForward[rows + c + 1] * mvy;
+            omega += mForward[2 * rows + c] * mvx + mForward[2 * rows + c + 1] * mvy;
+        }
+        out[0] = vx;
+        out[1] = vy;
+        out[2] = omega;
+    }
+
+    /**
+     * Scales all module speeds down so none is above maxSpeed, keeping their ratios.
+     */
+    public static void normalizeWheelSpeeds(double[] speeds, double maxSpeed) {
+        double realMax = 0;
+        for (double speed : speeds) {
+            realMax = Math.max(realMax, Math.abs(speed));
+        }
+        if (realMax > maxSpeed) {
+            double scale = maxSpeed / realMax;
+            for (int i = 0; i < speeds.length; i++) {
+                speeds[i] *= scale;
+            }
+        }
+    }
+
+    private static double[] invert3x3(double[] m) {
+        double a = m[0], b = m[1], c = m[2];
+        double d = m[3], e = m[4], f = m[5];
+        double g = m[6], h = m[7], k = m[8];
+        double A = e * k - f * h;
+        double B = -(d * k - f * g);
+        double C = d * h - e * g;
+        double det = a * A + b * B + c * C;
+        if (Math.abs(det) < 1e-12) {
+            throw new IllegalArgumentException("swerve module positions are degenerate");
+        }
+        return new double[] {
+            A / det, -(b * k - c * h) / det, (b * f - c * e) / det,
+            B / det, (a * k - c * g) / det, -(a * f - c * d) / det,
+            C / det, -(a * h - b * g) / det, (a * e - b * d) / det
+        };
+    }
+}
@@ -35,7 +35,10 @@ public class SwerveModuleDebug {
     public double turn3Velocity;
     public double turn4Velocity;
 
-    public SwerveModuleDebug(double time, 
+    public SwerveModuleDebug() {
+    }
+
+    public SwerveModuleDebug(double time,
                             SwerveModule.DebugValues debugValues1, 
                             SwerveModule.DebugValues debugValues2, 
                             SwerveModule.DebugValues debugValues3, 
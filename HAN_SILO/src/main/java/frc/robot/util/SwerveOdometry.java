@@ -0,0 +1,82 @@
+package frc.robot.util;
+
+/**
+ * Swerve odometry on primitives, same math as WPILib's SwerveDriveOdometry (pose exponential of
+ * the chassis twist, heading taken from the gyro) without allocating per update.
+ *
+ * Not thread safe, the caller synchronizes if it is updated and reset from different threads.
+ */
+public class SwerveOdometry {
+    private final SwerveKinematics mKinematics;
+    private final double[] mChassisSpeeds = new double[3];
+
+    private double mX;
+    private double mY;
+    private double mTheta;
+    private double mGyroOffset;
+    private double mPreviousAngle;
+    private double mPreviousTimestamp = -1;
+
+    public SwerveOdometry(SwerveKinematics kinematics, double gyroAngleRadians) {
+        mKinematics = kinematics;
+        resetPosition(0, 0, 0, gyroAngleRadians);
+    }
+
+    /**
+     * Sets the pose. The gyro angle does not need to be reset, the offset to it is remembered.
+     */
+    public void resetPosition(double x, double y, double thetaRadians, double gyroAngleRadians) {
+        mX = x;
+        mY = y;
+        mTheta = thetaRadians;
+        mGyroOffset = thetaRadians - gyroAngleRadians;
+        mPreviousAngle = thetaRadians;
+    }
+
+    /**
+     * @param timestamp  time of the measurement in seconds
+     * @param speeds     measured module speeds in m/s
+     * @param angles     measured module angles in radians
+     */
+    public void update(double timestamp, double gyroAngleRadians, double[] speeds, double[] angles) {
+        double dt = mPreviousTimestamp >= 0 ? timestamp - mPreviousTimestamp : 0;
+        mPreviousTimestamp = timestamp;
+
+        double angle = gyroAngleRadians + mGyroOffset;
+        mKinematics.toChassisSpeeds(speeds, angles, mChassisSpeeds);
+        double dx = mChassisSpeeds[0] * dt;
+        double dy = mChassisSpeeds[1] * dt;
+        double dtheta = Math.IEEEremainder(angle - mPreviousAngle, 2 * Math.PI);
+        mPreviousAngle = angle;
+
+        // pose exponential, robot relative translation over the arc
+        double s;
+        double c;
+        if (Math.abs(dtheta) < 1e-9) {
+            s = 1.0 - dtheta * dtheta / 6.0;
+            c = 0.5 * dtheta;
+        } else {
+            s = Math.sin(dtheta) / dtheta;
+            c = (1 - Math.cos(dtheta)) / dtheta;
+        }
+        double tx = dx * s - dy * c;
+        double ty = dx * c + dy * s;
+        double cos = Math.cos(mTheta);
+        double sin = Math.sin(mTheta);
+        mX += tx * cos - ty * sin;
+        mY += tx * sin + ty * cos;
+        mTheta = angle;
+    }
+
+    public double getX() {
+        return mX;
+    }
+
+    public double getY() {
+        return mY;
+    }
+
+    public double getThetaRadians() {
+        return mTheta;
+    }
+}
@@ -0,0 +1,59 @@
+package frc.robot.util;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Low priority background thread that writes the buffers handed off by every
+ * {@link BinaryLogWriter} to disk on a fixed cadence (or sooner when a writer asks).
+ * This is the only thread that does telemetry file I/O, so the 20 ms robot loop
+ * never waits on the disk.
+ */
+public class TelemetryFlusher implements Runnable {
+    private static final long kFlushPeriodMs = 100;
+
+    private static TelemetryFlusher instance;
+
+    private final CopyOnWriteArrayList<BinaryLogWriter<?>> mWriters = new CopyOnWriteArrayList<>();
+    private final Thread mThread;
+
+    public static synchronized TelemetryFlusher getInstance() {
+        if (instance == null) {
+            instance = new TelemetryFlusher();
+        }
+        return instance;
+    }
+
+    private TelemetryFlusher() {
+        mThread = new Thread(this, "TelemetryFlusher");
+        mThread.setDaemon(true);
+        mThread.setPriority(Thread.MIN_PRIORITY);
+        mThread.start();
+    }
+
+    public void register(BinaryLogWriter<?> writer) {
+        mWriters.add(writer);
+    }
+
+    /**
+     * Asks the flusher to run now instead of waiting for the next period. Does not block.
+     */
+    public void wakeup() {
+        LockSupport.unpark(mThread);
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            for (BinaryLogWriter<?> writer : mWriters) {
+                try {
+                    writer.drain();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(kFlushPeriodMs));
+        }
+    }
+}
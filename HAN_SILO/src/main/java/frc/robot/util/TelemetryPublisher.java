@@ -0,0 +1,195 @@
+package frc.robot.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * All periodic dashboard values go through here instead of SmartDashboard.put*().
+ *
+ * Code registers a key once (usually in a constructor) and gets back an entry with the NetworkTableEntry already
+ * resolved. Setting the entry only stores the value; publish() writes every entry that is due, once per loop from
+ * Robot.robotPeriodic(). An entry is due when its period has passed since it was last written and (for numbers) it
+ * has moved more than its epsilon, so a value that doesn't change costs nothing on the network. Keys stay under
+ * SmartDashboard, so existing dashboard layouts keep working.
+ *
+ * Robot thread only.
+ */
+public class TelemetryPublisher {
+    // publish periods, seconds
+    public static final double kEveryLoop = 0.0;
+    public static final double kFast = 0.1;
+    public static final double kSlow = 0.5;
+
+    private static TelemetryPublisher instance;
+
+    private final ArrayList<Entry> mEntries = new ArrayList<>();
+    private final HashMap<String, Entry> mByKey = new HashMap<>();
+    private int mLastPublishCount = 0;
+
+    public static synchronized TelemetryPublisher getInstance() {
+        if (instance == null) {
+            instance = new TelemetryPublisher();
+        }
+        return instance;
+    }
+
+    private TelemetryPublisher() {
+    }
+
+    public NumberEntry addNumber(String key, double periodSeconds, double epsilon) {
+        return register(key, new NumberEntry(SmartDashboard.getEntry(key), periodSeconds, epsilon));
+    }
+
+    public BooleanEntry addBoolean(String key, double periodSeconds) {
+        return register(key, new BooleanEntry(SmartDashboard.getEntry(key), periodSeconds));
+    }
+
+    public StringEntry addString(String key, double periodSeconds) {
+        return register(key, new StringEntry(SmartDashboard.getEntry(key), periodSeconds));
+    }
+
+    /**
+     * The same key registered twice shares one entry, it must be the same type.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Entry> T register(String key, T entry) {
+        Entry existing = mByKey.get(key);
+        if (existing != null) {
+            if (existing.getClass() != entry.getClass()) {
+                throw new IllegalArgumentException("Telemetry key " + key + " already registered as another type");
+            }
+            return (T) existing;
+        }
+        mByKey.put(key, entry);
+        mEntries.add(entry);
+        return entry;
+    }
+
+    /**
+     * Writes every entry that is due. Call once per loop.
+     */
+    public void publish(double timestamp) {
+        int count = 0;
+        for (int i = 0; i < mEntries.size(); i++) {
+            Entry entry = mEntries.get(i);
+            if (entry.mDirty && timestamp - entry.mLastPublished >= entry.mPeriod && entry.publish()) {
+                entry.mLastPublished = timestamp;
+                count++;
+            }
+        }
+        mLastPublishCount = count;
+    }
+
+    /**
+     * @return number of entries written by the last publish()
+     */
+    public int getLastPublishCount() {
+        return mLastPublishCount;
+    }
+
+    public int getEntryCount() {
+        return mEntries.size();
+    }
+
+    private abstract static class Entry {
+        final NetworkTableEntry mEntry;
+        final double mPeriod;
+        double mLastPublished = Double.NEGATIVE_INFINITY;
+        // set since the last write
+        boolean mDirty = false;
+
+        Entry(NetworkTableEntry entry, double period) {
+            mEntry = entry;
+            mPeriod = period;
+        }
+
+        /**
+         * @return false if the value didn't change enough to write
+         */
+        abstract boolean publish();
+    }
+
+    public static class NumberEntry extends Entry {
+        private final double mEpsilon;
+        private double mValue;
+        private double mSent;
+        private boolean mHasSent = false;
+
+        NumberEntry(NetworkTableEntry entry, double period, double epsilon) {
+            super(entry, period);
+            mEpsilon = epsilon;
+        }
+
+        public void set(double value) {
+            mValue = value;
+            mDirty = true;
+        }
+
+        @Override
+        boolean publish() {
+            mDirty = false;
+            if (mHasSent && (Math.abs(mValue - mSent) <= mEpsilon || Double.compare(mValue, mSent) == 0)) {
+                return false;
+            }
+            mEntry.setDouble(mValue);
+            mSent = mValue;
+            mHasSent = true;
+            return true;
+        }
+    }
+
+    public static class BooleanEntry extends Entry {
+        private boolean mValue;
+        private boolean mSent;
+        private boolean mHasSent = false;
+
+        BooleanEntry(NetworkTableEntry entry, double period) {
+            super(entry, period);
+        }
+
+        public void set(boolean value) {
+            mValue = value;
+            mDirty = true;
+        }
+
+        @Override
+        boolean publish() {
+            mDirty = false;
+            if (mHasSent && mValue == mSent) {
+                return false;
+            }
+            mEntry.setBoolean(mValue);
+            mSent = mValue;
+            mHasSent = true;
+            return true;
+        }
+    }
+
+    public static class StringEntry extends Entry {
+        private String mValue;
+        private String mSent;
+
+        StringEntry(NetworkTableEntry entry, double period) {
+            super(entry, period);
+        }
+
+        public void set(String value) {
+            mValue = value;
+            mDirty = true;
+        }
+
+        @Override
+        boolean publish() {
+            mDirty = false;
+            if (mValue == null || mValue.equals(mSent)) {
+                return false;
+            }
+            mEntry.setString(mValue);
+            mSent = mValue;
+            return true;
+        }
+    }
+}
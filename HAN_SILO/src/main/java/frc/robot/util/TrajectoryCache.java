@@ -0,0 +1,161 @@
+package frc.robot.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import edu.wpi.first.wpilibj.Filesystem;
+
+/**
+ * Binary cache of generated auto trajectories in deploy/trajectories.
+ *
+ * Each trajectory is stored in its own file named after a 64-bit FNV-1a hash of everything
+ * that went into generating it (waypoints, direction, heading mode and the drive/auto
+ * constraints, see {@link Key}). Changing any input changes the hash, so a stale file is
+ * simply never looked up again. Files are read with a memory-mapped read.
+ *
+ * Running the robot in simulation writes into src/main/deploy/trajectories, so selecting each
+ * auto mode once in sim and committing the files means the robot never has to generate them.
+ * On the robot, misses are generated and written while disabled.
+ *
+ * Trajectories are stored already resampled ({@link SampledTrajectory}). File layout
+ * (little-endian): int magic, short version, long key, double dt, double total time, int count,
+ * then the x, y, heading (radians), velocity and curvature arrays one after another.
+ */
+public class TrajectoryCache {
+    public static final int kMagic = 0x4A415254; // "TRAJ"
+    public static final short kVersion = 2;
+
+    private static final int kHeaderBytes = 4 + 2 + 8 + 8 + 8 + 4;
+    private static final int kSampleBytes = 5 * 8;
+
+    private static final long kFnvOffset = 0xcbf29ce484222325L;
+    private static final long kFnvPrime = 0x100000001b3L;
+
+    /**
+     * Incremental FNV-1a hash of generation inputs.
+     */
+    public static class Key {
+        private long mHash = kFnvOffset;
+
+        public Key add(long value) {
+            for (int i = 0; i < 8; i++) {
+                mHash ^= (value >>> (i * 8)) & 0xff;
+                mHash *= kFnvPrime;
+            }
+            return this;
+        }
+
+        public Key add(double value) {
+            return add(Double.doubleToLongBits(value));
+        }
+
+        public Key add(double[][] points) {
+            add(points.length);
+            for (double[] point : points) {
+                add(point.length);
+                for (double value : point) {
+                    add(value);
+                }
+            }
+            return this;
+        }
+
+        public long get() {
+            return mHash;
+        }
+    }
+
+    public static File getDirectory() {
+        return new File(Filesystem.getDeployDirectory(), "trajectories");
+    }
+
+    public static File getFile(long key) {
+        return new File(getDirectory(), String.format("%016x.traj", key));
+    }
+
+    /**
+     * @return the cached trajectory, or null if there is no valid file for this key
+     */
+    public static SampledTrajectory load(long key) {
+        File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (in.remaining() < kHeaderBytes || in.getInt() != kMagic || in.getShort() != kVersion
+                    || in.getLong() != key) {
+                System.err.println("TrajectoryCache: ignoring bad cache file " + file);
+                return null;
+            }
+            double dt = in.getDouble();
+            double totalTime = in.getDouble();
+            int count = in.getInt();
+            if (count != SampledTrajectory.sampleCount(dt, totalTime) || in.remaining() < count * kSampleBytes) {
+                System.err.println("TrajectoryCache: ignoring truncated cache file " + file);
+                return null;
+            }
+            double[] x = readArray(in, count);
+            double[] y = readArray(in, count);
+            double[] heading = readArray(in, count);
+            double[] velocity = readArray(in, count);
+            double[] curvature = readArray(in, count);
+            return new SampledTrajectory(dt, totalTime, x, y, heading, velocity, curvature);
+        } catch (IOException e) {
+            System.err.println("TrajectoryCache: could not read " + file + ": " + e);
+            return null;
+        }
+    }
+
+    private static double[] readArray(ByteBuffer in, int count) {
+        double[] values = new double[count];
+        in.asDoubleBuffer().get(values);
+        in.position(in.position() + count * 8);
+        return values;
+    }
+
+    private static void writeArray(ByteBuffer out, double[] values) {
+        out.asDoubleBuffer().put(values);
+        out.position(out.position() + values.length * 8);
+    }
+
+    /**
+     * Writes the trajectory for key. Writes to a temp file first so a half-written file is never
+     * picked up by load().
+     */
+    public static void save(long key, SampledTrajectory trajectory) {
+        int count = trajectory.getSampleCount();
+        ByteBuffer out = ByteBuffer.allocate(kHeaderBytes + count * kSampleBytes).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(kMagic);
+        out.putShort(kVersion);
+        out.putLong(key);
+        out.putDouble(trajectory.getDt());
+        out.putDouble(trajectory.getTotalTimeSeconds());
+        out.putInt(count);
+        writeArray(out, trajectory.getX());
+        writeArray(out, trajectory.getY());
+        writeArray(out, trajectory.getHeading());
+        writeArray(out, trajectory.getVelocity());
+        writeArray(out, trajectory.getCurvature());
+
+        File file = getFile(key);
+        File temp = new File(file.getPath() + ".tmp");
+        try {
+            Files.createDirectories(getDirectory().toPath());
+            Files.write(temp.toPath(), out.array());
+            Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("TrajectoryCache: could not write " + file + ": " + e);
+            temp.delete();
+        }
+    }
+}
@@ -1,23 +1,22 @@
 package frc.robot.util;
 
-import edu.wpi.first.wpilibj.trajectory.Trajectory;
-
 public class Utils {
-    public static void printTrajectory(String name, Trajectory trajectory){
+    public static void printTrajectory(String name, SampledTrajectory trajectory){
         System.out.println("\n" + name + ":");
         double duration = trajectory.getTotalTimeSeconds();
         System.out.println("trajectory duration " +  duration);
+        SampledTrajectory.Sample state = new SampledTrajectory.Sample();
         for(int i=0; i<=(int)duration * 2; i++){
-          Trajectory.State state = trajectory.sample(i/2.0);
-          System.out.println("state " + i + "                 poseMetersX " + state.poseMeters.getTranslation().getX());
-          System.out.println("state " + i + "                 poseMetersY " + state.poseMeters.getTranslation().getY());
-          System.out.println("state " + i + "         poseMetersTheta Deg " + state.poseMeters.getRotation().getDegrees());
+          trajectory.sample(i/2.0, state);
+          System.out.println("state " + i + "                 poseMetersX " + state.x);
+          System.out.println("state " + i + "                 poseMetersY " + state.y);
+          System.out.println("state " + i + "         poseMetersTheta Deg " + Math.toDegrees(state.headingRadians));
           System.out.println("state " + i + "     velocityMetersPerSecond " + state.velocityMetersPerSecond);
         }
-        Trajectory.State state = trajectory.sample(duration);
-        System.out.println("state (end)             poseMetersX " + state.poseMeters.getTranslation().getX());
-        System.out.println("state (end)             poseMetersY " + state.poseMeters.getTranslation().getY());
-        System.out.println("state (end)     poseMetersTheta Deg " + state.poseMeters.getRotation().getDegrees());
+        trajectory.sample(duration, state);
+        System.out.println("state (end)             poseMetersX " + state.x);
+        System.out.println("state (end)             poseMetersY " + state.y);
+        System.out.println("state (end)     poseMetersTheta Deg " + Math.toDegrees(state.headingRadians));
         System.out.println("state (end) velocityMetersPerSecond " + state.velocityMetersPerSecond);
     }
 }
\ No newline at end of file
@@ -1,28 +1,36 @@
 package frc.robot.vision;
 
-import java.util.Iterator;
-import java.util.Map;
-import java.util.TreeMap;
-
 import edu.wpi.first.wpilibj.geometry.Translation2d;
 import frc.robot.Constants.VisionConstants;
-import edu.wpi.first.wpilibj.Timer;
 
 /**
  * A class that is used to keep track of all goals detected by the vision system. As goals are detected/not detected
  * anymore by the vision system, function calls will be made to create, destroy, or update a goal track.
- * 
+ *
  * This helps in the goal ranking process that determines which goal to fire into, and helps to smooth measurements of
  * the goal's location over time.
- * 
+ *
+ * Each track runs a constant-velocity Kalman filter on the goal's field position (x, vx, y, vy). The x and y axes
+ * see the same measurement times and noise, so they share one 2x2 covariance. Observation timestamps are kept in a
+ * fixed-size ring, oldest first, for aging out the track and for its stability. Tracks are pooled and reused by the
+ * GoalTracker.
+ *
  * @see GoalTracker.java
  */
 public class GoalTrack {
-    Map<Double, Translation2d> mObservedPositions = new TreeMap<>();
-    Translation2d mSmoothedPosition = null;
+    private final double[] mTimes = new double[VisionConstants.kGoalTrackCapacity];
+    private int mHead = 0;   // oldest observation
+    private int mCount = 0;
     int mId;
 
-    private GoalTrack() {
+    // filter state at mFilterTime
+    private double mFilterTime;
+    private double mX, mVx;
+    private double mY, mVy;
+    // shared covariance of (position, velocity)
+    private double mPpp, mPpv, mPvv;
+
+    GoalTrack() {
     }
 
     /**
@@ -30,88 +38,150 @@ public class GoalTrack {
      */
     public static GoalTrack makeNewTrack(double timestamp, Translation2d first_observation, int id) {
         GoalTrack rv = new GoalTrack();
-        rv.mObservedPositions.put(timestamp, first_observation);
-        rv.mSmoothedPosition = first_observation;
-        rv.mId = id;
+        rv.start(timestamp, first_observation.getX(), first_observation.getY(), id);
         return rv;
     }
 
-    public void emptyUpdate() {
-        pruneByTime();
+    /**
+     * Restarts a (pooled) track with its first observation.
+     */
+    void start(double timestamp, double x, double y, int id) {
+        mHead = 0;
+        mCount = 0;
+        mId = id;
+        mFilterTime = timestamp;
+        mX = x;
+        mY = y;
+        mVx = 0;
+        mVy = 0;
+        double measurementStdDev = VisionConstants.kGoalTrackMeasurementStdDevMeters;
+        mPpp = measurementStdDev * measurementStdDev;
+        mPpv = 0;
+        mPvv = VisionConstants.kGoalTrackInitialVelocityStdDev * VisionConstants.kGoalTrackInitialVelocityStdDev;
+        addTimestamp(timestamp);
     }
 
     /**
-     * Attempts to update the track with a new observation.
-     * 
-     * @return True if the track was updated
+     * Predicts the filter to the observation's time and corrects it. An observation older than the last one
+     * corrects the current estimate without predicting backwards.
      */
-    public boolean tryUpdate(double timestamp, Translation2d new_observation) {
-        if (!isAlive()) {
-            return false;
+    void addObservation(double timestamp, double x, double y) {
+        double dt = timestamp - mFilterTime;
+        if (dt > 0) {
+            predict(dt);
+            mFilterTime = timestamp;
         }
-        
-        double distance = mSmoothedPosition.unaryMinus().plus(new_observation).getNorm();
-        if (distance < VisionConstants.kMaxTrackerDistance) {
-            mObservedPositions.put(timestamp, new_observation);
-            pruneByTime();
-            return true;
-        } else {
-            emptyUpdate();
-            return false;
+
+        double r = VisionConstants.kGoalTrackMeasurementStdDevMeters * VisionConstants.kGoalTrackMeasurementStdDevMeters;
+        double s = mPpp + r;
+        double kp = mPpp / s;
+        double kv = mPpv / s;
+        double innovationX = x - mX;
+        double innovationY = y - mY;
+        mX += kp * innovationX;
+        mVx += kv * innovationX;
+        mY += kp * innovationY;
+        mVy += kv * innovationY;
+        // P = (I - K H) P
+        double ppv = mPpv;
+        mPvv -= kv * ppv;
+        mPpv -= kp * ppv;
+        mPpp -= kp * mPpp;
+
+        addTimestamp(Math.max(timestamp, getLatestTimestamp()));
+    }
+
+    private void predict(double dt) {
+        // white acceleration noise
+        double q = VisionConstants.kGoalTrackAccelStdDev * VisionConstants.kGoalTrackAccelStdDev;
+        double dt2 = dt * dt;
+        mX += mVx * dt;
+        mY += mVy * dt;
+        mPpp += 2 * dt * mPpv + dt2 * mPvv + q * dt2 * dt2 / 4;
+        mPpv += dt * mPvv + q * dt2 * dt / 2;
+        mPvv += q * dt2;
+    }
+
+    private void addTimestamp(double timestamp) {
+        if (mCount == mTimes.length) {
+            mHead = (mHead + 1) % mTimes.length;
+            mCount--;
         }
+        mTimes[(mHead + mCount) % mTimes.length] = timestamp;
+        mCount++;
     }
 
     public boolean isAlive() {
-        return mObservedPositions.size() > 0;
+        return mCount > 0;
     }
 
     /**
-     * Removes the track if it is older than the set "age" described in the VisionConstants file.
-     * 
-     * @see VisionConstants.java
+     * Drops observations older than deleteBefore. The ring is in time order so this stops at the first one kept.
      */
-    void pruneByTime() {
-        double delete_before = Timer.getFPGATimestamp() - VisionConstants.kMaxGoalTrackAge;
-        for (Iterator<Map.Entry<Double, Translation2d>> it = mObservedPositions.entrySet().iterator(); it.hasNext();) {
-            Map.Entry<Double, Translation2d> entry = it.next();
-            if (entry.getKey() < delete_before) {
-                it.remove();
-            }
-        }
-        if (mObservedPositions.isEmpty()) {
-            mSmoothedPosition = null;
-        } else {
-            smooth();
+    void pruneByTime(double deleteBefore) {
+        while (mCount > 0 && mTimes[mHead] < deleteBefore) {
+            mHead = (mHead + 1) % mTimes.length;
+            mCount--;
         }
     }
 
     /**
-     * Averages out the observed positions based on an set of observed positions
+     * @return filtered x as of the latest observation
      */
-    void smooth() {
-        if (isAlive()) {
-            double x = 0;
-            double y = 0;
-            for (Map.Entry<Double, Translation2d> entry : mObservedPositions.entrySet()) {
-                x += entry.getValue().getX();
-                y += entry.getValue().getY();
-            }
-            x /= mObservedPositions.size();
-            y /= mObservedPositions.size();
-            mSmoothedPosition = new Translation2d(x, y);
-        }
+    public double getSmoothedX() {
+        return mX;
+    }
+
+    public double getSmoothedY() {
+        return mY;
+    }
+
+    /**
+     * Filtered position extrapolated with the filtered velocity, e.g. to when a shot will leave.
+     */
+    public double getPredictedX(double timestamp) {
+        return mX + mVx * (timestamp - mFilterTime);
+    }
+
+    public double getPredictedY(double timestamp) {
+        return mY + mVy * (timestamp - mFilterTime);
+    }
+
+    public double getVelocityX() {
+        return mVx;
     }
 
+    public double getVelocityY() {
+        return mVy;
+    }
+
+    /**
+     * @return time the filter state is at
+     */
+    public double getFilterTimestamp() {
+        return mFilterTime;
+    }
+
+    /**
+     * @return one sigma of the filtered position on each axis
+     */
+    public double getPositionStdDev() {
+        return Math.sqrt(mPpp);
+    }
+
+    /**
+     * Allocates, prefer getSmoothedX()/getSmoothedY() in the loop.
+     */
     public Translation2d getSmoothedPosition() {
-        return mSmoothedPosition;
+        return mCount > 0 ? new Translation2d(mX, mY) : null;
     }
 
     public double getLatestTimestamp() {
-        return mObservedPositions.keySet().stream().max(Double::compareTo).orElse(0.0);
+        return mCount > 0 ? mTimes[(mHead + mCount - 1) % mTimes.length] : 0.0;
     }
 
     public double getStability() {
-        return Math.min(1.0, mObservedPositions.size() / (VisionConstants.kCameraFrameRate * VisionConstants.kMaxGoalTrackAge));
+        return Math.min(1.0, mCount / (VisionConstants.kCameraFrameRate * VisionConstants.kMaxGoalTrackAge));
     }
 
     public int getId() {
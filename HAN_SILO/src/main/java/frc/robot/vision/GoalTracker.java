@@ -2,9 +2,9 @@ package frc.robot.vision;
 
 import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 
+import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.geometry.Translation2d;
 import frc.robot.Constants.VisionConstants;
 
@@ -20,8 +20,14 @@ public class GoalTracker {
      * Track reports contain all of the relevant information about a given goal track.
      */
     public static class TrackReport {
-        // Translation from the field frame to the goal
-        public Translation2d field_to_goal;
+        // Translation from the field frame to the goal (filtered)
+        public double field_to_goal_x;
+        public double field_to_goal_y;
+
+        // Filtered goal velocity in the field frame and the time the filter is at
+        public double field_to_goal_vx;
+        public double field_to_goal_vy;
+        public double filter_timestamp;
 
         // The timestamp of the latest time that the goal has been observed
         public double latest_timestamp;
@@ -33,15 +39,43 @@ public class GoalTracker {
         // The track id
         public int id;
 
+        public TrackReport() {
+        }
+
         public TrackReport(GoalTrack track) {
-            this.field_to_goal = track.getSmoothedPosition();
+            set(track);
+        }
+
+        void set(GoalTrack track) {
+            this.field_to_goal_x = track.getSmoothedX();
+            this.field_to_goal_y = track.getSmoothedY();
+            this.field_to_goal_vx = track.getVelocityX();
+            this.field_to_goal_vy = track.getVelocityY();
+            this.filter_timestamp = track.getFilterTimestamp();
             this.latest_timestamp = track.getLatestTimestamp();
             this.stability = track.getStability();
             this.id = track.getId();
         }
+
+        public double getPredictedX(double timestamp) {
+            return field_to_goal_x + field_to_goal_vx * (timestamp - filter_timestamp);
+        }
+
+        public double getPredictedY(double timestamp) {
+            return field_to_goal_y + field_to_goal_vy * (timestamp - filter_timestamp);
+        }
+
+        /**
+         * Allocates, prefer the x/y fields in the loop.
+         */
+        public Translation2d getFieldToGoal() {
+            return new Translation2d(field_to_goal_x, field_to_goal_y);
+        }
     }
 
     /**
+     * Prefer GoalTracker.getBestTracks(), which scores each track once instead of once per comparison.
+     *
      * TrackReportComparators are used in the case that multiple tracks are active (e.g. we see or have recently seen
      * multiple goals). They contain heuristics used to pick which track we should aim at by calculating a score for
      * each track (highest score wins).
@@ -67,12 +101,8 @@ public class GoalTracker {
         }
 
         double score(TrackReport report) {
-            double stability_score = mStabilityWeight * report.stability;
-            double age_score = mAgeWeight
-                    * Math.max(0, (VisionConstants.kMaxGoalTrackAge - (mCurrentTimestamp - report.latest_timestamp))
-                            / VisionConstants.kMaxGoalTrackAge);
-            double switching_score = (report.id == mLastTrackId ? mSwitchingWeight : 0);
-            return stability_score + age_score + switching_score;
+            return WeightedTrackScorer.score(report, mStabilityWeight, mAgeWeight, mSwitchingWeight, mLastTrackId,
+                    mCurrentTimestamp);
         }
 
         @Override
@@ -89,55 +119,228 @@ public class GoalTracker {
         }
     }
 
-    List<GoalTrack> mCurrentTracks = new ArrayList<>();
+    // pool of tracks, the first mTrackCount entries of mTracks are alive
+    private final GoalTrack[] mTracks = new GoalTrack[VisionConstants.kMaxGoalTracks];
+    private int mTrackCount = 0;
     int mNextId = 0;
 
+    // association scratch: candidate (track, detection) pairs within kMaxTrackerDistance
+    private static final int kMaxPairs = VisionConstants.kMaxGoalTracks * VisionConstants.kMaxDetectionsPerUpdate;
+    private final int[] mPairTrack = new int[kMaxPairs];
+    private final int[] mPairDetection = new int[kMaxPairs];
+    private final double[] mPairDistance = new double[kMaxPairs];
+    private final boolean[] mTrackMatched = new boolean[VisionConstants.kMaxGoalTracks];
+    private final boolean[] mDetectionMatched = new boolean[VisionConstants.kMaxDetectionsPerUpdate];
+    private final double[] mDetectionX = new double[VisionConstants.kMaxDetectionsPerUpdate];
+    private final double[] mDetectionY = new double[VisionConstants.kMaxDetectionsPerUpdate];
+    private long mDroppedDetections = 0;
+
+    // reports handed out by getTracks(), reused
+    private final TrackReport[] mReports = new TrackReport[VisionConstants.kMaxGoalTracks];
+    private final List<TrackReport> mReportList = new ArrayList<>(VisionConstants.kMaxGoalTracks);
+
+    // ranking, see getBestTracks()
+    private TrackScorer mScorer;
+    private final double[] mScores = new double[VisionConstants.kMaxGoalTracks];
+    private final int[] mOrder = new int[VisionConstants.kMaxGoalTracks];
+    private final List<TrackReport> mRankedList = new ArrayList<>(VisionConstants.kMaxGoalTracks);
+    private int mLastTrackId = -1;
+
     public GoalTracker() {
+        this(new WeightedTrackScorer());
+    }
+
+    public GoalTracker(TrackScorer scorer) {
+        mScorer = scorer;
+        for (int i = 0; i < mTracks.length; i++) {
+            mTracks[i] = new GoalTrack();
+            mReports[i] = new TrackReport();
+        }
+    }
+
+    public void setScorer(TrackScorer scorer) {
+        mScorer = scorer;
     }
 
     public void reset() {
-        mCurrentTracks.clear();
+        mTrackCount = 0;
+        mLastTrackId = -1;
     }
 
     public void update(double timestamp, List<Translation2d> field_to_goals) {
-        // Try to update existing tracks
-        for (Translation2d target : field_to_goals) {
-            boolean hasUpdatedTrack = false;
-            for (GoalTrack track : mCurrentTracks) {
-                if (!hasUpdatedTrack) {
-                    if (track.tryUpdate(timestamp, target)) {
-                        hasUpdatedTrack = true;
+        int count = Math.min(field_to_goals.size(), VisionConstants.kMaxDetectionsPerUpdate);
+        mDroppedDetections += field_to_goals.size() - count;
+        for (int i = 0; i < count; i++) {
+            Translation2d target = field_to_goals.get(i);
+            mDetectionX[i] = target.getX();
+            mDetectionY[i] = target.getY();
+        }
+        updateDetections(timestamp, count);
+    }
+
+    /**
+     * Updates the tracks with detections given as field x/y arrays, without allocating.
+     * Detections past kMaxDetectionsPerUpdate are dropped so the cost per loop is bounded.
+     */
+    public void update(double timestamp, double[] field_to_goal_x, double[] field_to_goal_y, int count) {
+        int used = Math.min(count, VisionConstants.kMaxDetectionsPerUpdate);
+        mDroppedDetections += count - used;
+        System.arraycopy(field_to_goal_x, 0, mDetectionX, 0, used);
+        System.arraycopy(field_to_goal_y, 0, mDetectionY, 0, used);
+        updateDetections(timestamp, used);
+    }
+
+    private void updateDetections(double timestamp, int detectionCount) {
+        // Prune first so detections aren't associated with observations about to expire
+        pruneTracks(Timer.getFPGATimestamp());
+
+        // Greedy nearest association: all pairs within the gate, closest first, each track and
+        // detection used at most once
+        int pairs = 0;
+        for (int t = 0; t < mTrackCount; t++) {
+            mTrackMatched[t] = false;
+            // compare against where the filter expects the goal at this frame's capture time
+            double trackX = mTracks[t].getPredictedX(timestamp);
+            double trackY = mTracks[t].getPredictedY(timestamp);
+            for (int d = 0; d < detectionCount; d++) {
+                double distance = Math.hypot(mDetectionX[d] - trackX, mDetectionY[d] - trackY);
+                if (distance < VisionConstants.kMaxTrackerDistance) {
+                    // insertion sort by distance, at most kMaxPairs entries
+                    int k = pairs++;
+                    while (k > 0 && mPairDistance[k - 1] > distance) {
+                        mPairDistance[k] = mPairDistance[k - 1];
+                        mPairTrack[k] = mPairTrack[k - 1];
+                        mPairDetection[k] = mPairDetection[k - 1];
+                        k--;
                     }
-                } else {
-                    track.emptyUpdate();
+                    mPairDistance[k] = distance;
+                    mPairTrack[k] = t;
+                    mPairDetection[k] = d;
                 }
             }
         }
-        // Prune any tracks that have died
-        for (Iterator<GoalTrack> it = mCurrentTracks.iterator(); it.hasNext();) {
-            GoalTrack track = it.next();
-            if (!track.isAlive()) {
-                it.remove();
+        for (int d = 0; d < detectionCount; d++) {
+            mDetectionMatched[d] = false;
+        }
+        for (int p = 0; p < pairs; p++) {
+            int t = mPairTrack[p];
+            int d = mPairDetection[p];
+            if (!mTrackMatched[t] && !mDetectionMatched[d]) {
+                mTrackMatched[t] = true;
+                mDetectionMatched[d] = true;
+                mTracks[t].addObservation(timestamp, mDetectionX[d], mDetectionY[d]);
             }
         }
-        // If all tracks are dead, start new tracks for any detections
-        if (mCurrentTracks.isEmpty()) {
-            for (Translation2d target : field_to_goals) {
-                mCurrentTracks.add(GoalTrack.makeNewTrack(timestamp, target, mNextId));
-                ++mNextId;
+
+        // Start new tracks for detections nothing claimed, as long as the pool has room
+        for (int d = 0; d < detectionCount && mTrackCount < mTracks.length; d++) {
+            if (!mDetectionMatched[d]) {
+                mTracks[mTrackCount++].start(timestamp, mDetectionX[d], mDetectionY[d], mNextId++);
             }
         }
     }
 
+    /**
+     * Drops observations older than kMaxGoalTrackAge before now, and tracks left with none. Call every loop, not
+     * just when a frame comes in, so a camera that stops sending can't leave a track behind to be extrapolated.
+     *
+     * Once per loop, this is also where the best track becomes the "last track" the scorer rewards for not switching.
+     * Call it after the loop's update() so the choice includes this loop's frames.
+     */
+    public void prune(double now) {
+        pruneTracks(now);
+        TrackReport best = getBestTrack(now);
+        mLastTrackId = best == null ? -1 : best.id;
+    }
+
+    private void pruneTracks(double now) {
+        double deleteBefore = now - VisionConstants.kMaxGoalTrackAge;
+        for (int i = 0; i < mTrackCount; i++) {
+            mTracks[i].pruneByTime(deleteBefore);
+        }
+        removeDeadTracks();
+    }
+
+    private void removeDeadTracks() {
+        int alive = 0;
+        for (int i = 0; i < mTrackCount; i++) {
+            if (mTracks[i].isAlive()) {
+                if (i != alive) {
+                    // keep the dead track object in the pool past the live ones
+                    GoalTrack track = mTracks[alive];
+                    mTracks[alive] = mTracks[i];
+                    mTracks[i] = track;
+                }
+                alive++;
+            }
+        }
+        mTrackCount = alive;
+    }
+
     public boolean hasTracks() {
-        return !mCurrentTracks.isEmpty();
+        return mTrackCount > 0;
+    }
+
+    public int getTrackCount() {
+        return mTrackCount;
+    }
+
+    /**
+     * @return detections thrown away for being over kMaxDetectionsPerUpdate
+     */
+    public long getDroppedDetections() {
+        return mDroppedDetections;
     }
 
+    /**
+     * The k best tracks, best first. Each track is scored once into a primitive array and only the top k are
+     * selected (O(n * k)), no full sort. Doesn't change the tracker, so any number of queries in a loop agree.
+     *
+     * The returned list and reports are reused, they are only valid until the next call to getTracks() or
+     * getBestTracks().
+     */
+    public List<TrackReport> getBestTracks(double timestamp, int k) {
+        mRankedList.clear();
+        int n = mTrackCount;
+        mScorer.begin(timestamp, mLastTrackId);
+        for (int i = 0; i < n; i++) {
+            mReports[i].set(mTracks[i]);
+            mScores[i] = mScorer.score(mReports[i]);
+            mOrder[i] = i;
+        }
+        int top = Math.min(k, n);
+        for (int i = 0; i < top; i++) {
+            int best = i;
+            for (int j = i + 1; j < n; j++) {
+                if (mScores[mOrder[j]] > mScores[mOrder[best]]) {
+                    best = j;
+                }
+            }
+            int swap = mOrder[i];
+            mOrder[i] = mOrder[best];
+            mOrder[best] = swap;
+            mRankedList.add(mReports[mOrder[i]]);
+        }
+        return mRankedList;
+    }
+
+    /**
+     * @return the best track, or null if there are none. Reused like getBestTracks().
+     */
+    public TrackReport getBestTrack(double timestamp) {
+        List<TrackReport> best = getBestTracks(timestamp, 1);
+        return best.isEmpty() ? null : best.get(0);
+    }
+
+    /**
+     * Unranked. The returned list and reports are reused, they are only valid until the next call.
+     */
     public List<TrackReport> getTracks() {
-        List<TrackReport> rv = new ArrayList<>();
-        for (GoalTrack track : mCurrentTracks) {
-            rv.add(new TrackReport(track));
+        mReportList.clear();
+        for (int i = 0; i < mTrackCount; i++) {
+            mReports[i].set(mTracks[i]);
+            mReportList.add(mReports[i]);
         }
-        return rv;
+        return mReportList;
     }
 }
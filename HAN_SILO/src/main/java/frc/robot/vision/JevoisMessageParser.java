@@ -0,0 +1,244 @@
+package frc.robot.vision;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental parser for the JeVois target stream, one JSON object per line:
+ *
+ * {"DeltaTime":"0.035","Y":"0.12","Z":"3.50"}
+ *
+ * Bytes are fed in as they come off the serial port, so a line split across two reads is
+ * completed by the second one. Lines are collected in a reusable ByteBuffer and the three
+ * numbers are read straight out of the bytes, no Strings, maps or boxed values. Values may
+ * be quoted or bare. Lines without all three fields (e.g. JeVois command replies) and
+ * targets at Y == 0 && Z == 0 (nothing seen) are skipped, as before.
+ *
+ * Not thread safe, owned by the serial reader thread.
+ */
+public class JevoisMessageParser {
+    /**
+     * Receives each target as its line completes.
+     */
+    public interface TargetListener {
+        void onTarget(double deltaTime, double y, double z);
+    }
+
+    // longer than any real target line, anything longer is junk and is dropped
+    public static final int kMaxLineLength = 256;
+
+    private static final byte[] kDeltaTimeKey = {'D', 'e', 'l', 't', 'a', 'T', 'i', 'm', 'e'};
+    private static final byte[] kYKey = {'Y'};
+    private static final byte[] kZKey = {'Z'};
+
+    private static final double[] kPowersOfTen = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final ByteBuffer mLine = ByteBuffer.allocate(kMaxLineLength);
+    private boolean mOverflowed = false;
+    private long mDroppedLines = 0;
+
+    // parse position and result of parseNumber(), kept in fields so parsing doesn't allocate
+    private int mPos;
+    private boolean mQuotedValue;
+    private double mNumber;
+
+    /**
+     * Feeds bytes from the port. Calls the listener for every complete, valid target line.
+     *
+     * @return number of targets found in this call
+     */
+    public int parse(byte[] data, int length, TargetListener listener) {
+        int targets = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                if (!mOverflowed && parseLine(listener)) {
+                    targets++;
+                }
+                mLine.clear();
+                mOverflowed = false;
+            } else if (b != '\r') {
+                if (mLine.hasRemaining()) {
+                    mLine.put(b);
+                } else if (!mOverflowed) {
+                    mOverflowed = true;
+                    mDroppedLines++;
+                }
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * Forgets any partial line, e.g. after reconnecting to the camera.
+     */
+    public void reset() {
+        mLine.clear();
+        mOverflowed = false;
+    }
+
+    /**
+     * @return lines thrown away for being longer than kMaxLineLength
+     */
+    public long getDroppedLines() {
+        return mDroppedLines;
+    }
+
+    private boolean parseLine(TargetListener listener) {
+        byte[] line = mLine.array();
+        int end = mLine.position();
+        boolean hasDeltaTime = false;
+        boolean hasY = false;
+        boolean hasZ = false;
+        double deltaTime = 0;
+        double y = 0;
+        double z = 0;
+
+        mPos = 0;
+        while (mPos < end) {
+            if (line[mPos] != '"') {
+                mPos++;
+                continue;
+            }
+            // a quoted key, find where it ends
+            int keyStart = ++mPos;
+            while (mPos < end && line[mPos] != '"') {
+                mPos++;
+            }
+            int keyEnd = mPos++;
+            if (!skipToValue(line, end)) {
+                continue;
+            }
+            if (keyEquals(line, keyStart, keyEnd, kDeltaTimeKey) && parseNumber(line, end)) {
+                deltaTime = mNumber;
+                hasDeltaTime = true;
+            } else if (keyEquals(line, keyStart, keyEnd, kYKey) && parseNumber(line, end)) {
+                y = mNumber;
+                hasY = true;
+            } else if (keyEquals(line, keyStart, keyEnd, kZKey) && parseNumber(line, end)) {
+                z = mNumber;
+                hasZ = true;
+            }
+            if (mQuotedValue) {
+                // skip the rest of a quoted value and its closing quote
+                while (mPos < end && line[mPos] != '"') {
+                    mPos++;
+                }
+                mPos++;
+            }
+        }
+
+        if (!hasDeltaTime || !hasY || !hasZ || (y == 0.0 && z == 0.0)) {
+            return false;
+        }
+        listener.onTarget(deltaTime, y, z);
+        return true;
+    }
+
+    /**
+     * Skips whitespace, the ':' and an opening quote after a key. Leaves mPos on the value
+     * and sets mQuotedValue.
+     *
+     * @return false if the quoted string was not a key
+     */
+    private boolean skipToValue(byte[] line, int end) {
+        while (mPos < end && line[mPos] == ' ') {
+            mPos++;
+        }
+        if (mPos >= end || line[mPos] != ':') {
+            return false;
+        }
+        mPos++;
+        while (mPos < end && line[mPos] == ' ') {
+            mPos++;
+        }
+        mQuotedValue = mPos < end && line[mPos] == '"';
+        if (mQuotedValue) {
+            mPos++;
+        }
+        return true;
+    }
+
+    private static boolean keyEquals(byte[] line, int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (line[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal number like -12.5e-3 at mPos into mNumber. Leaves mPos after it.
+     */
+    private boolean parseNumber(byte[] line, int end) {
+        boolean negative = false;
+        if (mPos < end && (line[mPos] == '-' || line[mPos] == '+')) {
+            negative = line[mPos] == '-';
+            mPos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean any = false;
+        while (mPos < end && line[mPos] >= '0' && line[mPos] <= '9') {
+            if (digits < 18) {
+                mantissa = mantissa * 10 + (line[mPos] - '0');
+                if (mantissa != 0) {
+                    digits++;
+                }
+            } else {
+                exponent++;
+            }
+            any = true;
+            mPos++;
+        }
+        if (mPos < end && line[mPos] == '.') {
+            mPos++;
+            while (mPos < end && line[mPos] >= '0' && line[mPos] <= '9') {
+                if (digits < 18) {
+                    mantissa = mantissa * 10 + (line[mPos] - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    exponent--;
+                }
+                any = true;
+                mPos++;
+            }
+        }
+        if (!any) {
+            return false;
+        }
+        if (mPos < end && (line[mPos] == 'e' || line[mPos] == 'E')) {
+            mPos++;
+            boolean negativeExponent = false;
+            if (mPos < end && (line[mPos] == '-' || line[mPos] == '+')) {
+                negativeExponent = line[mPos] == '-';
+                mPos++;
+            }
+            int e = 0;
+            while (mPos < end && line[mPos] >= '0' && line[mPos] <= '9') {
+                if (e < 1000) {
+                    e = e * 10 + (line[mPos] - '0');
+                }
+                mPos++;
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+
+        double value = mantissa;
+        if (exponent < 0) {
+            value = -exponent < kPowersOfTen.length ? value / kPowersOfTen[-exponent] : value * Math.pow(10, exponent);
+        } else if (exponent > 0) {
+            value = exponent < kPowersOfTen.length ? value * kPowersOfTen[exponent] : value * Math.pow(10, exponent);
+        }
+        mNumber = negative ? -value : value;
+        return true;
+    }
+}
@@ -1,11 +1,8 @@
 package frc.robot.vision;
 
-import java.util.ArrayList;
 import edu.wpi.first.wpilibj.SerialPort;
-import org.json.simple.parser.JSONParser;
 import frc.robot.Constants.VisionConstants;
 import frc.robot.subsystems.JevoisVisionSubsystem;
-import org.json.simple.JSONObject;
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 
@@ -21,6 +18,9 @@ import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
  */
 
 public class JevoisVisionServer {
+    // this thread can't use TelemetryPublisher, status changes go out at most this often
+    private static final double kDashboardPeriodSeconds = 0.5;
+
     double lastMessageReceivedTime = 0;
     private boolean m_use_java_time = false;
     private SerialPort visionCam;
@@ -45,10 +45,15 @@ public class JevoisVisionServer {
         return visionCam;
     }
 
-    private class VisionServerThread implements Runnable {
+    private class VisionServerThread implements Runnable, JevoisMessageParser.TargetListener {
         int dashboardCounter = 0;
         String lastDashboardMessage = "";
+        boolean lastDashboardConnected = false;
+        double nextDashboardTime = 0;
         boolean attemptingConnection = false;
+        private final JevoisMessageParser parser = new JevoisMessageParser();
+        // targets from the current read go straight into the subsystem's next update buffer
+        private JevoisVisionUpdate update;
 
         private VisionServerThread() {
             isConnected = attemptJevoisConnection();
@@ -61,9 +66,15 @@ public class JevoisVisionServer {
                 if(isConnected){
                     try{
                         dashboardMessage = "visionCamAvailable == true. Handling message";
-                        String visionTargetPositions_Raw = visionCam.readString();
-                        //int visionLength = visionTargetPositions_Raw.length();
-                        handleMessage(visionTargetPositions_Raw, getTimestamp());
+                        if(VisionConstants.kJevoisBlockingReads){
+                            readBlocking();
+                        } else {
+                            int available = visionCam.getBytesReceived();
+                            if(available > 0){
+                                byte[] data = visionCam.read(available);
+                                handleMessage(data, data.length, getTimestamp());
+                            }
+                        }
                     } catch(Exception e){
                         //Camera may not have sent anything or become disconnected
                         dashboardMessage = "isConnected, but error thrown on handle";
@@ -75,84 +86,89 @@ public class JevoisVisionServer {
                         attemptJevoisConnection();
                     }
                 }
-                if(lastDashboardMessage != dashboardMessage){
-                    if(System.currentTimeMillis() % 100 == 0){
-                        SmartDashboard.putString("JevoisVisionServerOutput", dashboardMessage);
-                    }
-                }
-                lastDashboardMessage = dashboardMessage;
+                publishStatus(dashboardMessage);
                 try{
-                    SmartDashboard.putBoolean("isJevoisConnected", isConnected);
-                    Thread.sleep(20);
+                    // blocking reads wait in read() instead, unless there's no camera to wait on
+                    if(!VisionConstants.kJevoisBlockingReads || !isConnected){
+                        Thread.sleep(20);
+                    }
                 }
                 catch(Exception e){
                 }
            }
         }
 
-        private boolean SafeToParse(String message) {
-            if (message.length() > 1) {
-                return message.charAt(0) == '{' && message.charAt(message.length() - 3) == '}'
-                        && message.contains("{\"DeltaTime\"") && message.contains("\"Y\"") && message.contains("\"Z\"");
-            } else {
-                return false;
+        /**
+         * Sends the status when it changed, at most every kDashboardPeriodSeconds. A change in between goes out
+         * when the period is up.
+         */
+        private void publishStatus(String dashboardMessage) {
+            if(dashboardMessage.equals(lastDashboardMessage) && isConnected == lastDashboardConnected){
+                return;
             }
+            double now = Timer.getFPGATimestamp();
+            if(now < nextDashboardTime){
+                return;
+            }
+            SmartDashboard.putString("JevoisVisionServerOutput", dashboardMessage);
+            SmartDashboard.putBoolean("isJevoisConnected", isConnected);
+            lastDashboardMessage = dashboardMessage;
+            lastDashboardConnected = isConnected;
+            nextDashboardTime = now + kDashboardPeriodSeconds;
         }
 
-        public void handleMessage(String message, double timestamp) {
-            // m_VisionSubsystem.ringLightOn();
-            dashboardCounter++;
-            String visionTargetPositions_Raw = message; // message should be the raw visionCam.readString()
-            if (message == null || message.length() <= 0) {
+        @Override
+        public void onTarget(double deltaTime, double y, double z) {
+            visionCamDeltaTime = deltaTime;
+            visionCamYPosition = y;
+            visionCamZPosition = z;
+            update.addTarget(y, z);
+        }
+
+        /**
+         * Waits in read() until a full line arrives (termination is '\n') or the timeout runs
+         * out, so a target is passed on as soon as it is received instead of on the next poll.
+         */
+        private void readBlocking() {
+            byte[] data = visionCam.read(JevoisMessageParser.kMaxLineLength);
+            double receivedTimestamp = Timer.getFPGATimestamp();
+            if (data.length == 0) {
                 return;
             }
-            // System.out.println(visionTargetPositions_Raw);
-            /*
-             * if(!SafeToParse(visionTargetPositions_Raw)){ return; }
-             */
-            if (dashboardCounter >= 10) {
-                SmartDashboard.putString("Vis_TargetString",
-                visionTargetPositions_Raw);
+            dashboardCounter++;
+            update = visionSubsystem.getUpdateBuffer();
+            update.clear();
+            parser.parse(data, data.length, this);
+            // the rest of a multi-target frame may already be here, keep it in the same update
+            int available = visionCam.getBytesReceived();
+            if (available > 0) {
+                byte[] more = visionCam.read(available);
+                parser.parse(more, more.length, this);
             }
+            publishTargets(receivedTimestamp);
+        }
 
-            String[] visionTargetLines = visionTargetPositions_Raw.split("\n");
-            ArrayList<TargetInfo> targetInfoArray = new ArrayList<>();
-            for (int i = visionTargetLines.length - 1; i >= 0; i--) {
-                boolean isValid = false;
-                String thisTargetLine = visionTargetLines[i];
-                try {
-                    // if(SafeToParse(thisTargetLine, true)){
-                    JSONParser parser = new JSONParser();
-                    JSONObject j = (JSONObject) parser.parse(thisTargetLine);
-                    visionCamDeltaTime = Double.parseDouble((String) j.get("DeltaTime"));
-                    visionCamYPosition = Double.parseDouble((String) j.get("Y"));
-                    visionCamZPosition = Double.parseDouble((String) j.get("Z"));
-                    if (visionCamYPosition == 0.0 && visionCamZPosition == 0.0) {
-                        isValid = false;
-                    } else {
-                        isValid = true;
-                    }
-                    // }
-                } catch (Exception e) {
-                    // System.err.println("Parse error: "+e.toString());
-                }
-                if (isValid) {
-                    TargetInfo targetInfo = new TargetInfo(visionCamYPosition, visionCamZPosition);
-                    targetInfoArray.add(targetInfo);
-                    SmartDashboard.putString("Vis_TargetProcessed", thisTargetLine);
-                }
-            }
-            // System.out.println("TargetInfoArray.size(): "+targetInfoArray.size());
-            if (targetInfoArray.size() > 0) {
-                if (dashboardCounter >= 10) {
-                    //SmartDashboard.putString("JevoisVisionServerUpdate", "Sent: "+sentTimes);
-                }
-                visionSubsystem.gotUpdate(
-                        new JevoisVisionUpdate(Timer.getFPGATimestamp() - visionCamDeltaTime, targetInfoArray));
+        public void handleMessage(byte[] data, int length, double timestamp) {
+            // m_VisionSubsystem.ringLightOn();
+            dashboardCounter++;
+            update = visionSubsystem.getUpdateBuffer();
+            update.clear();
+            parser.parse(data, length, this);
+            publishTargets(timestamp);
+        }
+
+        private void publishTargets(double receivedTimestamp) {
+            int targetCount = update.getTargets().size();
+            if (targetCount > 0) {
+                update.setTimestamps(receivedTimestamp - visionCamDeltaTime, receivedTimestamp,
+                        Timer.getFPGATimestamp());
+                visionSubsystem.publishUpdate();
 
                 // mRobotState.addVisionUpdate(Timer.getFPGATimestamp()-visionCamDeltaTime, targetInfoArray);
             }
             if (dashboardCounter >= 10) {
+                SmartDashboard.putNumber("Vis_TargetCount", targetCount);
+                SmartDashboard.putNumber("Vis_DroppedLines", parser.getDroppedLines());
                 dashboardCounter = 0;
             }
         }
@@ -167,8 +183,14 @@ public class JevoisVisionServer {
                     System.out.println("Connecting to JeVois...");
                     visionCam = new SerialPort(VisionConstants.kCameraBaudRate, SerialPort.Port.kUSB1);
                     if(visionCam != null){
-                        visionCam.setTimeout(5);
+                        if(VisionConstants.kJevoisBlockingReads){
+                            visionCam.enableTermination('\n');
+                            visionCam.setTimeout(VisionConstants.kJevoisReadTimeoutSeconds);
+                        } else {
+                            visionCam.setTimeout(5);
+                        }
                         connected = true;
+                        parser.reset();
                         System.out.println(">>>CONNECTED TO JEVOIS<<<");
                     }
                     else{
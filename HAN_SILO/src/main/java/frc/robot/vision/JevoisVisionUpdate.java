@@ -1,23 +1,66 @@
 package frc.robot.vision;
 
 
+import java.util.ArrayList;
 import java.util.List;
 
 
 /**
  * VisionUpdate contains the various attributes outputted by the vision system, namely a list of targets and the
  * timestamp at which it was captured.
+ *
+ * Updates are reused by the vision thread (see JevoisVisionSubsystem), so the targets come from a fixed pool.
  */
 public class JevoisVisionUpdate {
+    public static final int kMaxTargets = 16;
 
     protected List<TargetInfo> mtargets;
     protected double mCapturedAtTimestamp = 0;
+    // when the serial read returned and when the update was handed to the subsystem, for latency stats
+    protected double mReceivedAtTimestamp = 0;
+    protected double mPostedAtTimestamp = 0;
+    private final TargetInfo[] mTargetPool;
 
     public JevoisVisionUpdate(double capturedAtTimestamp, List<TargetInfo> targets) {
         mtargets = targets;
         mCapturedAtTimestamp = capturedAtTimestamp;
+        mTargetPool = null;
+    }
+
+    /**
+     * An empty update to be filled with clear() and addTarget().
+     */
+    public JevoisVisionUpdate() {
+        mtargets = new ArrayList<>(kMaxTargets);
+        mTargetPool = new TargetInfo[kMaxTargets];
+        for (int i = 0; i < kMaxTargets; i++) {
+            mTargetPool[i] = new TargetInfo(0, 0);
+        }
+    }
 
+    void clear() {
+        mtargets.clear();
     }
+
+    /**
+     * @return false if the update is full and the target was dropped
+     */
+    boolean addTarget(double y, double z) {
+        int index = mtargets.size();
+        if (mTargetPool == null || index >= kMaxTargets) {
+            return false;
+        }
+        mTargetPool[index].set(y, z);
+        mtargets.add(mTargetPool[index]);
+        return true;
+    }
+
+    void setTimestamps(double capturedAtTimestamp, double receivedAtTimestamp, double postedAtTimestamp) {
+        mCapturedAtTimestamp = capturedAtTimestamp;
+        mReceivedAtTimestamp = receivedAtTimestamp;
+        mPostedAtTimestamp = postedAtTimestamp;
+    }
+
     public List<TargetInfo> getTargets() {
         return mtargets;
     }
@@ -28,4 +71,12 @@ public class JevoisVisionUpdate {
         return mCapturedAtTimestamp;
     }
 
+    public double getReceivedAtTimestamp() {
+        return mReceivedAtTimestamp;
+    }
+
+    public double getPostedAtTimestamp() {
+        return mPostedAtTimestamp;
+    }
+
 }
@@ -1,18 +1,35 @@
 package frc.robot.vision;
 
+/**
+ * One Limelight frame. Immutable, so it can be handed from the Limelight polling thread to the robot loop as is.
+ */
 public class LimeTargetInfo {
 
-    private double x = 1.0;
-    private double y;
-    private double z;
-    private double timestamp;
+    private final double x = 1.0;
+    private final boolean hasTarget;
+    private final double y;
+    private final double z;
+    private final double timestamp;
 
     public LimeTargetInfo(double y, double z, double timestamp){
+        this(true, y, z, timestamp);
+    }
+
+    public LimeTargetInfo(boolean hasTarget, double y, double z, double timestamp){
+        this.hasTarget = hasTarget;
         this.y = y;
         this.z = z;
         this.timestamp = timestamp;
     }
 
+    /**
+     * Whether the Limelight saw a target (tv) in this frame. If not, Y and Z mean nothing.
+     * @return
+     */
+    public boolean hasTarget(){
+        return hasTarget;
+    }
+
     /**
      * Returns the X of the target in robot coordinates (Z in target coordinates).
      * This is locked at 1.
@@ -39,11 +56,11 @@ public class LimeTargetInfo {
     }
 
     /**
-     * Returns the timestamp when this data was captured
+     * Returns the timestamp when this data was captured, corrected for the pipeline and capture latency
      * @return
      */
     public double getTimeCaptured(){
         return timestamp;
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,64 @@
+package frc.robot.vision;
+
+/**
+ * Output of the ShotSolver, reused from loop to loop.
+ *
+ * The aim point is where to point the shooter in field coordinates: the goal moved by the time of flight, against
+ * the velocity the ball picks up from the robot. Range and setpoints are for the aim point, not the goal.
+ */
+public class ShotSolution {
+    double aim_x;
+    double aim_y;
+    double range;
+    double bearing;
+    double rpm;
+    boolean hood_extended;
+    double time_of_flight;
+    boolean converged;
+    boolean in_range;
+
+    public double getAimX() {
+        return aim_x;
+    }
+
+    public double getAimY() {
+        return aim_y;
+    }
+
+    public double getRange() {
+        return range;
+    }
+
+    /**
+     * @return field direction from the robot to the aim point, CCW positive
+     */
+    public double getBearingRadians() {
+        return bearing;
+    }
+
+    public double getRpm() {
+        return rpm;
+    }
+
+    public boolean isHoodExtended() {
+        return hood_extended;
+    }
+
+    public double getTimeOfFlight() {
+        return time_of_flight;
+    }
+
+    /**
+     * @return false if the time of flight was still changing after the last iteration, e.g. driving fast at the goal
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+
+    /**
+     * @return false if the range is off the end of the shot table and the setpoints are clamped
+     */
+    public boolean isInRange() {
+        return in_range;
+    }
+}
@@ -0,0 +1,54 @@
+package frc.robot.vision;
+
+import frc.robot.util.ShotTable;
+
+/**
+ * Shooting on the move. The ball leaves with the robot's velocity added, so instead of the goal we aim at a virtual
+ * goal, moved by (goal velocity - robot velocity) * time of flight. The time of flight depends on the range to that
+ * point, so it is iterated a fixed number of times, starting from the time of flight to the real goal. Each
+ * iteration is one table lookup, so a solve takes bounded time and doesn't allocate.
+ */
+public class ShotSolver {
+    private static final double kConvergedSeconds = 0.001;
+
+    private final ShotTable mTable;
+    private final int mIterations;
+
+    public ShotSolver(ShotTable table, int iterations) {
+        mTable = table;
+        mIterations = iterations;
+    }
+
+    /**
+     * All positions and velocities in field coordinates, at the time the ball will leave.
+     */
+    public void solve(double robot_x, double robot_y, double robot_vx, double robot_vy, double goal_x, double goal_y,
+            double goal_vx, double goal_vy, ShotSolution out) {
+        double relative_vx = goal_vx - robot_vx;
+        double relative_vy = goal_vy - robot_vy;
+        double aim_x = goal_x;
+        double aim_y = goal_y;
+        double time_of_flight = mTable.getTimeOfFlight(Math.hypot(goal_x - robot_x, goal_y - robot_y));
+        double change = Double.POSITIVE_INFINITY;
+        for (int i = 0; i < mIterations; i++) {
+            aim_x = goal_x + relative_vx * time_of_flight;
+            aim_y = goal_y + relative_vy * time_of_flight;
+            double next = mTable.getTimeOfFlight(Math.hypot(aim_x - robot_x, aim_y - robot_y));
+            change = Math.abs(next - time_of_flight);
+            time_of_flight = next;
+        }
+
+        double dx = aim_x - robot_x;
+        double dy = aim_y - robot_y;
+        double range = Math.hypot(dx, dy);
+        out.aim_x = aim_x;
+        out.aim_y = aim_y;
+        out.range = range;
+        out.bearing = Math.atan2(dy, dx);
+        out.rpm = mTable.getRpm(range);
+        out.hood_extended = mTable.isHoodExtended(range);
+        out.time_of_flight = time_of_flight;
+        out.converged = change < kConvergedSeconds;
+        out.in_range = range >= mTable.getMinRange() && range <= mTable.getMaxRange();
+    }
+}
@@ -13,6 +13,12 @@ public class TargetInfo {
         this.z = z;
     }
 
+    // for reusing pooled targets, see JevoisVisionUpdate
+    void set(double y, double z) {
+        this.y = y;
+        this.z = z;
+    }
+
     public double getX() {
         return x;
     }
@@ -0,0 +1,37 @@
+package frc.robot.vision;
+
+/**
+ * One goal seen by a camera, relative to the robot center in robot coordinates (x forward, y left, meters) at the
+ * time the frame was captured. Each VisionSource converts from its own camera geometry, so everything downstream
+ * is camera independent.
+ *
+ * Observations are pooled by their VisionFrame, don't hold on to one past the frame.
+ */
+public class TargetObservation {
+    private double x;
+    private double y;
+
+    void set(double x, double y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    public double getX() {
+        return x;
+    }
+
+    public double getY() {
+        return y;
+    }
+
+    public double getRange() {
+        return Math.hypot(x, y);
+    }
+
+    /**
+     * @return direction to the goal, CCW positive from the robot's front
+     */
+    public double getBearingRadians() {
+        return Math.atan2(y, x);
+    }
+}
@@ -0,0 +1,16 @@
+package frc.robot.vision;
+
+/**
+ * Scores goal tracks for GoalTracker's ranking, higher is better. The tracker calls begin() once and then score()
+ * once per track, so a scorer can do per-ranking work (reading tunables, the current time) in begin().
+ */
+public interface TrackScorer {
+    /**
+     * @param timestamp   time the ranking is for
+     * @param lastTrackId id of the best track at the last GoalTracker.prune(), -1 if none
+     */
+    default void begin(double timestamp, int lastTrackId) {
+    }
+
+    double score(GoalTracker.TrackReport report);
+}
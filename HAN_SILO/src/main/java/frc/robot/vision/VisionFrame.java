@@ -0,0 +1,51 @@
+package frc.robot.vision;
+
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * All goals from one camera frame and the FPGA time the frame was captured, already latency compensated.
+ *
+ * Frames are reused by their VisionSource (usually through a LatestValue), the observations come from a fixed pool.
+ */
+public class VisionFrame {
+    private final TargetObservation[] mObservations = new TargetObservation[VisionConstants.kMaxDetectionsPerUpdate];
+    private int mCount = 0;
+    private double mTimestamp;
+
+    public VisionFrame() {
+        for (int i = 0; i < mObservations.length; i++) {
+            mObservations[i] = new TargetObservation();
+        }
+    }
+
+    /**
+     * Starts filling the frame in again.
+     */
+    public void clear(double timestamp) {
+        mTimestamp = timestamp;
+        mCount = 0;
+    }
+
+    /**
+     * @return false if the pool is full and the observation was dropped
+     */
+    public boolean add(double x, double y) {
+        if (mCount == mObservations.length) {
+            return false;
+        }
+        mObservations[mCount++].set(x, y);
+        return true;
+    }
+
+    public double getTimestamp() {
+        return mTimestamp;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public TargetObservation get(int index) {
+        return mObservations[index];
+    }
+}
@@ -0,0 +1,21 @@
+package frc.robot.vision;
+
+/**
+ * A camera that sees the power port. Sources do their own threading and camera geometry and hand the robot loop
+ * timestamped frames of robot relative goal observations, which VisionSubsystem fuses into one GoalTracker.
+ *
+ * @see frc.robot.subsystems.VisionSubsystem
+ */
+public interface VisionSource {
+    /**
+     * Robot thread. The newest frame captured since the last call, or null if there isn't one. The frame is reused
+     * by the source, it is only valid until the next call.
+     */
+    VisionFrame pollFrame();
+
+    boolean hasTarget();
+
+    void enableLED();
+
+    void disableLED();
+}
@@ -0,0 +1,57 @@
+package frc.robot.vision;
+
+import edu.wpi.first.networktables.NetworkTableEntry;
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * The original TrackReportComparator heuristic: reward tracks that are stable (seen in more frames), recently
+ * observed, and the one we were already aiming at.
+ *
+ * The three weights are dashboard entries ("Vision/Track ... Weight"), so they can be tuned from NetworkTables
+ * while the robot runs. They are read once per ranking in begin().
+ */
+public class WeightedTrackScorer implements TrackScorer {
+    private final NetworkTableEntry mStabilityWeightEntry;
+    private final NetworkTableEntry mAgeWeightEntry;
+    private final NetworkTableEntry mSwitchingWeightEntry;
+
+    private double mStabilityWeight;
+    private double mAgeWeight;
+    private double mSwitchingWeight;
+    private double mTimestamp;
+    private int mLastTrackId = -1;
+
+    public WeightedTrackScorer() {
+        mStabilityWeightEntry = SmartDashboard.getEntry("Vision/Track Stability Weight");
+        mAgeWeightEntry = SmartDashboard.getEntry("Vision/Track Age Weight");
+        mSwitchingWeightEntry = SmartDashboard.getEntry("Vision/Track Switching Weight");
+        mStabilityWeightEntry.setDefaultDouble(VisionConstants.kTrackStabilityWeight);
+        mAgeWeightEntry.setDefaultDouble(VisionConstants.kTrackAgeWeight);
+        mSwitchingWeightEntry.setDefaultDouble(VisionConstants.kTrackSwitchingWeight);
+    }
+
+    @Override
+    public void begin(double timestamp, int lastTrackId) {
+        mStabilityWeight = mStabilityWeightEntry.getDouble(VisionConstants.kTrackStabilityWeight);
+        mAgeWeight = mAgeWeightEntry.getDouble(VisionConstants.kTrackAgeWeight);
+        mSwitchingWeight = mSwitchingWeightEntry.getDouble(VisionConstants.kTrackSwitchingWeight);
+        mTimestamp = timestamp;
+        mLastTrackId = lastTrackId;
+    }
+
+    @Override
+    public double score(GoalTracker.TrackReport report) {
+        return score(report, mStabilityWeight, mAgeWeight, mSwitchingWeight, mLastTrackId, mTimestamp);
+    }
+
+    static double score(GoalTracker.TrackReport report, double stability_weight, double age_weight,
+            double switching_weight, int last_track_id, double current_timestamp) {
+        double stability_score = stability_weight * report.stability;
+        double age_score = age_weight
+                * Math.max(0, (VisionConstants.kMaxGoalTrackAge - (current_timestamp - report.latest_timestamp))
+                        / VisionConstants.kMaxGoalTrackAge);
+        double switching_score = (report.id == last_track_id ? switching_weight : 0);
+        return stability_score + age_score + switching_score;
+    }
+}
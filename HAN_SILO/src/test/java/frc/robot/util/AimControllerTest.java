@@ -0,0 +1,81 @@
+package frc.robot.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import frc.robot.Constants.DriveConstants;
+
+/**
+ * Runs the aim controller against a robot that turns at exactly the commanded rate, at the 50 Hz robot loop.
+ */
+public class AimControllerTest {
+    private static final double kDt = 0.02;
+
+    private static AimController makeController() {
+        return new AimController(DriveConstants.kAimP, DriveConstants.kAimD, DriveConstants.kAimMaxRateRadiansPerSecond,
+                DriveConstants.kAimToleranceRadians, DriveConstants.kAimSettleSeconds);
+    }
+
+    @Test
+    public void aimsAcrossPiTheShortWay() {
+        AimController aim = makeController();
+        aim.reset(0);
+        double heading = Math.toRadians(179);
+        // goal 5 m away at -174 deg, 7 deg CCW of the heading
+        double goalX = 5 * Math.cos(Math.toRadians(-174));
+        double goalY = 5 * Math.sin(Math.toRadians(-174));
+
+        double firstOmega = Double.NaN;
+        for (int i = 0; i < 100; i++) {
+            double omega = aim.calculate(i * kDt, 0, heading, 0, 0, 0, 0, goalX, goalY, 0, 0);
+            if (i == 0) {
+                firstOmega = omega;
+            }
+            heading += omega * kDt;
+        }
+
+        assertTrue("turned CW the long way", firstOmega > 0);
+        assertTrue("never settled", aim.getSettleTime() < 0.5);
+        assertTrue(aim.isOnTarget());
+    }
+
+    @Test
+    public void feedForwardHoldsAimWhileStrafing() {
+        AimController aim = makeController();
+        aim.reset(0);
+        // goal 5 m ahead, strafing sideways at 2 m/s
+        double robotY = 0;
+        double heading = 0;
+        for (int i = 0; i < 50; i++) {
+            double omega = aim.calculate(i * kDt, 0, heading, 0, robotY, 0, 2, 5, 0, 0, 0);
+            heading += omega * kDt;
+            robotY += 2 * kDt;
+        }
+        assertEquals(0, aim.getError(), Math.toRadians(0.5));
+    }
+
+    @Test
+    public void errorCrossingPiDoesNotKickTheDerivative() {
+        // derivative only, so the output is the error rate
+        AimController aim = new AimController(0, 1, 100, 0.01, 0.1);
+        aim.reset(0);
+        // goal behind the robot, heading moves 0.2 deg so the wrapped error goes from +179.9 to -179.9 deg
+        aim.calculate(0, 0, Math.toRadians(0.1), 0, 0, 0, 0, -5, 0, 0, 0);
+        double omega = aim.calculate(kDt, 0, Math.toRadians(0.3), 0, 0, 0, 0, -5, 0, 0, 0);
+        assertEquals(Math.toRadians(-0.2) / kDt, omega, 1e-6);
+    }
+
+    @Test
+    public void trackSwitchDoesNotKickTheDerivative() {
+        AimController aim = new AimController(0, 1, 100, 0.01, 0.1);
+        aim.reset(0);
+        aim.calculate(0, 1, 0, 0, 0, 0, 0, 5, 0, 0, 0);
+        // the next goal is 1 rad away
+        double omega = aim.calculate(kDt, 2, 0, 0, 0, 0, 0, 5 * Math.cos(1), 5 * Math.sin(1), 0, 0);
+        assertEquals(0, omega, 1e-9);
+        assertFalse(aim.isOnTarget());
+    }
+}
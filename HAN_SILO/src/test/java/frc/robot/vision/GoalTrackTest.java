@@ -0,0 +1,87 @@
+package frc.robot.vision;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import frc.robot.Constants.VisionConstants;
+
+/**
+ * The goal track's Kalman filter against simulated camera frames.
+ */
+public class GoalTrackTest {
+    private static final double kFrameDt = 1.0 / VisionConstants.kCameraFrameRate;
+
+    @Test
+    public void tracksDriftingGoalThroughNoise() {
+        // goal drifting at 0.5 m/s in x, seen with kGoalTrackMeasurementStdDevMeters (15 cm) of noise
+        Random random = new Random(254);
+        double noise = VisionConstants.kGoalTrackMeasurementStdDevMeters;
+        GoalTrack track = new GoalTrack();
+        track.start(0, 5 + noise * random.nextGaussian(), 2 + noise * random.nextGaussian(), 0);
+
+        double squaredErrorSum = 0;
+        int samples = 0;
+        for (int i = 1; i <= 90; i++) {
+            double t = i * kFrameDt;
+            double x = 5 + 0.5 * t;
+            track.addObservation(t, x + noise * random.nextGaussian(), 2 + noise * random.nextGaussian());
+            if (t >= 1.0) {
+                double dx = track.getSmoothedX() - x;
+                double dy = track.getSmoothedY() - 2;
+                squaredErrorSum += dx * dx + dy * dy;
+                samples++;
+            }
+        }
+
+        // a 1 s mean of the observations would lag by 25 cm
+        double rmsError = Math.sqrt(squaredErrorSum / samples);
+        assertTrue("filtered position off by " + rmsError + " rms", rmsError < 0.10);
+        assertEquals(0.5, track.getVelocityX(), 0.15);
+        assertEquals(0, track.getVelocityY(), 0.15);
+    }
+
+    @Test
+    public void extrapolatesWithFilteredVelocity() {
+        GoalTrack track = new GoalTrack();
+        track.start(0, 0, 0, 0);
+        for (int i = 1; i <= 60; i++) {
+            double t = i * kFrameDt;
+            track.addObservation(t, 1.0 * t, -0.5 * t);
+        }
+        double t = 60 * kFrameDt;
+        assertEquals(t, track.getFilterTimestamp(), 1e-9);
+        // aim 0.25 s ahead of the last frame
+        assertEquals(1.0 * (t + 0.25), track.getPredictedX(t + 0.25), 0.03);
+        assertEquals(-0.5 * (t + 0.25), track.getPredictedY(t + 0.25), 0.03);
+    }
+
+    @Test
+    public void lateObservationDoesNotPredictBackwards() {
+        GoalTrack track = new GoalTrack();
+        track.start(1.0, 3, 3, 0);
+        track.addObservation(1.1, 3, 3);
+        double uncertainty = track.getPositionStdDev();
+        track.addObservation(1.05, 3.1, 3);
+
+        assertEquals(1.1, track.getFilterTimestamp(), 1e-9);
+        assertEquals(1.1, track.getLatestTimestamp(), 1e-9);
+        assertTrue(track.getSmoothedX() > 3);
+        assertTrue(track.getPositionStdDev() < uncertainty);
+    }
+
+    @Test
+    public void prunesOldObservations() {
+        GoalTrack track = new GoalTrack();
+        track.start(0, 1, 1, 0);
+        track.addObservation(0.5, 1, 1);
+        track.pruneByTime(0.25);
+        assertTrue(track.isAlive());
+        assertEquals(0.5, track.getLatestTimestamp(), 1e-9);
+        track.pruneByTime(1.0);
+        assertTrue(!track.isAlive());
+    }
+}